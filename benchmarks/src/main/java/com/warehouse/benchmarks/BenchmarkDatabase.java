@@ -0,0 +1,109 @@
+package com.warehouse.benchmarks;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.function.Supplier;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import com.warehouse.cache.SecondLevelCacheFactory;
+import com.warehouse.entity.Widget;
+
+/**
+ * An in-memory H2 database in PostgreSQL mode with the widget schema, seeded with widgets 1 to
+ * {@code rows} spread evenly over {@link #CATEGORIES} categories.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    static final int CATEGORIES = 100;
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final SessionFactory sessionFactory;
+
+    BenchmarkDatabase(String name, int rows) {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(Widget.class)
+                .setProperty(AvailableSettings.URL,
+                        "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create")
+                .setProperty(AvailableSettings.CURRENT_SESSION_CONTEXT_CLASS, "managed")
+                .setProperty(AvailableSettings.POOL_SIZE, "4")
+                // Otherwise the user type integrator shipped with Dropwizard leaks a pooled connection to find out
+                .setProperty("jadira.usertype.useJdbc42Apis", "true");
+        // Configured as in the application, where the second-level cache is off by default
+        new SecondLevelCacheFactory().configure(configuration);
+        this.sessionFactory = configuration.buildSessionFactory();
+        this.seed(rows);
+    }
+
+    static String category(long id) {
+        return "category-" + (id % CATEGORIES);
+    }
+
+    SessionFactory getSessionFactory() {
+        return this.sessionFactory;
+    }
+
+    /**
+     * Runs {@code work} in a transaction of its own, the way {@code @UnitOfWork} does for a request.
+     */
+    <T> T inTransaction(Supplier<T> work) {
+        Session session = this.sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        Transaction transaction = session.beginTransaction();
+        try {
+            T result = work.get();
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(this.sessionFactory);
+            session.close();
+        }
+    }
+
+    // The database itself goes away with the forked JVM running the benchmark
+    @Override
+    public void close() {
+        this.sessionFactory.close();
+    }
+
+    // Plain JDBC batches, a million widgets through Hibernate would take minutes
+    private void seed(int rows) {
+        try (Session session = this.sessionFactory.openSession()) {
+            session.doWork(connection -> {
+                connection.setAutoCommit(false);
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO widget "
+                        + "(id, name, category, price, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, 0)")) {
+                    for (long id = 1; id <= rows; id++) {
+                        insert.setLong(1, id);
+                        insert.setString(2, "Widget " + id);
+                        insert.setString(3, category(id));
+                        insert.setDouble(4, 1 + (id * 7919 % 10000) / 100d);
+                        insert.setTimestamp(5, now);
+                        insert.setTimestamp(6, now);
+                        insert.addBatch();
+                        if (id % SEED_BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("ALTER SEQUENCE widget_id_seq RESTART WITH " + (rows + 1));
+                }
+                connection.commit();
+            });
+        }
+    }
+}
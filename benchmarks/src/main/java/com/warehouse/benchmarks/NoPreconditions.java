@@ -0,0 +1,45 @@
+package com.warehouse.benchmarks;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Variant;
+
+/**
+ * A GET request without conditional headers, as most requests for a widget are.
+ */
+final class NoPreconditions implements Request {
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public Variant selectVariant(List<Variant> variants) {
+        return null;
+    }
+
+    @Override
+    public ResponseBuilder evaluatePreconditions(EntityTag eTag) {
+        return null;
+    }
+
+    @Override
+    public ResponseBuilder evaluatePreconditions(Date lastModified) {
+        return null;
+    }
+
+    @Override
+    public ResponseBuilder evaluatePreconditions(Date lastModified, EntityTag eTag) {
+        return null;
+    }
+
+    @Override
+    public ResponseBuilder evaluatePreconditions() {
+        return null;
+    }
+}
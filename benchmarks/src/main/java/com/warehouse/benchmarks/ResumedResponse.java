@@ -0,0 +1,95 @@
+package com.warehouse.benchmarks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+
+/**
+ * Keeps the response an asynchronous resource method resumed with, on the calling thread since the
+ * benchmarks run the database work directly.
+ */
+final class ResumedResponse implements AsyncResponse {
+    private Object response;
+
+    Response take() {
+        Response response = (Response) this.response;
+        this.response = null;
+        return response;
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        this.response = response;
+        return true;
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        throw new IllegalStateException(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return false;
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return false;
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return false;
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return this.response == null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.response != null;
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        return Collections.emptyMap();
+    }
+}
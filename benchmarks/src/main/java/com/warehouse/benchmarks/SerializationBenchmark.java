@@ -0,0 +1,95 @@
+package com.warehouse.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.cache.CachedWidget;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.entity.Widget;
+import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.jackson.Jackson;
+
+/**
+ * Jackson serialization of the representations, with Dropwizard's object mapper.
+ *
+ * {@link #snapshotPerRequest()} and {@link #cachedJson()} compare answering a cache hit by
+ * serializing the cached widget for every request, as before the JSON was cached, with copying the
+ * JSON serialized once when the widget was cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+    @Param({ "100" })
+    private int listSize;
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final ByteArrayOutputStream response = new ByteArrayOutputStream(64 * 1024);
+    private ObjectWriter snapshotWriter;
+    private Widget widget;
+    private List<Widget> widgets;
+    private CategoryInfo categoryInfo;
+    private WidgetSnapshot snapshot;
+    private CachedWidget cachedWidget;
+
+    @Setup
+    public void setup() {
+        this.snapshotWriter = this.objectMapper.writerFor(WidgetSnapshot.class);
+        this.widget = Widgets.widget(1L);
+        this.widgets = Widgets.widgets(this.listSize);
+        this.categoryInfo = new CategoryInfo("Book", 960.0, 100, 1.0, 19.2, 9.6);
+        this.snapshot = WidgetSnapshot.of(this.widget);
+        this.cachedWidget = new WidgetCache(Caffeine.newBuilder().build(), this.objectMapper).put(this.snapshot);
+    }
+
+    @Benchmark
+    public byte[] widget() throws IOException {
+        return this.objectMapper.writeValueAsBytes(this.widget);
+    }
+
+    @Benchmark
+    public byte[] widgetList() throws IOException {
+        return this.objectMapper.writeValueAsBytes(this.widgets);
+    }
+
+    @Benchmark
+    public byte[] categoryInfo() throws IOException {
+        return this.objectMapper.writeValueAsBytes(this.categoryInfo);
+    }
+
+    @Benchmark
+    public int snapshotPerRequest() throws IOException {
+        this.response.reset();
+        this.snapshotWriter.writeValue(this.response, this.snapshot);
+        return this.response.size();
+    }
+
+    @Benchmark
+    public int cachedJson() throws IOException {
+        this.response.reset();
+        this.response.write(this.cachedWidget.getJson());
+        return this.response.size();
+    }
+}
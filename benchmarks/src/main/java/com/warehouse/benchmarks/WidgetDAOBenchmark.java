@@ -0,0 +1,100 @@
+package com.warehouse.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+import com.warehouse.representation.CategoryInfo;
+
+/**
+ * Queries of {@link WidgetDAO} against H2 in PostgreSQL mode, each in a transaction of its own as in
+ * a request. Widgets are picked at random so the benchmarks don't only measure the same few rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class WidgetDAOBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final int MULTI_GET_SIZE = 50;
+
+    @Param({ "10000", "1000000" })
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private WidgetDAO widgetDAO;
+
+    @Setup
+    public void setup() {
+        this.database = new BenchmarkDatabase("dao", this.rows);
+        this.widgetDAO = new WidgetDAO(this.database.getSessionFactory(), new WidgetMapper(), 50);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.database.close();
+    }
+
+    @Benchmark
+    public Optional<Widget> findById() {
+        long id = this.randomId();
+        return this.database.inTransaction(() -> this.widgetDAO.findById(id));
+    }
+
+    @Benchmark
+    public List<Widget> findByIds() {
+        List<Long> ids = new ArrayList<>(MULTI_GET_SIZE);
+        for (int i = 0; i < MULTI_GET_SIZE; i++) {
+            ids.add(this.randomId());
+        }
+        return this.database.inTransaction(() -> this.widgetDAO.findByIds(ids));
+    }
+
+    @Benchmark
+    public List<Widget> findPage() {
+        long afterId = this.randomId() - 1;
+        return this.database.inTransaction(() -> this.widgetDAO.findPage(Optional.empty(), afterId, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<Widget> findPageOfCategory() {
+        long afterId = this.randomId() - 1;
+        Optional<String> category = Optional.of(BenchmarkDatabase.category(afterId));
+        return this.database.inTransaction(() -> this.widgetDAO.findPage(category, afterId, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Optional<CategoryInfo> aggregateByCategory() {
+        String category = BenchmarkDatabase.category(this.randomId());
+        return this.database.inTransaction(() -> this.widgetDAO.aggregateByCategory(category));
+    }
+
+    @Benchmark
+    public List<CategoryInfo> aggregateAllCategories() {
+        return this.database.inTransaction(() -> this.widgetDAO.aggregateAllCategories());
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, this.rows + 1);
+    }
+}
@@ -0,0 +1,45 @@
+package com.warehouse.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WidgetMapperBenchmark {
+    private final WidgetMapper mapper = new WidgetMapper();
+    private final WidgetDTO widgetDTO = new WidgetDTO("Harry Potter and the Chamber of Secrets", "Book", 13.5);
+    private final WidgetDTO partialWidgetDTO = new WidgetDTO(null, null, 14.0);
+    private final Widget widget = Widgets.widget(1L);
+
+    @Benchmark
+    public Widget toEntity() {
+        return this.mapper.toEntity(this.widgetDTO);
+    }
+
+    @Benchmark
+    public Widget updateEntityFromDTO() {
+        return this.mapper.updateEntityFromDTO(this.widget, this.widgetDTO);
+    }
+
+    @Benchmark
+    public Widget partialUpdateEntityFromDTO() {
+        return this.mapper.partialUpdateEntityFromDTO(this.widget, this.partialWidgetDTO);
+    }
+}
@@ -0,0 +1,120 @@
+package com.warehouse.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.resources.WidgetResource;
+
+import io.dropwizard.jackson.Jackson;
+
+/**
+ * Cache hits and misses of {@link WidgetResource}, called directly rather than through HTTP, and with
+ * the response written out. The database work runs on the calling thread. Misses are read from a database of {@link #ROWS} widgets and include
+ * invalidating the cached widget beforehand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WidgetResourceBenchmark {
+    private static final int ROWS = 10000;
+    private static final int MULTI_GET_SIZE = 50;
+
+    private final Request request = new NoPreconditions();
+    private final ResumedResponse response = new ResumedResponse();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+    private final List<Long> ids = new ArrayList<>(MULTI_GET_SIZE);
+    private BenchmarkDatabase database;
+    private WidgetCache cache;
+    private WidgetResource resource;
+
+    @Setup
+    public void setup() {
+        this.database = new BenchmarkDatabase("resource", ROWS);
+        this.cache = new WidgetCache(Caffeine.newBuilder().maximumSize(ROWS).build(), Jackson.newObjectMapper());
+        WidgetDAO widgetDAO = new WidgetDAO(this.database.getSessionFactory(), new WidgetMapper(), 50);
+        this.resource = new WidgetResource(widgetDAO, this.cache, new CategoryAggregateIndex(),
+                Jackson.newObjectMapper(), DatabaseExecutor.direct(new Transactions()), ROWS);
+        for (long id = 1; id <= MULTI_GET_SIZE; id++) {
+            this.ids.add(id * (ROWS / MULTI_GET_SIZE));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.database.close();
+    }
+
+    @Benchmark
+    public int getWidgetByIdHit() throws IOException {
+        return this.write(this.database.inTransaction(() -> {
+            this.resource.getWidgetById(1L, this.request, this.response);
+            return this.response.take();
+        }));
+    }
+
+    @Benchmark
+    public int getWidgetByIdMiss() throws IOException {
+        this.cache.invalidate(1L);
+        return this.write(this.database.inTransaction(() -> {
+            this.resource.getWidgetById(1L, this.request, this.response);
+            return this.response.take();
+        }));
+    }
+
+    @Benchmark
+    public int getWidgetsByIdsHit() throws IOException {
+        return this.write(this.database.inTransaction(() -> {
+            this.resource.getWidgetsByIds(this.ids, this.response);
+            return this.response.take();
+        }));
+    }
+
+    @Benchmark
+    public int getWidgetsByIdsMiss() throws IOException {
+        this.cache.invalidateAll(this.ids);
+        return this.write(this.database.inTransaction(() -> {
+            this.resource.getWidgetsByIds(this.ids, this.response);
+            return this.response.take();
+        }));
+    }
+
+    private int write(Response response) throws IOException {
+        this.output.reset();
+        Object entity = response.getEntity();
+        if (entity instanceof StreamingOutput) {
+            ((StreamingOutput) entity).write(this.output);
+        } else {
+            this.output.write((byte[]) entity);
+        }
+        return this.output.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.warehouse.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.warehouse.entity.Widget;
+
+/**
+ * Widgets shaped like the ones served in production.
+ */
+final class Widgets {
+
+    private Widgets() {
+    }
+
+    static Widget widget(long id) {
+        Date now = new Date();
+        return new Widget(id, "Harry Potter and the Philosopher's Stone", BenchmarkDatabase.category(id), 9.60,
+                now, now, 3L);
+    }
+
+    static List<Widget> widgets(int count) {
+        List<Widget> widgets = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            widgets.add(widget(id));
+        }
+        return widgets;
+    }
+}
@@ -0,0 +1,60 @@
+package com.warehouse.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records the latency and the response status of every request, per operation.
+ */
+final class LatencyRecorder {
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<Integer, LongAdder>> statuses = new EnumMap<>(Operation.class);
+
+    LatencyRecorder() {
+        for (Operation operation : Operation.values()) {
+            this.recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_LATENCY, 3));
+            this.statuses.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Records a request; a status of 0 means it failed without a response.
+     */
+    void record(Operation operation, long latencyNanos, int status) {
+        this.recorders.get(operation).recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_LATENCY));
+        this.statuses.get(operation).computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Forgets everything recorded so far, e.g. at the end of the warmup.
+     */
+    void reset() {
+        this.recorders.values().forEach(Recorder::reset);
+        this.statuses.values().forEach(Map::clear);
+    }
+
+    /**
+     * Returns the latencies recorded since the last call, in nanoseconds.
+     */
+    Map<Operation, Histogram> histograms() {
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        this.recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+        return histograms;
+    }
+
+    SortedMap<Integer, Long> statuses(Operation operation) {
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        this.statuses.get(operation).forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,225 @@
+package com.warehouse.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.warehouse.WarehouseApplication;
+import com.warehouse.WarehouseConfiguration;
+import com.warehouse.dto.WidgetDTO;
+
+import io.dropwizard.testing.DropwizardTestSupport;
+import io.dropwizard.testing.ResourceHelpers;
+
+/**
+ * Boots the application on an in-memory database, seeds a catalog of widgets, then replays a random mix of
+ * requests against it and reports the throughput, the latency percentiles and the cache hit rates.
+ * Run it with {@code mvn -P load-test verify -DskipTests}; see {@link LoadTestOptions} for the options.
+ */
+public final class LoadTest {
+    private static final int SEED_CHUNK_SIZE = 10000;
+    private static final String[] CACHE_COUNTERS = {
+            "widgets.cache.hits", "widgets.cache.misses", "widgets.cache.coalesced-loads",
+            "hibernate.second-level-cache.hits", "hibernate.second-level-cache.misses",
+            "hibernate.query-cache.hits", "hibernate.query-cache.misses" };
+
+    private final LoadTestOptions options;
+    private final WarehouseClient client;
+    private final Workload workload;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final Random[] randoms;
+
+    private LoadTest(LoadTestOptions options, WarehouseClient client, Workload workload) {
+        this.options = options;
+        this.client = client;
+        this.workload = workload;
+        // One generator per worker in the closed model, so each worker replays the same requests on every run
+        this.randoms = new Random[options.isFixedRate() ? 1 : options.concurrency];
+        for (int i = 0; i < this.randoms.length; i++) {
+            this.randoms[i] = new Random(options.seed + i);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        DropwizardTestSupport<WarehouseConfiguration> application = new DropwizardTestSupport<>(
+                WarehouseApplication.class, ResourceHelpers.resourceFilePath("load-test.yml"));
+        application.before();
+        try (WarehouseClient client = new WarehouseClient("http://localhost:" + application.getLocalPort(),
+                options.concurrency, application.getObjectMapper())) {
+            long[] ids = seed(client, options);
+            LoadTest loadTest = new LoadTest(options, client,
+                    new Workload(ids, options.mix, application.getObjectMapper()));
+            loadTest.run(application.getEnvironment().metrics());
+        } finally {
+            application.after();
+        }
+    }
+
+    private static long[] seed(WarehouseClient client, LoadTestOptions options) throws Exception {
+        long start = System.nanoTime();
+        Random random = new Random(options.seed - 1);
+        List<Long> ids = new ArrayList<>(options.widgets);
+        for (int offset = 0; offset < options.widgets; offset += SEED_CHUNK_SIZE) {
+            int size = Math.min(SEED_CHUNK_SIZE, options.widgets - offset);
+            List<WidgetDTO> widgets = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                widgets.add(Workload.widget(random));
+            }
+            ids.addAll(client.createAll(widgets));
+        }
+        System.out.printf("Seeded %d widgets in %d categories in %.1f s%n", ids.size(), Workload.CATEGORIES,
+                (System.nanoTime() - start) / 1e9);
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void run(MetricRegistry metrics) throws InterruptedException {
+        String model = this.options.isFixedRate()
+                ? String.format("%.0f requests/s over up to %d connections", this.options.rate, this.options.concurrency)
+                : this.options.concurrency + " concurrent requests";
+        System.out.printf("Warming up for %s, then measuring for %s at %s, seed %d, mix %s%n", this.options.warmup,
+                this.options.duration, model, this.options.seed, this.options.mix);
+
+        this.runFor(this.options.warmup.toNanoseconds());
+        this.recorder.reset();
+        long[] countersBefore = counters(metrics);
+
+        long start = System.nanoTime();
+        this.runFor(this.options.duration.toNanoseconds());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        this.report(seconds, this.recorder.histograms(), subtract(counters(metrics), countersBefore));
+    }
+
+    private void runFor(long nanos) throws InterruptedException {
+        if (this.options.isFixedRate()) {
+            this.runAtFixedRate(nanos);
+        } else {
+            this.runAtFixedConcurrency(nanos);
+        }
+    }
+
+    /**
+     * Closed model: every worker sends its next request as soon as the previous one completed.
+     */
+    private void runAtFixedConcurrency(long nanos) throws InterruptedException {
+        long end = System.nanoTime() + nanos;
+        Thread[] workers = new Thread[this.options.concurrency];
+        for (int i = 0; i < workers.length; i++) {
+            Random random = this.randoms[i];
+            workers[i] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    Workload.Call call = this.workload.next(random);
+                    long sent = System.nanoTime();
+                    int status = this.send(call);
+                    this.recorder.record(call.operation, System.nanoTime() - sent, status);
+                }
+            }, "load-test-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Open model: requests are scheduled at a fixed rate whatever the response times. Latencies are measured
+     * from when a request was due, so the time it waited for a free connection is not hidden.
+     */
+    private void runAtFixedRate(long nanos) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.options.concurrency);
+        long interval = Math.round(TimeUnit.SECONDS.toNanos(1) / this.options.rate);
+        long end = System.nanoTime() + nanos;
+        for (long due = System.nanoTime(); due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Workload.Call call = this.workload.next(this.randoms[0]);
+            long scheduled = due;
+            executor.execute(() -> {
+                int status = this.send(call);
+                this.recorder.record(call.operation, System.nanoTime() - scheduled, status);
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private int send(Workload.Call call) {
+        try {
+            return this.client.send(call);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void report(double seconds, Map<Operation, Histogram> histograms, long[] counters) {
+        System.out.printf("%n%-8s %10s %10s %9s %9s %9s %9s %9s  %s%n", "", "requests", "req/s", "p50 ms",
+                "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+        Histogram total = new Histogram(3);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            if (histogram.getTotalCount() > 0) {
+                printLine(operation.getKey(), histogram, seconds, this.recorder.statuses(operation));
+                total.add(histogram);
+            }
+        }
+        printLine("total", total, seconds, null);
+
+        System.out.printf("%nWidget cache: %s, %d loads coalesced%n", hitRate(counters[0], counters[1]), counters[2]);
+        System.out.printf("Second-level cache: %s; query cache: %s%n", hitRate(counters[3], counters[4]),
+                hitRate(counters[5], counters[6]));
+    }
+
+    private static void printLine(String name, Histogram histogram, double seconds, SortedMap<Integer, Long> statuses) {
+        System.out.printf("%-8s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", name, histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds, millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()),
+                statuses == null ? "" : statuses.toString().replace("{0=", "{failed="));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String hitRate(long hits, long misses) {
+        return hits + misses == 0
+                ? "no lookups"
+                : String.format("%.1f%% hits (%d hits, %d misses)", 100d * hits / (hits + misses), hits, misses);
+    }
+
+    private static long[] counters(MetricRegistry metrics) {
+        long[] counters = new long[CACHE_COUNTERS.length];
+        for (int i = 0; i < CACHE_COUNTERS.length; i++) {
+            Meter meter = metrics.getMeters().get(CACHE_COUNTERS[i]);
+            Gauge<?> gauge = metrics.getGauges().get(CACHE_COUNTERS[i]);
+            if (meter != null) {
+                counters[i] = meter.getCount();
+            } else if (gauge != null) {
+                counters[i] = ((Number) gauge.getValue()).longValue();
+            }
+        }
+        return counters;
+    }
+
+    private static long[] subtract(long[] after, long[] before) {
+        long[] difference = new long[after.length];
+        for (int i = 0; i < after.length; i++) {
+            difference[i] = after[i] - before[i];
+        }
+        return difference;
+    }
+}
@@ -0,0 +1,70 @@
+package com.warehouse.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import io.dropwizard.util.Duration;
+
+/**
+ * Options of the load test, read from system properties:
+ * <ul>
+ * <li>{@code loadtest.widgets}: number of widgets seeded before the test, 10000 by default</li>
+ * <li>{@code loadtest.warmup} and {@code loadtest.duration}: how long to warm up and to measure, 10s and 60s by default</li>
+ * <li>{@code loadtest.concurrency}: number of requests in flight, 16 by default</li>
+ * <li>{@code loadtest.rate}: requests per second. When set, requests are sent at this fixed rate by up to
+ * {@code loadtest.concurrency} connections, and their latency is measured from when they should have been sent</li>
+ * <li>{@code loadtest.mix}: relative weights of the operations, {@code get=70,list=8,info=8,create=5,patch=5,delete=2,mget=2}
+ * by default</li>
+ * <li>{@code loadtest.seed}: seed of the random workload, so a run can be replayed</li>
+ * </ul>
+ */
+final class LoadTestOptions {
+    private static final String DEFAULT_MIX = "get=70,list=8,info=8,create=5,patch=5,delete=2,mget=2";
+
+    final int widgets;
+    final Duration warmup;
+    final Duration duration;
+    final int concurrency;
+    final Double rate;
+    final Map<Operation, Integer> mix;
+    final long seed;
+
+    private LoadTestOptions(int widgets, Duration warmup, Duration duration, int concurrency, Double rate,
+            Map<Operation, Integer> mix, long seed) {
+        this.widgets = widgets;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.mix = mix;
+        this.seed = seed;
+    }
+
+    static LoadTestOptions fromSystemProperties() {
+        String rate = System.getProperty("loadtest.rate");
+        return new LoadTestOptions(
+                Integer.getInteger("loadtest.widgets", 10000),
+                Duration.parse(System.getProperty("loadtest.warmup", "10s")),
+                Duration.parse(System.getProperty("loadtest.duration", "60s")),
+                Integer.getInteger("loadtest.concurrency", 16),
+                rate == null ? null : Double.valueOf(rate),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                Long.getLong("loadtest.seed", 42L));
+    }
+
+    boolean isFixedRate() {
+        return this.rate != null;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split("=");
+            if (keyAndWeight.length != 2) {
+                throw new IllegalArgumentException("loadtest.mix must look like get=70,list=10, not " + mix);
+            }
+            weights.put(Operation.fromKey(keyAndWeight[0].trim()), Integer.valueOf(keyAndWeight[1].trim()));
+        }
+        return weights;
+    }
+}
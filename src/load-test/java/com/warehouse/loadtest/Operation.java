@@ -0,0 +1,33 @@
+package com.warehouse.loadtest;
+
+/**
+ * The kinds of requests in a workload, named as in the {@code loadtest.mix} option.
+ */
+enum Operation {
+    GET("get"),
+    MULTI_GET("mget"),
+    LIST("list"),
+    INFO("info"),
+    CREATE("create"),
+    PATCH("patch"),
+    DELETE("delete");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String getKey() {
+        return this.key;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation '" + key + "' in loadtest.mix");
+    }
+}
@@ -0,0 +1,92 @@
+package com.warehouse.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.dto.WidgetDTO;
+
+/**
+ * Sends the requests of the workload over HTTP and reads their responses fully, as a real client would.
+ */
+final class WarehouseClient implements AutoCloseable {
+    private final Client client;
+    private final WebTarget target;
+    private final ObjectMapper objectMapper;
+
+    WarehouseClient(String baseUri, int connections, ObjectMapper objectMapper) {
+        // The default connector can't send PATCH on recent JDKs, and keeps only a few connections alive
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(connections);
+        connectionManager.setDefaultMaxPerRoute(connections);
+        ClientConfig config = new ClientConfig()
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                // Sent with a Content-Length rather than chunked, so a request can be retried on a stale connection
+                .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED);
+        this.client = ClientBuilder.newClient(config);
+        this.target = this.client.target(baseUri);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sends a request and returns the HTTP status of its response.
+     */
+    int send(Workload.Call call) {
+        WebTarget target = this.target.path(call.path);
+        if (call.query != null) {
+            for (String parameter : call.query.split("&")) {
+                int equals = parameter.indexOf('=');
+                target = target.queryParam(parameter.substring(0, equals), parameter.substring(equals + 1));
+            }
+        }
+        Entity<String> entity = call.body == null ? null : Entity.entity(call.body, MediaType.APPLICATION_JSON_TYPE);
+        try (Response response = target.request(MediaType.APPLICATION_JSON_TYPE).method(call.method, entity)) {
+            if (response.hasEntity()) {
+                response.readEntity(byte[].class);
+            }
+            return response.getStatus();
+        }
+    }
+
+    /**
+     * Creates widgets through the bulk endpoint and returns their IDs.
+     */
+    List<Long> createAll(List<WidgetDTO> widgets) throws Exception {
+        String body = this.objectMapper.writeValueAsString(widgets);
+        try (Response response = this.target.path("/widgets/_bulk").request(MediaType.APPLICATION_JSON_TYPE)
+                .post(Entity.entity(body, MediaType.APPLICATION_JSON_TYPE))) {
+            if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+                throw new IllegalStateException("Seeding failed with status " + response.getStatus());
+            }
+            JsonNode items = this.objectMapper.readTree(response.readEntity(String.class)).get("items");
+            List<Long> ids = new ArrayList<>(items.size());
+            for (JsonNode item : items) {
+                if (item.hasNonNull("id")) {
+                    ids.add(item.get("id").asLong());
+                }
+            }
+            return ids;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.client.close();
+    }
+}
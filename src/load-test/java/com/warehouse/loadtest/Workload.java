@@ -0,0 +1,122 @@
+package com.warehouse.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.dto.WidgetDTO;
+
+/**
+ * Generates the requests of the workload. Everything is drawn from the given {@link Random}, so the same
+ * seed always produces the same sequence of requests.
+ */
+final class Workload {
+    static final int CATEGORIES = 100;
+
+    private static final int PAGE_SIZE = 100;
+    private static final int MULTI_GET_SIZE = 20;
+
+    private final long[] ids;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final ObjectMapper objectMapper;
+
+    Workload(long[] ids, Map<Operation, Integer> mix, ObjectMapper objectMapper) {
+        this.ids = ids;
+        this.objectMapper = objectMapper;
+        this.operations = new Operation[mix.size()];
+        this.cumulativeWeights = new int[mix.size()];
+        int i = 0;
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            total += entry.getValue();
+            this.operations[i] = entry.getKey();
+            this.cumulativeWeights[i] = total;
+            i++;
+        }
+    }
+
+    static String category(long index) {
+        return "category-" + (index % CATEGORIES);
+    }
+
+    static WidgetDTO widget(Random random) {
+        int number = random.nextInt(1_000_000);
+        return new WidgetDTO("Widget " + number, category(number), 1 + random.nextInt(10000) / 100d);
+    }
+
+    Call next(Random random) {
+        Operation operation = this.pick(random);
+        switch (operation) {
+        case GET:
+            return new Call(operation, "GET", "/widgets/" + this.randomId(random), null, null);
+        case MULTI_GET:
+            List<String> ids = new ArrayList<>(MULTI_GET_SIZE);
+            for (int i = 0; i < MULTI_GET_SIZE; i++) {
+                ids.add(Long.toString(this.randomId(random)));
+            }
+            return new Call(operation, "GET", "/widgets", "ids=" + String.join(",", ids), null);
+        case LIST:
+            return new Call(operation, "GET", "/widgets",
+                    "category=" + category(random.nextInt(CATEGORIES)) + "&limit=" + PAGE_SIZE, null);
+        case INFO:
+            return new Call(operation, "GET", "/widgets/info/" + category(random.nextInt(CATEGORIES)), null, null);
+        case CREATE:
+            return new Call(operation, "POST", "/widgets", null, this.json(widget(random)));
+        case PATCH:
+            WidgetDTO price = new WidgetDTO(null, null, 1 + random.nextInt(10000) / 100d);
+            return new Call(operation, "PATCH", "/widgets/" + this.randomId(random), null, this.json(price));
+        case DELETE:
+            return new Call(operation, "DELETE", "/widgets/" + this.randomId(random), null, null);
+        default:
+            throw new IllegalStateException("Unexpected operation " + operation);
+        }
+    }
+
+    private Operation pick(Random random) {
+        int draw = random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+        for (int i = 0; i < this.cumulativeWeights.length; i++) {
+            if (draw < this.cumulativeWeights[i]) {
+                return this.operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    // Skewed towards the first widgets, so some are hot as in a real catalog: half of the reads go to 10% of them
+    private long randomId(Random random) {
+        int hot = Math.max(1, this.ids.length / 10);
+        int index = random.nextBoolean() ? random.nextInt(hot) : random.nextInt(this.ids.length);
+        return this.ids[index];
+    }
+
+    private String json(Object body) {
+        try {
+            return this.objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A request of the workload.
+     */
+    static final class Call {
+        final Operation operation;
+        final String method;
+        final String path;
+        final String query;
+        final String body;
+
+        Call(Operation operation, String method, String path, String query, String body) {
+            this.operation = operation;
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.body = body;
+        }
+    }
+}
@@ -1,17 +1,60 @@
 package com.warehouse;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.codahale.metrics.Gauge;
+import com.warehouse.cache.SecondLevelCacheFactory;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.cache.WidgetCacheFactory;
+import com.warehouse.cache.WidgetCacheTask;
+import com.warehouse.cache.WidgetSnapshotLoader;
+import com.warehouse.change.ChangeFeedFactory;
+import com.warehouse.change.ChangePoller;
+import com.warehouse.change.ChangeSource;
+import com.warehouse.dao.WidgetChangeDAO;
 import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.db.ReadReplicaFactory;
+import com.warehouse.db.TimedUnitOfWorkAwareProxyFactory;
+import com.warehouse.db.Transactions;
 import com.warehouse.dto.WidgetMapper;
 import com.warehouse.entity.Widget;
+import com.warehouse.entity.WidgetChange;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.CategoryIndexReconciler;
+import com.warehouse.index.IndexConfiguration;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.index.NameSearchIndexLoader;
+import com.warehouse.ingest.IngestionFactory;
+import com.warehouse.ingest.IngestionQueue;
+import com.warehouse.limit.ConcurrencyLimitFactory;
+import com.warehouse.resources.BulkConfiguration;
+import com.warehouse.resources.CrossShardUpdateExceptionMapper;
+import com.warehouse.resources.OptimisticLockExceptionMapper;
+import com.warehouse.resources.TooManyBucketsExceptionMapper;
+import com.warehouse.resources.WidgetBulkResource;
+import com.warehouse.resources.WidgetCatalogResource;
+import com.warehouse.resources.WidgetChangeResource;
 import com.warehouse.resources.WidgetResource;
+import com.warehouse.resources.WidgetStatsResource;
+import com.warehouse.shard.ShardedWidgetDAO;
+import com.warehouse.shard.ShardingFactory;
+import com.warehouse.stats.PriceColumnsLoader;
+import com.warehouse.stats.PriceStatistics;
+import com.warehouse.stats.StatsFactory;
+
+import org.hibernate.SessionFactory;
 
 import io.dropwizard.Application;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import io.federecio.dropwizard.swagger.SwaggerBundle;
@@ -19,12 +62,23 @@ import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 
 public class WarehouseApplication extends Application<WarehouseConfiguration> {
 
+    private static final List<Class<?>> ENTITIES = Arrays.asList(Widget.class, WidgetChange.class);
+
     private final HibernateBundle<WarehouseConfiguration> hibernateBundle = new HibernateBundle<WarehouseConfiguration>(
-            Widget.class) {
+            Widget.class, WidgetChange.class) {
+        private SecondLevelCacheFactory secondLevelCacheFactory;
+
         @Override
         public DataSourceFactory getDataSourceFactory(WarehouseConfiguration configuration) {
+            // The only time the bundle is given the configuration, just before it builds the session factory
+            this.secondLevelCacheFactory = configuration.getSecondLevelCacheFactory();
             return configuration.getDataSourceFactory();
         }
+
+        @Override
+        protected void configure(org.hibernate.cfg.Configuration configuration) {
+            this.secondLevelCacheFactory.configure(configuration);
+        }
     };
 
     private final SwaggerBundle<WarehouseConfiguration> swaggerBundle = new SwaggerBundle<WarehouseConfiguration>() {
@@ -53,16 +107,205 @@ public class WarehouseApplication extends Application<WarehouseConfiguration> {
     public void run(final WarehouseConfiguration configuration,
             final Environment environment) {
 
-        Cache<Long, Widget> cache = Caffeine.newBuilder()
-                .maximumSize(10)
-                .expireAfterWrite(200, TimeUnit.SECONDS)
-                .build();
+        final SessionFactory sessionFactory = this.hibernateBundle.getSessionFactory();
+        configuration.getSecondLevelCacheFactory().registerMetrics(environment.metrics(), "hibernate",
+                sessionFactory);
+
+        final ReadReplicaFactory readReplicaFactory = configuration.getReadReplicaFactory();
+        final SessionFactory readReplica = readReplicaFactory.isEnabled()
+                ? readReplicaFactory.build(environment, ENTITIES)
+                : null;
 
-        // Register Widget resource
+        final int transactionTimeout = (int) configuration.getTransactionTimeout().toSeconds();
+        final BulkConfiguration bulkConfiguration = configuration.getBulkConfiguration();
         final WidgetMapper widgetMapper = new WidgetMapper();
-        final WidgetDAO widgetDAO = new WidgetDAO(this.hibernateBundle.getSessionFactory(), widgetMapper);
-        WidgetResource widgetResource = new WidgetResource(widgetDAO, cache);
+        final ShardingFactory shardingFactory = configuration.getShardingFactory();
+        final ChangeFeedFactory changeFeedFactory = configuration.getChangeFeedFactory();
+        final String changeOrigin = changeFeedFactory.isEnabled() ? changeFeedFactory.getNodeId() : null;
+        final WidgetDAO widgetDAO = shardingFactory.isEnabled()
+                ? shardingFactory.build(environment, ENTITIES, widgetMapper, bulkConfiguration.getBatchSize(),
+                        changeOrigin, transactionTimeout)
+                : new WidgetDAO(sessionFactory, readReplica,
+                        changeOrigin == null ? null : new WidgetChangeDAO(sessionFactory, changeOrigin), widgetMapper,
+                        bulkConfiguration.getBatchSize());
+
+        // Read-only units of work of the resources read from the replica, if any
+        final UnitOfWorkAwareProxyFactory readProxyFactory;
+        if (readReplica != null) {
+            readProxyFactory = readReplicaFactory.buildProxyFactory(environment.metrics(), "database.routing",
+                    sessionFactory, readReplica, transactionTimeout);
+            if (readReplicaFactory.getReadYourWritesWindow().toMilliseconds() > 0) {
+                environment.jersey().register(readReplicaFactory.buildFilter(environment.metrics(),
+                        "database.routing"));
+            }
+        } else {
+            readProxyFactory = new TimedUnitOfWorkAwareProxyFactory(this.hibernateBundle, transactionTimeout);
+        }
+
+        final WidgetCache cache = this.buildWidgetCache(configuration.getWidgetCacheFactory(), environment,
+                widgetDAO, transactionTimeout);
+        environment.admin().addTask(new WidgetCacheTask(cache));
+
+        // The sharded DAO runs the work of every shard in a unit of work of its own
+        final Transactions transactions = shardingFactory.isEnabled()
+                ? new Transactions()
+                : readProxyFactory.create(Transactions.class);
+        final DatabaseExecutor database = configuration.getDatabaseExecutorFactory().build(environment.lifecycle(),
+                environment.metrics(), "database.executor", transactions, configuration.isVirtualThreads());
+
+        // Register Widget resources
+        IndexConfiguration indexConfiguration = configuration.getIndexConfiguration();
+        final CategoryAggregateIndex categoryIndex = new CategoryAggregateIndex(
+                indexConfiguration.isCategoryAggregatesEnabled() && indexConfiguration.isPriceOrderEnabled());
+        final NameSearchIndex searchIndex = indexConfiguration.isNameSearchEnabled()
+                ? this.buildSearchIndex(environment, indexConfiguration)
+                : NameSearchIndex.disabled();
+        if (changeFeedFactory.isEnabled()) {
+            this.scheduleChangePoller(environment, changeFeedFactory, changeFeedFactory.buildPoller(
+                    environment.metrics(), "widgets.changes",
+                    this.changeSources(widgetDAO, sessionFactory, transactionTimeout), cache,
+                    indexConfiguration.isCategoryAggregatesEnabled() ? categoryIndex : null,
+                    indexConfiguration.isNameSearchEnabled() ? searchIndex : null));
+        }
+        final IngestionFactory ingestionFactory = configuration.getIngestionFactory();
+        final IngestionQueue ingestion = ingestionFactory.isEnabled()
+                ? ingestionFactory.build(environment.lifecycle(), environment.metrics(), "widgets.ingestion",
+                        widgetDAO, database.getTransactions())
+                : null;
+        WidgetResource widgetResource = new WidgetResource(widgetDAO, cache, categoryIndex, searchIndex,
+                environment.getObjectMapper(), database, ingestion, bulkConfiguration.getMaxItems());
         environment.jersey().register(widgetResource);
+        WidgetBulkResource widgetBulkResource = new WidgetBulkResource(widgetDAO, cache, categoryIndex,
+                searchIndex, environment.getValidator(), database.getTransactions(), bulkConfiguration.getMaxItems());
+        environment.jersey().register(widgetBulkResource);
+        environment.jersey().register(new WidgetCatalogResource(widgetDAO, cache, categoryIndex, searchIndex,
+                environment.getObjectMapper(), environment.getValidator(), database,
+                bulkConfiguration.getImportBatchSize()));
+        // Sharded, the changes of every shard have sequence numbers of their own and aren't fed
+        environment.jersey().register(new WidgetChangeResource(widgetDAO.getChangeDAO(), widgetDAO,
+                environment.getObjectMapper(), database, changeFeedFactory.getSettleTime().toMilliseconds(),
+                changeFeedFactory.getPollInterval().toMilliseconds()));
+        final StatsFactory statsFactory = configuration.getStatsFactory();
+        final PriceStatistics statistics = statsFactory.isEnabled()
+                ? statsFactory.build(environment.lifecycle(), environment.metrics(), "widgets.stats")
+                : null;
+        environment.jersey().register(new WidgetStatsResource(statistics));
+        environment.jersey().register(new OptimisticLockExceptionMapper());
+        environment.jersey().register(new CrossShardUpdateExceptionMapper());
+        environment.jersey().register(new TooManyBucketsExceptionMapper());
+
+        final ConcurrencyLimitFactory concurrencyLimitFactory = configuration.getConcurrencyLimitFactory();
+        if (concurrencyLimitFactory.isEnabled()) {
+            environment.jersey().register(concurrencyLimitFactory.build(environment.metrics(), "concurrency-limits"));
+        }
+
+        if (indexConfiguration.isCategoryAggregatesEnabled()) {
+            this.scheduleCategoryIndex(environment, indexConfiguration, widgetDAO, categoryIndex);
+        }
+        if (indexConfiguration.isNameSearchEnabled()) {
+            this.scheduleSearchIndex(environment, indexConfiguration, widgetDAO, searchIndex);
+        }
+        if (statistics != null) {
+            this.scheduleStatistics(environment, statsFactory,
+                    new PriceColumnsLoader(widgetDAO, database.getTransactions(), statistics));
+        }
     }
 
+    private WidgetCache buildWidgetCache(WidgetCacheFactory cacheFactory, Environment environment,
+            WidgetDAO widgetDAO, int transactionTimeout) {
+        if (!cacheFactory.isRefreshAhead()) {
+            return cacheFactory.build(environment.metrics(), "widgets.cache", environment.getObjectMapper());
+        }
+
+        // Always from the primary, a lagging replica could cache stale widgets
+        WidgetSnapshotLoader loader = new TimedUnitOfWorkAwareProxyFactory(this.hibernateBundle, transactionTimeout)
+                .create(WidgetSnapshotLoader.class, WidgetDAO.class, widgetDAO);
+        ExecutorService refreshExecutor = environment.lifecycle()
+                .executorService("widget-cache-refresh-%d")
+                .minThreads(cacheFactory.getRefreshThreads())
+                .maxThreads(cacheFactory.getRefreshThreads())
+                .build();
+        return cacheFactory.build(environment.metrics(), "widgets.cache", environment.getObjectMapper(), loader,
+                refreshExecutor);
+    }
+
+    private List<ChangeSource> changeSources(WidgetDAO widgetDAO, SessionFactory sessionFactory,
+            int transactionTimeout) {
+        if (widgetDAO instanceof ShardedWidgetDAO) {
+            return ((ShardedWidgetDAO) widgetDAO).getShards().stream()
+                    .map(shard -> new ChangeSource("shard-" + shard.getId(), shard.getWidgetDAO(),
+                            shard.getTransactions(), shard.getSessionFactory()))
+                    .collect(Collectors.toList());
+        }
+        return Collections.singletonList(new ChangeSource("database", widgetDAO,
+                new TimedUnitOfWorkAwareProxyFactory(this.hibernateBundle, transactionTimeout)
+                        .create(Transactions.class), sessionFactory));
+    }
+
+    private void scheduleChangePoller(Environment environment, ChangeFeedFactory changeFeedFactory,
+            ChangePoller poller) {
+        long pollInterval = changeFeedFactory.getPollInterval().toMilliseconds();
+        long pruneInterval = changeFeedFactory.getPruneInterval().toMilliseconds();
+        long retention = changeFeedFactory.getRetention().toMilliseconds();
+
+        // A single thread, the poller keeps the position of every source to itself
+        ScheduledExecutorService executor = environment.lifecycle()
+                .scheduledExecutorService("change-poller-%d")
+                .threads(1)
+                .build();
+        executor.scheduleWithFixedDelay(poller::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(() -> poller.prune(retention), pruneInterval, pruneInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleCategoryIndex(Environment environment, IndexConfiguration indexConfiguration,
+            WidgetDAO widgetDAO, CategoryAggregateIndex categoryIndex) {
+        // From the primary, which the index follows, so a lagging replica isn't taken for drift. Without the
+        // transaction timeout, as it aggregates every widget
+        CategoryIndexReconciler reconciler = new UnitOfWorkAwareProxyFactory(this.hibernateBundle).create(
+                CategoryIndexReconciler.class,
+                new Class<?>[] { WidgetDAO.class, CategoryAggregateIndex.class },
+                new Object[] { widgetDAO, categoryIndex });
+        long interval = indexConfiguration.getReconciliationInterval().toMilliseconds();
+
+        // A single thread, so the initial load always completes before the first reconciliation
+        ScheduledExecutorService executor = environment.lifecycle()
+                .scheduledExecutorService("category-index-%d")
+                .threads(1)
+                .build();
+        executor.execute(reconciler::load);
+        executor.scheduleWithFixedDelay(reconciler::reconcile, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private NameSearchIndex buildSearchIndex(Environment environment, IndexConfiguration indexConfiguration) {
+        NameSearchIndex searchIndex = new NameSearchIndex(indexConfiguration.getNameSearchMaxWidgets(),
+                environment.metrics().timer("widgets.search.queries"));
+        environment.metrics().register("widgets.search.size", (Gauge<Integer>) searchIndex::getSize);
+        environment.metrics().register("widgets.search.postings", (Gauge<Long>) searchIndex::getPostings);
+        return searchIndex;
+    }
+
+    private void scheduleSearchIndex(Environment environment, IndexConfiguration indexConfiguration,
+            WidgetDAO widgetDAO, NameSearchIndex searchIndex) {
+        // Outside any unit of work, so from the primary, which the index follows
+        NameSearchIndexLoader loader = new NameSearchIndexLoader(widgetDAO, searchIndex);
+        long interval = indexConfiguration.getNameSearchRebuildInterval().toMilliseconds();
+
+        // A single thread, as the index builds one replacement at a time
+        ScheduledExecutorService executor = environment.lifecycle()
+                .scheduledExecutorService("name-search-index-%d")
+                .threads(1)
+                .build();
+        executor.scheduleWithFixedDelay(loader::rebuild, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleStatistics(Environment environment, StatsFactory statsFactory, PriceColumnsLoader loader) {
+        long interval = statsFactory.getRebuildInterval().toMilliseconds();
+
+        ScheduledExecutorService executor = environment.lifecycle()
+                .scheduledExecutorService("price-statistics-loader-%d")
+                .threads(1)
+                .build();
+        executor.scheduleWithFixedDelay(loader::rebuild, 0, interval, TimeUnit.MILLISECONDS);
+    }
 }
@@ -1,11 +1,29 @@
 package com.warehouse;
 
+import com.warehouse.cache.SecondLevelCacheFactory;
+import com.warehouse.cache.WidgetCacheFactory;
+import com.warehouse.change.ChangeFeedFactory;
+import com.warehouse.db.DatabaseExecutorFactory;
+import com.warehouse.db.ReadReplicaFactory;
+import com.warehouse.index.IndexConfiguration;
+import com.warehouse.ingest.IngestionFactory;
+import com.warehouse.limit.ConcurrencyLimitFactory;
+import com.warehouse.resources.BulkConfiguration;
+import com.warehouse.shard.ShardingFactory;
+import com.warehouse.stats.StatsFactory;
+
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
 import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.validation.Valid;
 import javax.validation.Validation;
 import javax.validation.ValidatorFactory;
@@ -16,6 +34,60 @@ public class WarehouseConfiguration extends Configuration {
     @NotNull
     private DataSourceFactory database = new DataSourceFactory();
 
+    @Valid
+    @NotNull
+    private ReadReplicaFactory readReplica = new ReadReplicaFactory();
+
+    @Valid
+    @NotNull
+    private ShardingFactory sharding = new ShardingFactory();
+
+    @Valid
+    @NotNull
+    private DatabaseExecutorFactory databaseExecutor = new DatabaseExecutorFactory();
+
+    @Valid
+    @NotNull
+    private WidgetCacheFactory widgetCache = new WidgetCacheFactory();
+
+    @Valid
+    @NotNull
+    private SecondLevelCacheFactory secondLevelCache = new SecondLevelCacheFactory();
+
+    @Valid
+    @NotNull
+    private ConcurrencyLimitFactory concurrencyLimits = new ConcurrencyLimitFactory();
+
+    @Valid
+    @NotNull
+    private IngestionFactory ingestion = new IngestionFactory();
+
+    @Valid
+    @NotNull
+    private ChangeFeedFactory changeFeed = new ChangeFeedFactory();
+
+    @Valid
+    @NotNull
+    private IndexConfiguration indexes = new IndexConfiguration();
+
+    @Valid
+    @NotNull
+    private StatsFactory stats = new StatsFactory();
+
+    @Valid
+    @NotNull
+    private BulkConfiguration bulk = new BulkConfiguration();
+
+    // Run the database work of requests on virtual threads
+    private boolean virtualThreads = false;
+
+    // Transactions running longer are rolled back, their statements cancelled, so a hung query ends about when
+    // the database executor would have given up on it. In whole seconds, statements already fail once less than
+    // one remains. Streamed responses have none
+    @NotNull
+    @MinDuration(value = 2, unit = TimeUnit.SECONDS)
+    private Duration transactionTimeout = Duration.seconds(4);
+
     private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
 
     @JsonProperty("swagger")
@@ -31,6 +103,156 @@ public class WarehouseConfiguration extends Configuration {
         this.database = dataSourceFactory;
     }
 
+    @JsonProperty("readReplica")
+    public ReadReplicaFactory getReadReplicaFactory() {
+        return readReplica;
+    }
+
+    @JsonProperty("readReplica")
+    public void setReadReplicaFactory(ReadReplicaFactory readReplicaFactory) {
+        this.readReplica = readReplicaFactory;
+    }
+
+    @JsonProperty("sharding")
+    public ShardingFactory getShardingFactory() {
+        return sharding;
+    }
+
+    @JsonProperty("sharding")
+    public void setShardingFactory(ShardingFactory shardingFactory) {
+        this.sharding = shardingFactory;
+    }
+
+    @JsonProperty("databaseExecutor")
+    public DatabaseExecutorFactory getDatabaseExecutorFactory() {
+        return databaseExecutor;
+    }
+
+    @JsonProperty("databaseExecutor")
+    public void setDatabaseExecutorFactory(DatabaseExecutorFactory databaseExecutorFactory) {
+        this.databaseExecutor = databaseExecutorFactory;
+    }
+
+    @JsonProperty("widgetCache")
+    public WidgetCacheFactory getWidgetCacheFactory() {
+        return widgetCache;
+    }
+
+    @JsonProperty("widgetCache")
+    public void setWidgetCacheFactory(WidgetCacheFactory widgetCacheFactory) {
+        this.widgetCache = widgetCacheFactory;
+    }
+
+    @JsonProperty("secondLevelCache")
+    public SecondLevelCacheFactory getSecondLevelCacheFactory() {
+        return secondLevelCache;
+    }
+
+    @JsonProperty("secondLevelCache")
+    public void setSecondLevelCacheFactory(SecondLevelCacheFactory secondLevelCacheFactory) {
+        this.secondLevelCache = secondLevelCacheFactory;
+    }
+
+    @JsonProperty("concurrencyLimits")
+    public ConcurrencyLimitFactory getConcurrencyLimitFactory() {
+        return concurrencyLimits;
+    }
+
+    @JsonProperty("concurrencyLimits")
+    public void setConcurrencyLimitFactory(ConcurrencyLimitFactory concurrencyLimitFactory) {
+        this.concurrencyLimits = concurrencyLimitFactory;
+    }
+
+    @JsonProperty("ingestion")
+    public IngestionFactory getIngestionFactory() {
+        return ingestion;
+    }
+
+    @JsonProperty("ingestion")
+    public void setIngestionFactory(IngestionFactory ingestionFactory) {
+        this.ingestion = ingestionFactory;
+    }
+
+    @JsonProperty("changeFeed")
+    public ChangeFeedFactory getChangeFeedFactory() {
+        return changeFeed;
+    }
+
+    @JsonProperty("changeFeed")
+    public void setChangeFeedFactory(ChangeFeedFactory changeFeedFactory) {
+        this.changeFeed = changeFeedFactory;
+    }
+
+    @JsonProperty("indexes")
+    public IndexConfiguration getIndexConfiguration() {
+        return indexes;
+    }
+
+    @JsonProperty("indexes")
+    public void setIndexConfiguration(IndexConfiguration indexConfiguration) {
+        this.indexes = indexConfiguration;
+    }
+
+    @JsonProperty("stats")
+    public StatsFactory getStatsFactory() {
+        return stats;
+    }
+
+    @JsonProperty("stats")
+    public void setStatsFactory(StatsFactory statsFactory) {
+        this.stats = statsFactory;
+    }
+
+    @JsonProperty("bulk")
+    public BulkConfiguration getBulkConfiguration() {
+        return bulk;
+    }
+
+    @JsonProperty("bulk")
+    public void setBulkConfiguration(BulkConfiguration bulkConfiguration) {
+        this.bulk = bulkConfiguration;
+    }
+
+    @JsonProperty("virtualThreads")
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @JsonProperty("virtualThreads")
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    @JsonProperty("transactionTimeout")
+    public Duration getTransactionTimeout() {
+        return transactionTimeout;
+    }
+
+    @JsonProperty("transactionTimeout")
+    public void setTransactionTimeout(Duration transactionTimeout) {
+        this.transactionTimeout = transactionTimeout;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "virtualThreads requires databaseExecutor to be enabled")
+    public boolean isVirtualThreadsAvailable() {
+        return !virtualThreads || databaseExecutor.isEnabled();
+    }
+
+    // Settled changes are assumed committed, which only holds if no write transaction outlives settleTime
+    @JsonIgnore
+    @ValidationMethod(message = "changeFeed.settleTime must be longer than transactionTimeout")
+    public boolean isSettleTimeBeyondTransactions() {
+        return !changeFeed.isEnabled()
+                || transactionTimeout.toMilliseconds() < changeFeed.getSettleTime().toMilliseconds();
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "readReplica can't be enabled with sharding, shards have no replicas")
+    public boolean isReadReplicaUnsharded() {
+        return !readReplica.isEnabled() || !sharding.isEnabled();
+    }
+
     public ValidatorFactory getValidatorFactory() {
         return validatorFactory;
     }
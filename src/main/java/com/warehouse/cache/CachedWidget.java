@@ -0,0 +1,41 @@
+package com.warehouse.cache;
+
+import java.util.Date;
+
+import javax.ws.rs.core.EntityTag;
+
+import com.warehouse.representation.WidgetSnapshot;
+
+import lombok.Getter;
+
+/**
+ * A cached widget together with its JSON representation, serialized once when the widget is written
+ * so cache hits can be answered by copying bytes to the response.
+ *
+ * The entity tag is the version of the widget, which changes with every update, so it can also be
+ * checked against the database for conditional writes.
+ */
+@Getter
+public final class CachedWidget {
+    private final WidgetSnapshot snapshot;
+    private final byte[] json;
+    private final EntityTag entityTag;
+
+    CachedWidget(WidgetSnapshot snapshot, byte[] json) {
+        this.snapshot = snapshot;
+        this.json = json;
+        this.entityTag = entityTag(snapshot.getVersion());
+    }
+
+    public static EntityTag entityTag(long version) {
+        return new EntityTag(Long.toString(version));
+    }
+
+    /**
+     * When the widget was last modified, to answer If-Modified-Since.
+     */
+    public Date getLastModified() {
+        long updatedAt = this.snapshot.getUpdatedAt();
+        return new Date(updatedAt != 0L ? updatedAt : this.snapshot.getCreatedAt());
+    }
+}
@@ -0,0 +1,75 @@
+package com.warehouse.cache;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+/**
+ * Records the statistics of a Caffeine cache as meters and timers of the Dropwizard metric registry,
+ * so they are reported alongside the other application metrics.
+ */
+public final class MetricsStatsCounter implements StatsCounter {
+    private final Meter hits;
+    private final Meter misses;
+    private final Timer loadSuccesses;
+    private final Timer loadFailures;
+    private final Meter evictions;
+    private final LongAdder evictionWeight = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    public MetricsStatsCounter(MetricRegistry metrics, String metricsPrefix) {
+        this.hits = metrics.meter(name(metricsPrefix, "hits"));
+        this.misses = metrics.meter(name(metricsPrefix, "misses"));
+        this.loadSuccesses = metrics.timer(name(metricsPrefix, "loads"));
+        this.loadFailures = metrics.timer(name(metricsPrefix, "load-failures"));
+        this.evictions = metrics.meter(name(metricsPrefix, "evictions"));
+    }
+
+    @Override
+    public void recordHits(int count) {
+        this.hits.mark(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        this.misses.mark(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        this.loadSuccesses.update(loadTime, TimeUnit.NANOSECONDS);
+        this.totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        this.loadFailures.update(loadTime, TimeUnit.NANOSECONDS);
+        this.totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordEviction(int weight, RemovalCause cause) {
+        this.evictions.mark();
+        this.evictionWeight.add(weight);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return CacheStats.of(
+                this.hits.getCount(),
+                this.misses.getCount(),
+                this.loadSuccesses.getCount(),
+                this.loadFailures.getCount(),
+                this.totalLoadTime.sum(),
+                this.evictions.getCount(),
+                this.evictionWeight.sum());
+    }
+}
@@ -0,0 +1,163 @@
+package com.warehouse.cache;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.ToLongFunction;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.warehouse.entity.Widget;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configures the Hibernate second-level cache of entities and, optionally, the query cache, backed
+ * by Caffeine through JCache. Every region is created up front with the bounds configured for it in
+ * {@code regions}, by region name.
+ *
+ * The region of update timestamps must outlive the cached query results it validates, so it is
+ * unbounded unless configured otherwise.
+ */
+public class SecondLevelCacheFactory {
+    public static final String ENTITY_REGION = Widget.class.getName();
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    @JsonProperty("queryCache")
+    @Getter
+    @Setter
+    private boolean queryCache = true;
+
+    @JsonProperty("recordStats")
+    @Getter
+    @Setter
+    private boolean recordStats = true;
+
+    @JsonProperty("regions")
+    @Getter
+    @Setter
+    @NotNull
+    @Valid
+    private Map<String, SecondLevelCacheRegion> regions = defaultRegions();
+
+    /**
+     * Enables the caches in the Hibernate configuration, before the session factory is built.
+     */
+    public void configure(Configuration configuration) {
+        // Hibernate enables the cache by itself as soon as a region factory is on the classpath
+        configuration.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, Boolean.toString(this.enabled));
+        if (!this.enabled) {
+            configuration.setProperty(AvailableSettings.USE_QUERY_CACHE, "false");
+            return;
+        }
+
+        configuration.setProperty(AvailableSettings.USE_QUERY_CACHE, Boolean.toString(this.queryCache));
+        configuration.setProperty(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+        configuration.setProperty(ConfigSettings.MISSING_CACHE_STRATEGY, "create-warn");
+        configuration.setProperty(AvailableSettings.GENERATE_STATISTICS, Boolean.toString(this.recordStats));
+        configuration.getProperties().put(ConfigSettings.CACHE_MANAGER, this.buildCacheManager());
+    }
+
+    /**
+     * Registers the hits, misses and puts of the caches, overall and per region, under
+     * {@code metricsPrefix}.
+     */
+    public void registerMetrics(MetricRegistry metrics, String metricsPrefix, SessionFactory sessionFactory) {
+        if (!this.enabled || !this.recordStats) {
+            return;
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        String entityPrefix = name(metricsPrefix, "second-level-cache");
+        metrics.register(name(entityPrefix, "hits"), (Gauge<Long>) statistics::getSecondLevelCacheHitCount);
+        metrics.register(name(entityPrefix, "misses"), (Gauge<Long>) statistics::getSecondLevelCacheMissCount);
+        metrics.register(name(entityPrefix, "puts"), (Gauge<Long>) statistics::getSecondLevelCachePutCount);
+        if (this.queryCache) {
+            String queryPrefix = name(metricsPrefix, "query-cache");
+            metrics.register(name(queryPrefix, "hits"), (Gauge<Long>) statistics::getQueryCacheHitCount);
+            metrics.register(name(queryPrefix, "misses"), (Gauge<Long>) statistics::getQueryCacheMissCount);
+            metrics.register(name(queryPrefix, "puts"), (Gauge<Long>) statistics::getQueryCachePutCount);
+        }
+
+        for (String region : this.regions.keySet()) {
+            String regionPrefix = name(entityPrefix, "regions", region);
+            registerRegionGauge(metrics, name(regionPrefix, "hits"), statistics, region,
+                    CacheRegionStatistics::getHitCount);
+            registerRegionGauge(metrics, name(regionPrefix, "misses"), statistics, region,
+                    CacheRegionStatistics::getMissCount);
+            registerRegionGauge(metrics, name(regionPrefix, "puts"), statistics, region,
+                    CacheRegionStatistics::getPutCount);
+        }
+    }
+
+    private CacheManager buildCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("warehouse-second-level-cache"),
+                SecondLevelCacheFactory.class.getClassLoader());
+
+        Map<String, SecondLevelCacheRegion> regions = new HashMap<>(this.regions);
+        regions.putIfAbsent(UPDATE_TIMESTAMPS_REGION, new SecondLevelCacheRegion());
+        for (Map.Entry<String, SecondLevelCacheRegion> region : regions.entrySet()) {
+            if (cacheManager.getCache(region.getKey()) == null) {
+                cacheManager.createCache(region.getKey(), this.regionConfiguration(region.getValue()));
+            }
+        }
+        return cacheManager;
+    }
+
+    private CaffeineConfiguration<Object, Object> regionConfiguration(SecondLevelCacheRegion region) {
+        // Hibernate caches immutable entries, there is no need for JCache to copy them on every read
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        if (region.getMaximumSize() != null) {
+            configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+        }
+        if (region.getExpireAfterWrite() != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanoseconds()));
+        }
+        return configuration.setStatisticsEnabled(this.recordStats);
+    }
+
+    // Regions are looked up on every read, as Hibernate only knows them once the session factory is built
+    private static void registerRegionGauge(MetricRegistry metrics, String name, Statistics statistics,
+            String region, ToLongFunction<CacheRegionStatistics> value) {
+        metrics.register(name, (Gauge<Long>) () -> {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            return regionStatistics == null ? 0L : value.applyAsLong(regionStatistics);
+        });
+    }
+
+    private static Map<String, SecondLevelCacheRegion> defaultRegions() {
+        Map<String, SecondLevelCacheRegion> regions = new HashMap<>();
+        regions.put(ENTITY_REGION, new SecondLevelCacheRegion(10000L, Duration.minutes(10)));
+        regions.put(QUERY_RESULTS_REGION, new SecondLevelCacheRegion(1000L, Duration.minutes(5)));
+        return regions;
+    }
+}
@@ -0,0 +1,34 @@
+package com.warehouse.cache;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Bounds of a region of the Hibernate second-level cache. A region without {@code maximumSize} or
+ * {@code expireAfterWrite} is unbounded or never expires.
+ */
+public class SecondLevelCacheRegion {
+    @JsonProperty("maximumSize")
+    @Getter
+    @Setter
+    @Min(0)
+    private Long maximumSize;
+
+    @JsonProperty("expireAfterWrite")
+    @Getter
+    @Setter
+    private Duration expireAfterWrite;
+
+    public SecondLevelCacheRegion() {
+    }
+
+    public SecondLevelCacheRegion(Long maximumSize, Duration expireAfterWrite) {
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = expireAfterWrite;
+    }
+}
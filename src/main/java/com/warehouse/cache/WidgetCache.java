@@ -0,0 +1,182 @@
+package com.warehouse.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongFunction;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.warehouse.representation.WidgetSnapshot;
+
+/**
+ * Cache of widgets by ID holding their serialized representation next to the snapshot. Backed by an
+ * asynchronous cache whose loads are futures, so a load in progress holds no lock of the cache.
+ */
+public class WidgetCache {
+    private final AsyncCache<Long, CachedWidget> cache;
+    private final ObjectWriter writer;
+    private final Timer directLoads;
+    private final Meter coalescedLoads;
+
+    public WidgetCache(AsyncCache<Long, CachedWidget> cache, ObjectMapper objectMapper) {
+        this(cache, objectMapper, new Timer(), new Meter());
+    }
+
+    /**
+     * @param directLoads    times the loads run by {@link #get(long, LongFunction)}
+     * @param coalescedLoads counts the misses that waited for a load already running for the same widget
+     */
+    public WidgetCache(AsyncCache<Long, CachedWidget> cache, ObjectMapper objectMapper, Timer directLoads,
+            Meter coalescedLoads) {
+        this.cache = cache;
+        this.writer = writer(objectMapper);
+        this.directLoads = directLoads;
+        this.coalescedLoads = coalescedLoads;
+    }
+
+    public CachedWidget getIfPresent(long id) {
+        return this.cache.synchronous().getIfPresent(id);
+    }
+
+    /**
+     * Returns the cached widget, recording a hit but not a miss. Meant for callers that go on to load a
+     * missing widget with {@link #get(long, LongFunction)}, which records the miss.
+     */
+    public CachedWidget getIfCached(long id) {
+        Cache<Long, CachedWidget> cache = this.cache.synchronous();
+        return cache.policy().getIfPresentQuietly(id) == null ? null : cache.getIfPresent(id);
+    }
+
+    /**
+     * Returns the cached widget, loading it on a miss. Concurrent misses for the same widget are
+     * coalesced: only one of them runs the loader while the others wait for its result, so a popular
+     * widget expiring doesn't send every request waiting for it to the database.
+     *
+     * @param loader loads the widget, or returns null when it doesn't exist
+     * @return the cached widget, or null when it doesn't exist
+     */
+    public CachedWidget get(long id, LongFunction<WidgetSnapshot> loader) {
+        // Looked up quietly, so that the lookup below records the only hit or miss of the request
+        boolean absent = this.cache.synchronous().policy().getIfPresentQuietly(id) == null;
+        // Only registered while the cache holds the entry's lock; the loader runs outside of it, on this
+        // thread, so writes of other widgets never wait for the database
+        CompletableFuture<CachedWidget> load = new CompletableFuture<>();
+        CompletableFuture<CachedWidget> future = this.cache.get(id, (key, executor) -> load);
+        if (future == load) {
+            try (Timer.Context timer = this.directLoads.time()) {
+                WidgetSnapshot snapshot = loader.apply(id);
+                // Completing with null removes the entry
+                load.complete(snapshot == null ? null : serialize(this.writer, snapshot));
+            } catch (RuntimeException | Error e) {
+                load.completeExceptionally(e);
+                throw e;
+            }
+            return load.join();
+        }
+
+        CachedWidget cachedWidget = join(future);
+        if (absent && cachedWidget != null) {
+            this.coalescedLoads.mark();
+        }
+        return cachedWidget;
+    }
+
+    /**
+     * Returns the load of the widget in progress, so a miss can wait for it without holding a thread.
+     *
+     * @return the load completing with the cached widget, or null when it doesn't exist, or null when no
+     *         load of the widget is in progress
+     */
+    public CompletableFuture<CachedWidget> getLoading(long id) {
+        CompletableFuture<CachedWidget> future = this.cache.asMap().get(id);
+        if (future == null || future.isDone()) {
+            return null;
+        }
+        this.coalescedLoads.mark();
+        return future;
+    }
+
+    // Rethrows what the load of another request failed with
+    private static CachedWidget join(CompletableFuture<CachedWidget> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Looks all the IDs up at once.
+     *
+     * @return the cached widgets by ID, without the IDs that missed
+     */
+    public Map<Long, CachedWidget> getAllPresent(Collection<Long> ids) {
+        return this.cache.synchronous().getAllPresent(ids);
+    }
+
+    /**
+     * Serializes the widget and caches it, unless the cache already holds a later version of it, cached by
+     * a concurrent write that committed after this one but published first.
+     *
+     * @return the cached widget, to answer the current request with
+     */
+    public CachedWidget put(WidgetSnapshot snapshot) {
+        CachedWidget cachedWidget = serialize(this.writer, snapshot);
+        CompletableFuture<CachedWidget> written = CompletableFuture.completedFuture(cachedWidget);
+        this.cache.asMap().compute(snapshot.getId(), (id, cached) -> isLater(cached, snapshot) ? cached : written);
+        return cachedWidget;
+    }
+
+    // Loads in progress are replaced, as they may have read the widget before the write
+    private static boolean isLater(CompletableFuture<CachedWidget> cached, WidgetSnapshot snapshot) {
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return false;
+        }
+        CachedWidget cachedWidget = cached.join();
+        return cachedWidget != null && cachedWidget.getSnapshot().getVersion() > snapshot.getVersion();
+    }
+
+    /**
+     * Removes the widget, and any load of it in progress, whose result then isn't cached.
+     */
+    public void invalidate(long id) {
+        this.cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll(Collection<Long> ids) {
+        this.cache.synchronous().invalidateAll(ids);
+    }
+
+    public void invalidateAll() {
+        this.cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Returns a synchronous view of the cache, for its size and statistics.
+     */
+    public Cache<Long, CachedWidget> getCache() {
+        return this.cache.synchronous();
+    }
+
+    static ObjectWriter writer(ObjectMapper objectMapper) {
+        return objectMapper.writerFor(WidgetSnapshot.class);
+    }
+
+    static CachedWidget serialize(ObjectWriter writer, WidgetSnapshot snapshot) {
+        try {
+            return new CachedWidget(snapshot, writer.writeValueAsBytes(snapshot));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize widget " + snapshot.getId(), e);
+        }
+    }
+}
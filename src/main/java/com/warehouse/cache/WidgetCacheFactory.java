@@ -0,0 +1,142 @@
+package com.warehouse.cache;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Builds the cache of widgets by ID. The cache is bounded either by number of entries
+ * ({@code maximumSize}) or, when {@code maximumWeight} is set, by their approximate size in bytes.
+ *
+ * When {@code refreshAfterWrite} is set, a widget read after that delay is reloaded in the background
+ * while the cached one keeps being served, so hot widgets are refreshed before they expire.
+ */
+public class WidgetCacheFactory {
+    @JsonProperty("maximumSize")
+    @Getter
+    @Setter
+    @Min(0)
+    private long maximumSize = 10000;
+
+    @JsonProperty("maximumWeight")
+    @Getter
+    @Setter
+    @Min(0)
+    private Long maximumWeight;
+
+    @JsonProperty("expireAfterWrite")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration expireAfterWrite = Duration.seconds(200);
+
+    @JsonProperty("refreshAfterWrite")
+    @Getter
+    @Setter
+    private Duration refreshAfterWrite;
+
+    // Threads reloading widgets in the background when refreshAfterWrite is set
+    @JsonProperty("refreshThreads")
+    @Getter
+    @Setter
+    @Min(1)
+    private int refreshThreads = 2;
+
+    @JsonProperty("recordStats")
+    @Getter
+    @Setter
+    private boolean recordStats = true;
+
+    @JsonIgnore
+    @ValidationMethod(message = "refreshAfterWrite must be shorter than expireAfterWrite")
+    public boolean isRefreshBeforeExpiry() {
+        return this.refreshAfterWrite == null
+                || this.refreshAfterWrite.toNanoseconds() < this.expireAfterWrite.toNanoseconds();
+    }
+
+    @JsonIgnore
+    public boolean isRefreshAhead() {
+        return this.refreshAfterWrite != null;
+    }
+
+    /**
+     * Builds a cache without refresh-ahead and registers its metrics under {@code metricsPrefix}.
+     */
+    public WidgetCache build(MetricRegistry metrics, String metricsPrefix, ObjectMapper objectMapper) {
+        return this.build(metrics, metricsPrefix, objectMapper, null, null);
+    }
+
+    /**
+     * Builds the cache and registers its metrics under {@code metricsPrefix}.
+     *
+     * @param loader          reloads widgets when refresh-ahead is enabled
+     * @param refreshExecutor runs the reloads
+     */
+    public WidgetCache build(MetricRegistry metrics, String metricsPrefix, ObjectMapper objectMapper,
+            WidgetSnapshotLoader loader, Executor refreshExecutor) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(this.expireAfterWrite.toNanoseconds(), TimeUnit.NANOSECONDS);
+        if (this.maximumWeight != null) {
+            builder.maximumWeight(this.maximumWeight)
+                    .weigher((Long id, CachedWidget widget) -> estimateSize(widget));
+        } else {
+            builder.maximumSize(this.maximumSize);
+        }
+        if (this.recordStats) {
+            builder.recordStats(() -> new MetricsStatsCounter(metrics, metricsPrefix));
+        }
+
+        AsyncCache<Long, CachedWidget> cache;
+        if (this.isRefreshAhead() && loader != null) {
+            ObjectWriter writer = WidgetCache.writer(objectMapper);
+            // A widget deleted in the meantime reloads as null, which removes it from the cache
+            cache = builder.refreshAfterWrite(this.refreshAfterWrite.toNanoseconds(), TimeUnit.NANOSECONDS)
+                    .executor(refreshExecutor)
+                    .buildAsync(id -> {
+                        WidgetSnapshot snapshot = loader.load(id);
+                        return snapshot == null ? null : WidgetCache.serialize(writer, snapshot);
+                    });
+        } else {
+            cache = builder.buildAsync();
+        }
+
+        metrics.register(name(metricsPrefix, "size"), (Gauge<Long>) () -> cache.synchronous().estimatedSize());
+        if (this.recordStats) {
+            metrics.register(name(metricsPrefix, "hit-rate"),
+                    (Gauge<Double>) () -> cache.synchronous().stats().hitRate());
+        }
+        if (!this.recordStats) {
+            return new WidgetCache(cache, objectMapper);
+        }
+        Timer directLoads = metrics.timer(name(metricsPrefix, "direct-loads"));
+        Meter coalescedLoads = metrics.meter(name(metricsPrefix, "coalesced-loads"));
+        return new WidgetCache(cache, objectMapper, directLoads, coalescedLoads);
+    }
+
+    // Rough footprint in bytes of a cached widget: the object headers and fields, plus the JSON and
+    // the strings of the snapshot, which take about as many bytes as the JSON
+    private static int estimateSize(CachedWidget widget) {
+        return 128 + 2 * widget.getJson().length;
+    }
+}
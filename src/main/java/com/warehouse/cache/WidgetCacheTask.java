@@ -0,0 +1,49 @@
+package com.warehouse.cache;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.dropwizard.servlets.tasks.Task;
+
+/**
+ * Admin task to inspect and invalidate the widget cache:
+ * <ul>
+ * <li>{@code POST /tasks/widget-cache} prints the size and statistics of the cache</li>
+ * <li>{@code POST /tasks/widget-cache?id=1} also prints the cached widget 1</li>
+ * <li>{@code POST /tasks/widget-cache?invalidate=1} invalidates widget 1, {@code invalidate=all} every widget</li>
+ * </ul>
+ */
+public class WidgetCacheTask extends Task {
+    private final WidgetCache cache;
+
+    public WidgetCacheTask(WidgetCache cache) {
+        super("widget-cache");
+        this.cache = cache;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) throws Exception {
+        for (String invalidate : parameters.getOrDefault("invalidate", Collections.<String>emptyList())) {
+            if ("all".equals(invalidate)) {
+                this.cache.invalidateAll();
+                output.println("Invalidated all widgets");
+            } else {
+                this.cache.invalidate(Long.parseLong(invalidate));
+                output.println("Invalidated widget " + invalidate);
+            }
+        }
+
+        for (String id : parameters.getOrDefault("id", Collections.<String>emptyList())) {
+            CachedWidget widget = this.cache.getIfPresent(Long.parseLong(id));
+            output.println("Widget " + id + ": "
+                    + (widget == null ? "not cached" : new String(widget.getJson(), StandardCharsets.UTF_8)));
+        }
+
+        output.println("Size: " + this.cache.getCache().estimatedSize());
+        output.println("Stats: " + this.cache.getCache().stats());
+        output.flush();
+    }
+}
@@ -0,0 +1,28 @@
+package com.warehouse.cache;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.hibernate.UnitOfWork;
+
+/**
+ * Reloads cached widgets from the database in the background when refresh-ahead is enabled.
+ *
+ * Meant to be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+ */
+public class WidgetSnapshotLoader {
+
+    private final WidgetDAO widgetDAO;
+
+    public WidgetSnapshotLoader(WidgetDAO widgetDAO) {
+        this.widgetDAO = widgetDAO;
+    }
+
+    /**
+     * @return the widget, or null when it was deleted
+     */
+    @UnitOfWork(readOnly = true)
+    public WidgetSnapshot load(Long id) {
+        return this.widgetDAO.findById(id).map(WidgetSnapshot::of).orElse(null);
+    }
+}
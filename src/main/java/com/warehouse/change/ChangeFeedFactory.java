@@ -0,0 +1,89 @@
+package com.warehouse.change;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Records every widget write in an outbox table, in the transaction of the write, to keep the caches of
+ * several nodes consistent and feed the changes to downstream consumers at GET /widgets/changes.
+ */
+public class ChangeFeedFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    // Identifies this node in the changes it writes, distinct for every node
+    @JsonProperty("nodeId")
+    @Getter
+    @Setter
+    @NotEmpty
+    @Size(max = 64)
+    private String nodeId = UUID.randomUUID().toString();
+
+    // How often the changes of other nodes are applied to the caches of this one
+    @JsonProperty("pollInterval")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration pollInterval = Duration.seconds(1);
+
+    @JsonProperty("pollBatchSize")
+    @Getter
+    @Setter
+    @Min(1)
+    private int pollBatchSize = 1000;
+
+    // Longer than any write transaction plus the clock skew between nodes: a change inserted longer ago than
+    // this is assumed committed, or rolled back. Must exceed transactionTimeout, which bounds write transactions
+    @JsonProperty("settleTime")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration settleTime = Duration.seconds(5);
+
+    // How long changes are kept, and how far behind a consumer of the feed can fall
+    @JsonProperty("retention")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration retention = Duration.days(7);
+
+    @JsonProperty("pruneInterval")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration pruneInterval = Duration.hours(1);
+
+    /**
+     * Builds the poller applying the changes of other nodes to the widget cache and the indexes in use, and
+     * registers its metrics under the given prefix: how long every poll took ({@code polls}) and the changes
+     * applied ({@code applied}).
+     *
+     * @param categoryIndex the category index to update, or null when it isn't used
+     * @param searchIndex   the name search index to update, or null when it isn't used
+     */
+    public ChangePoller buildPoller(MetricRegistry metrics, String metricsPrefix, List<ChangeSource> sources,
+            WidgetCache cache, CategoryAggregateIndex categoryIndex, NameSearchIndex searchIndex) {
+        return new ChangePoller(sources, cache, categoryIndex, searchIndex, this.settleTime.toMilliseconds(),
+                this.pollBatchSize, metrics.timer(name(metricsPrefix, "polls")),
+                metrics.meter(name(metricsPrefix, "applied")));
+    }
+}
@@ -0,0 +1,183 @@
+package com.warehouse.change;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetChangeDAO;
+import com.warehouse.entity.Widget;
+import com.warehouse.entity.WidgetChange;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.representation.WidgetSnapshot;
+
+/**
+ * Applies the widget changes written by other nodes to the caches of this one: the widget cache and,
+ * when enabled, the second-level cache, from which the changed widgets are evicted, and the category and
+ * name search indexes in use, into which they are reloaded. Changes written by this node are skipped, its
+ * caches were updated by the write itself.
+ *
+ * Every source is read from a cursor that only moves past settled changes (see {@link WidgetChangeDAO}),
+ * so a change committed late is still seen. The changes read after the cursor are read again on the
+ * next poll, but only applied once.
+ */
+public class ChangePoller {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangePoller.class);
+
+    private final List<Position> positions = new ArrayList<>();
+    private final WidgetCache cache;
+    private final CategoryAggregateIndex categoryIndex;
+    private final NameSearchIndex searchIndex;
+    private final long settleMillis;
+    private final int batchSize;
+    private final Timer polls;
+    private final Meter applied;
+
+    /**
+     * @param categoryIndex the category index to update, or null when it isn't used
+     * @param searchIndex   the name search index to update, or null when it isn't used
+     * @param settleMillis  how long after its insert a change is settled
+     * @param batchSize     changes read per query, and widgets reloaded per query
+     * @param polls         times every poll of every source
+     * @param applied       counts the changes of other nodes applied
+     */
+    public ChangePoller(List<ChangeSource> sources, WidgetCache cache, CategoryAggregateIndex categoryIndex,
+            NameSearchIndex searchIndex, long settleMillis, int batchSize, Timer polls, Meter applied) {
+        for (ChangeSource source : sources) {
+            this.positions.add(new Position(source));
+        }
+        this.cache = cache;
+        this.categoryIndex = categoryIndex;
+        this.searchIndex = searchIndex;
+        this.settleMillis = settleMillis;
+        this.batchSize = batchSize;
+        this.polls = polls;
+        this.applied = applied;
+    }
+
+    public void poll() {
+        for (Position position : this.positions) {
+            try (Timer.Context timer = this.polls.time()) {
+                position.source.getTransactions().read(() -> {
+                    this.poll(position);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to poll the widget changes of {}", position.source.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the changes older than the retention from every source. Consumers of the change feed
+     * further behind than that miss them.
+     */
+    public void prune(long retentionMillis) {
+        Date cutoff = new Date(System.currentTimeMillis() - retentionMillis);
+        for (Position position : this.positions) {
+            try {
+                int deleted = position.source.getTransactions()
+                        .write(() -> position.source.getChangeDAO().deleteBefore(cutoff));
+                LOGGER.info("Pruned {} widget changes of {}", deleted, position.source.getName());
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to prune the widget changes of {}", position.source.getName(), e);
+            }
+        }
+    }
+
+    private void poll(Position position) {
+        WidgetChangeDAO changeDAO = position.source.getChangeDAO();
+        Date settled = new Date(System.currentTimeMillis() - this.settleMillis);
+        if (position.cursor < 0) {
+            // The caches start empty, there is no older change to apply
+            position.cursor = changeDAO.findSettledSeq(settled).orElse(0L);
+        }
+
+        long after = position.cursor;
+        long cursor = position.cursor;
+        List<Long> widgetIds = new ArrayList<>();
+        List<WidgetChange> changes;
+        do {
+            changes = changeDAO.findAfter(after, this.batchSize);
+            for (WidgetChange change : changes) {
+                if (position.applied.add(change.getSeq()) && !changeDAO.getOrigin().equals(change.getOrigin())) {
+                    widgetIds.add(change.getWidgetId());
+                }
+                if (change.getChangedAt().before(settled)) {
+                    cursor = change.getSeq();
+                }
+                after = change.getSeq();
+            }
+        } while (changes.size() == this.batchSize);
+
+        position.cursor = cursor;
+        position.applied.headSet(cursor, true).clear();
+        if (!widgetIds.isEmpty()) {
+            this.apply(position.source, widgetIds);
+        }
+    }
+
+    private void apply(ChangeSource source, List<Long> widgetIds) {
+        Cache secondLevelCache = source.getSessionFactory().getCache();
+        for (Long widgetId : widgetIds) {
+            this.cache.invalidate(widgetId);
+            secondLevelCache.evictEntityData(Widget.class, widgetId);
+        }
+        secondLevelCache.evictQueryRegions();
+        if (this.categoryIndex != null || this.searchIndex != null) {
+            this.reindex(source, widgetIds);
+        }
+        this.applied.mark(widgetIds.size());
+    }
+
+    // Reloads the changed widgets into the indexes, and removes the deleted ones from them
+    private void reindex(ChangeSource source, List<Long> widgetIds) {
+        Set<Long> deleted = new HashSet<>(widgetIds);
+        List<Long> ids = new ArrayList<>(deleted);
+        for (int from = 0; from < ids.size(); from += this.batchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + this.batchSize, ids.size()));
+            for (Widget widget : source.getWidgetDAO().findByIds(batch)) {
+                deleted.remove(widget.getId());
+                WidgetSnapshot snapshot = WidgetSnapshot.of(widget);
+                if (this.categoryIndex != null) {
+                    this.categoryIndex.put(snapshot);
+                }
+                if (this.searchIndex != null) {
+                    this.searchIndex.put(snapshot);
+                }
+            }
+        }
+        for (Long id : deleted) {
+            if (this.categoryIndex != null) {
+                this.categoryIndex.remove(id);
+            }
+            if (this.searchIndex != null) {
+                this.searchIndex.remove(id);
+            }
+        }
+    }
+
+    private static class Position {
+        private final ChangeSource source;
+        // Changes after the cursor already applied
+        private final NavigableSet<Long> applied = new TreeSet<>();
+        // Negative until the first poll
+        private long cursor = -1;
+
+        private Position(ChangeSource source) {
+            this.source = source;
+        }
+    }
+}
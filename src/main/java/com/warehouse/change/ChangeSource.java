@@ -0,0 +1,38 @@
+package com.warehouse.change;
+
+import org.hibernate.SessionFactory;
+
+import com.warehouse.dao.WidgetChangeDAO;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+
+import lombok.Getter;
+
+/**
+ * A database with an outbox of widget changes: the primary, or every shard when sharded.
+ */
+public class ChangeSource {
+    @Getter
+    private final String name;
+
+    @Getter
+    private final WidgetDAO widgetDAO;
+
+    @Getter
+    private final WidgetChangeDAO changeDAO;
+
+    // Units of work on the database itself, never on a replica that could lag behind it
+    @Getter
+    private final Transactions transactions;
+
+    @Getter
+    private final SessionFactory sessionFactory;
+
+    public ChangeSource(String name, WidgetDAO widgetDAO, Transactions transactions, SessionFactory sessionFactory) {
+        this.name = name;
+        this.widgetDAO = widgetDAO;
+        this.changeDAO = widgetDAO.getChangeDAO();
+        this.transactions = transactions;
+        this.sessionFactory = sessionFactory;
+    }
+}
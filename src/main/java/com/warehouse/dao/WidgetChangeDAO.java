@@ -0,0 +1,102 @@
+package com.warehouse.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.hibernate.SessionFactory;
+
+import com.warehouse.entity.WidgetChange;
+import com.warehouse.entity.WidgetChange.Operation;
+
+import io.dropwizard.hibernate.AbstractDAO;
+
+/**
+ * Writes and reads the outbox of widget changes. Changes are recorded in the session of the write
+ * they describe, so they commit or roll back with it.
+ *
+ * A change is settled once it was inserted longer ago than the settle time, the longest a write
+ * transaction can last plus the clock skew between nodes. Write transactions are bounded by the
+ * transaction timeout, which the configuration requires to be shorter. Sequence numbers are assigned on insert
+ * but changes become visible on commit, so a change can appear after another one with a greater
+ * sequence number, but never after a settled one: readers only move their cursor past settled changes.
+ */
+public class WidgetChangeDAO extends AbstractDAO<WidgetChange> {
+
+    private static final String INSERT = "INSERT INTO widget_change (widget_id, operation, origin, changed_at) "
+            + "VALUES (?, ?, ?, ?)";
+
+    private final String origin;
+
+    /**
+     * @param origin identifies this node in the changes it records
+     */
+    public WidgetChangeDAO(SessionFactory sessionFactory, String origin) {
+        super(sessionFactory);
+        this.origin = origin;
+    }
+
+    public String getOrigin() {
+        return this.origin;
+    }
+
+    /**
+     * Records the same change of several widgets, in a single JDBC batch.
+     */
+    public void record(Operation operation, Collection<Long> widgetIds) {
+        if (widgetIds.isEmpty()) {
+            return;
+        }
+        Timestamp changedAt = new Timestamp(System.currentTimeMillis());
+        this.currentSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (Long widgetId : widgetIds) {
+                    statement.setLong(1, widgetId);
+                    statement.setString(2, operation.name());
+                    statement.setString(3, this.origin);
+                    statement.setTimestamp(4, changedAt);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Returns at most {@code limit} changes with a sequence number greater than {@code since}, in order.
+     */
+    public List<WidgetChange> findAfter(long since, int limit) {
+        return this.list(this.currentSession()
+                .createQuery("from WidgetChange c where c.seq > :since order by c.seq", WidgetChange.class)
+                .setParameter("since", since)
+                .setMaxResults(limit));
+    }
+
+    /**
+     * Returns the sequence number of the last change inserted before {@code before}, empty if there is none.
+     * The changes up to it were inserted earlier still, so a reader starting after it only skips changes
+     * that were settled by then.
+     */
+    public Optional<Long> findSettledSeq(Date before) {
+        return this.currentSession()
+                .createQuery("select c.seq from WidgetChange c where c.changedAt < :before order by c.changedAt desc",
+                        Long.class)
+                .setParameter("before", before)
+                .setMaxResults(1)
+                .uniqueResultOptional();
+    }
+
+    /**
+     * Deletes the changes inserted before {@code cutoff}.
+     *
+     * @return the number of changes deleted
+     */
+    public int deleteBefore(Date cutoff) {
+        return this.currentSession().createQuery("delete from WidgetChange c where c.changedAt < :cutoff")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+    }
+}
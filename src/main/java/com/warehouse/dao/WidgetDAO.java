@@ -1,42 +1,276 @@
 package com.warehouse.dao;
 
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import javax.persistence.Tuple;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.Query;
 
 import com.warehouse.dto.WidgetDTO;
 import com.warehouse.dto.WidgetMapper;
 import com.warehouse.entity.Widget;
+import com.warehouse.entity.WidgetChange.Operation;
+import com.warehouse.representation.CategoryInfo;
 
 import io.dropwizard.hibernate.AbstractDAO;
 
 public class WidgetDAO extends AbstractDAO<Widget> {
 
+    // Number of rows the JDBC driver fetches per round trip while scrolling
+    private static final int SCROLL_FETCH_SIZE = 500;
+
+    // Columns returned by single-statement updates, to answer without reading the widget again
+    private static final String[] WIDGET_COLUMNS = {
+            "id", "name", "category", "price", "created_at", "updated_at", "version" };
+
+    private SessionFactory sessionFactory;
+    private SessionFactory readReplica;
+    private WidgetChangeDAO changeDAO;
     private WidgetMapper widgetMapper;
+    private int batchSize;
+
+    public WidgetDAO(SessionFactory sessionFactory, WidgetMapper widgetMapper, int batchSize) {
+        this(sessionFactory, null, widgetMapper, batchSize);
+    }
+
+    /**
+     * @param readReplica the session factory of the read replica, whose session is used instead of the
+     *                    primary's in the units of work routed to it, or null without replica
+     */
+    public WidgetDAO(SessionFactory sessionFactory, SessionFactory readReplica, WidgetMapper widgetMapper,
+            int batchSize) {
+        this(sessionFactory, readReplica, null, widgetMapper, batchSize);
+    }
 
-    public WidgetDAO(SessionFactory sessionFactory, WidgetMapper widgetMapper) {
+    /**
+     * @param changeDAO records every write in the outbox, in the same transaction, or null to record none
+     */
+    public WidgetDAO(SessionFactory sessionFactory, SessionFactory readReplica, WidgetChangeDAO changeDAO,
+            WidgetMapper widgetMapper, int batchSize) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
+        this.readReplica = readReplica;
+        this.changeDAO = changeDAO;
         this.widgetMapper = widgetMapper;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    protected Session currentSession() {
+        if (this.isOnReadReplica()) {
+            return this.readReplica.getCurrentSession();
+        }
+        return super.currentSession();
+    }
+
+    private boolean isOnReadReplica() {
+        return this.readReplica != null && ManagedSessionContext.hasBind(this.readReplica);
     }
 
     public Widget create(WidgetDTO widgetDTO) {
-        Widget widget = this.widgetMapper.toEntity(widgetDTO);
-        return this.persist(widget);
+        Widget widget = this.persist(this.widgetMapper.toEntity(widgetDTO));
+        this.recordChange(Operation.CREATED, Collections.singletonList(widget.getId()));
+        return widget;
+    }
+
+    /**
+     * Returns the DAO recording the writes in the outbox, null when they aren't recorded.
+     */
+    public WidgetChangeDAO getChangeDAO() {
+        return this.changeDAO;
+    }
+
+    /**
+     * Updates a widget with a single UPDATE statement, without loading it first, and returns the
+     * updated row through the generated keys of the statement.
+     *
+     * @param partial whether only the non-null fields of the DTO are written, as in a PATCH
+     * @return the updated widget, empty if no widget has this ID or it doesn't satisfy the condition
+     */
+    public Optional<Widget> updateById(long id, WidgetDTO widgetDTO, boolean partial, WriteCondition condition) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if (!partial || widgetDTO.getName() != null) {
+            assignments.add("name = ?");
+            parameters.add(widgetDTO.getName());
+        }
+        if (!partial || widgetDTO.getCategory() != null) {
+            assignments.add("category = ?");
+            parameters.add(widgetDTO.getCategory());
+        }
+        if (!partial || widgetDTO.getPrice() != null) {
+            assignments.add("price = ?");
+            parameters.add(widgetDTO.getPrice());
+        }
+        assignments.add("updated_at = ?");
+        parameters.add(new Timestamp(System.currentTimeMillis()));
+        assignments.add("version = version + 1");
+
+        StringBuilder sql = new StringBuilder("UPDATE widget SET ").append(String.join(", ", assignments));
+        appendWhere(sql, parameters, id, condition);
+
+        this.lockCachedWidget(id);
+        Optional<Widget> updated = this.currentSession().doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString(), WIDGET_COLUMNS)) {
+                bind(statement, parameters);
+                if (statement.executeUpdate() == 0) {
+                    return Optional.empty();
+                }
+                try (ResultSet row = statement.getGeneratedKeys()) {
+                    return row.next() ? Optional.of(toWidget(row)) : Optional.empty();
+                }
+            }
+        });
+        if (updated.isPresent()) {
+            this.recordChange(Operation.UPDATED, Collections.singletonList(id));
+        }
+        return updated;
     }
 
-    public Widget update(Widget widget, WidgetDTO widgetDTO) {
-        Widget updatedWidget = this.widgetMapper.updateEntityFromDTO(widget, widgetDTO);
-        return this.persist(updatedWidget);
+    /**
+     * Deletes a widget with a single DELETE statement, without loading it first.
+     *
+     * @return whether a widget with this ID satisfying the condition was deleted
+     */
+    public boolean deleteById(long id, WriteCondition condition) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("DELETE FROM widget");
+        appendWhere(sql, parameters, id, condition);
+
+        this.lockCachedWidget(id);
+        boolean deleted = this.currentSession().doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                bind(statement, parameters);
+                return statement.executeUpdate() > 0;
+            }
+        });
+        if (deleted) {
+            this.recordChange(Operation.DELETED, Collections.singletonList(id));
+        }
+        return deleted;
     }
 
-    public Widget partialUpdate(Widget widget, WidgetDTO widgetDTO) {
-        Widget updatedWidget = this.widgetMapper.partialUpdateEntityFromDTO(widget, widgetDTO);
-        return this.persist(updatedWidget);
+    /**
+     * Returns the current version of a widget, empty if it doesn't exist. Used to tell a missing widget
+     * from a failed condition after a conditional write affected no row.
+     */
+    public Optional<Long> findVersion(long id) {
+        return this.currentSession()
+                .createQuery("select w.version from Widget w where w.id = :id", Long.class)
+                .setParameter("id", id)
+                .uniqueResultOptional();
+    }
+
+    /**
+     * Inserts the widgets in JDBC batches, flushing and clearing the session after every batch so
+     * the persistence context stays small.
+     */
+    public List<Widget> createAll(List<WidgetDTO> widgetDTOs) {
+        Session session = this.batchingSession();
+        List<Widget> createdWidgets = new ArrayList<>(widgetDTOs.size());
+
+        for (WidgetDTO widgetDTO : widgetDTOs) {
+            Widget widget = this.widgetMapper.toEntity(widgetDTO);
+            session.persist(widget);
+            createdWidgets.add(widget);
+            if (createdWidgets.size() % this.batchSize == 0) {
+                this.flushBatch(session);
+            }
+        }
+        this.flushBatch(session);
+        this.recordChange(Operation.CREATED,
+                createdWidgets.stream().map(Widget::getId).collect(Collectors.toList()));
+
+        return createdWidgets;
+    }
+
+    /**
+     * Updates the widgets identified by the keys of {@code widgetDTOs} in JDBC batches, loading each
+     * batch with a single query. Widgets that don't exist are skipped.
+     *
+     * @param partial whether only the non-null fields of the DTOs are applied, as in a PATCH
+     * @return the updated widgets
+     */
+    public List<Widget> updateAll(Map<Long, WidgetDTO> widgetDTOs, boolean partial) {
+        Session session = this.batchingSession();
+        List<Long> ids = new ArrayList<>(widgetDTOs.keySet());
+        List<Widget> updatedWidgets = new ArrayList<>(ids.size());
+
+        for (int from = 0; from < ids.size(); from += this.batchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + this.batchSize, ids.size()));
+            for (Widget widget : this.findByIds(batch)) {
+                WidgetDTO widgetDTO = widgetDTOs.get(widget.getId());
+                updatedWidgets.add(partial
+                        ? this.widgetMapper.partialUpdateEntityFromDTO(widget, widgetDTO)
+                        : this.widgetMapper.updateEntityFromDTO(widget, widgetDTO));
+            }
+            this.flushBatch(session);
+        }
+        this.recordChange(Operation.UPDATED,
+                updatedWidgets.stream().map(Widget::getId).collect(Collectors.toList()));
+
+        return updatedWidgets;
+    }
+
+    /**
+     * Deletes the widgets with the given IDs, one statement per batch.
+     *
+     * @return the IDs of the widgets that existed and were deleted
+     */
+    public Set<Long> deleteAll(Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        Set<Long> deletedIds = new HashSet<>();
+
+        for (int from = 0; from < idList.size(); from += this.batchSize) {
+            List<Long> batch = idList.subList(from, Math.min(from + this.batchSize, idList.size()));
+            List<Long> existingIds = this.currentSession()
+                    .createQuery("select w.id from Widget w where w.id in (:ids)", Long.class)
+                    .setParameterList("ids", batch)
+                    .getResultList();
+            if (!existingIds.isEmpty()) {
+                this.currentSession().createQuery("delete from Widget w where w.id in (:ids)")
+                        .setParameterList("ids", existingIds)
+                        .executeUpdate();
+                deletedIds.addAll(existingIds);
+            }
+        }
+        this.recordChange(Operation.DELETED, deletedIds);
+
+        return deletedIds;
     }
 
     public List<Widget> findAll() {
@@ -47,10 +281,120 @@ public class WidgetDAO extends AbstractDAO<Widget> {
         return this.list(criteriaQueryAll);
     }
 
+    /**
+     * Returns at most {@code limit} widgets with an id greater than {@code afterId}, ordered by id.
+     * Seeking on the primary key keeps every page as cheap as the first one, unlike OFFSET paging.
+     */
+    public List<Widget> findPage(Optional<String> category, long afterId, int limit) {
+        CriteriaQuery<Widget> criteriaQuery = this.keysetQuery(category, afterId);
+
+        return this.list(this.currentSession().createQuery(criteriaQuery)
+                .setMaxResults(limit)
+                .setCacheable(true));
+    }
+
+    /**
+     * Returns at most {@code limit} widgets (optionally of a single category) that come after the given price
+     * and ID and cost at most {@code maxPrice}, ordered by price then ID. Seeks on the index of category,
+     * price and ID.
+     */
+    public List<Widget> findByPrice(Optional<String> category, double afterPrice, long afterId, double maxPrice,
+            int limit) {
+        CriteriaBuilder criteriaBuilder = this.currentSession().getCriteriaBuilder();
+        CriteriaQuery<Widget> criteriaQuery = this.criteriaQuery();
+        Root<Widget> root = criteriaQuery.from(Widget.class);
+        Expression<Double> price = root.get("price");
+        Expression<Long> id = root.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        category.ifPresent(c -> predicates.add(criteriaBuilder.equal(root.get("category"), c)));
+        if (afterPrice != Double.NEGATIVE_INFINITY) {
+            predicates.add(criteriaBuilder.or(
+                    criteriaBuilder.gt(price, afterPrice),
+                    criteriaBuilder.and(criteriaBuilder.equal(price, afterPrice), criteriaBuilder.gt(id, afterId))));
+        }
+        if (maxPrice != Double.POSITIVE_INFINITY) {
+            predicates.add(criteriaBuilder.le(price, maxPrice));
+        }
+        criteriaQuery.select(root)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(price), criteriaBuilder.asc(id));
+
+        return this.list(this.currentSession().createQuery(criteriaQuery).setMaxResults(limit));
+    }
+
+    /**
+     * Streams every widget (optionally of a single category) in id order to {@code consumer}.
+     * Rows are read through a stateless session with a forward-only cursor, so they are neither
+     * tracked by a persistence context nor collected in memory. They are read from the replica when
+     * called in a unit of work routed to it.
+     */
+    public void scroll(Optional<String> category, Consumer<Widget> consumer) {
+        SessionFactory factory = this.isOnReadReplica() ? this.readReplica : this.sessionFactory;
+        try (StatelessSession session = factory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            Query<Widget> query = category
+                    .map(c -> session.createQuery("from Widget w where w.category = :category order by w.id",
+                            Widget.class).setParameter("category", c))
+                    .orElseGet(() -> session.createQuery("from Widget w order by w.id", Widget.class));
+            try (ScrollableResults results = query
+                    .setFetchSize(SCROLL_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    consumer.accept((Widget) results.get(0));
+                }
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+    }
+
     public Optional<Widget> findById(long id) {
         return Optional.ofNullable(this.get(id));
     }
 
+    /**
+     * Loads the widgets with the given IDs with a single IN query, in no particular order.
+     */
+    public List<Widget> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        CriteriaQuery<Widget> criteriaQuery = this.criteriaQuery();
+        Root<Widget> root = criteriaQuery.from(Widget.class);
+        CriteriaQuery<Widget> criteriaQueryByIds = criteriaQuery.select(root)
+                .where(root.get("id").in(ids));
+
+        return this.list(criteriaQueryByIds);
+    }
+
+    /**
+     * Returns at most {@code limit} widgets whose name contains {@code query}, ignoring case, shortest
+     * names first. A scan of the table, for when the name search index isn't available.
+     */
+    public List<Widget> findByName(String query, Optional<String> category, int limit) {
+        CriteriaBuilder criteriaBuilder = this.currentSession().getCriteriaBuilder();
+        CriteriaQuery<Widget> criteriaQuery = this.criteriaQuery();
+        Root<Widget> root = criteriaQuery.from(Widget.class);
+        Expression<String> name = root.get("name");
+        String pattern = "%" + query.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(criteriaBuilder.like(criteriaBuilder.lower(name), pattern, '\\'));
+        category.ifPresent(c -> predicates.add(criteriaBuilder.equal(root.get("category"), c)));
+        criteriaQuery.select(root)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(criteriaBuilder.length(name)), criteriaBuilder.asc(root.get("id")));
+
+        return this.list(this.currentSession().createQuery(criteriaQuery).setMaxResults(limit));
+    }
+
     public List<Widget> findAllByCategory(String category) {
         CriteriaBuilder criteriaBuilder = this.currentSession().getCriteriaBuilder();
         CriteriaQuery<Widget> criteriaQuery = this.criteriaQuery();
@@ -58,10 +402,145 @@ public class WidgetDAO extends AbstractDAO<Widget> {
         CriteriaQuery<Widget> criteriaQueryAll = criteriaQuery.select(root)
                 .where(criteriaBuilder.equal(root.get("category"), category));
 
-        return this.list(criteriaQueryAll);
+        return this.list(this.currentSession().createQuery(criteriaQueryAll).setCacheable(true));
+    }
+
+    /**
+     * Computes the price statistics of a category in the database, without loading its widgets.
+     * Empty when the category has no widgets.
+     */
+    public Optional<CategoryInfo> aggregateByCategory(String category) {
+        return this.aggregate(Optional.of(category)).stream().findFirst();
+    }
+
+    /**
+     * Computes the price statistics of every category with a single GROUP BY query, ordered by category.
+     */
+    public List<CategoryInfo> aggregateAllCategories() {
+        return this.aggregate(Optional.empty());
+    }
+
+    private List<CategoryInfo> aggregate(Optional<String> category) {
+        CriteriaBuilder criteriaBuilder = this.currentSession().getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<Widget> root = criteriaQuery.from(Widget.class);
+        Expression<String> categoryPath = root.get("category");
+        Expression<Double> pricePath = root.get("price");
+
+        criteriaQuery.multiselect(
+                categoryPath,
+                criteriaBuilder.sum(pricePath),
+                criteriaBuilder.count(root),
+                criteriaBuilder.min(pricePath),
+                criteriaBuilder.max(pricePath),
+                criteriaBuilder.avg(pricePath))
+                .groupBy(categoryPath)
+                .orderBy(criteriaBuilder.asc(categoryPath));
+        category.ifPresent(c -> criteriaQuery.where(criteriaBuilder.equal(categoryPath, c)));
+
+        return this.currentSession().createQuery(criteriaQuery).getResultList().stream()
+                .map(tuple -> new CategoryInfo(
+                        tuple.get(0, String.class),
+                        tuple.get(1, Double.class),
+                        tuple.get(2, Long.class).intValue(),
+                        tuple.get(3, Double.class),
+                        tuple.get(4, Double.class),
+                        tuple.get(5, Double.class)))
+                .collect(Collectors.toList());
     }
 
-    public void delete(Widget widget) {
-        this.currentSession().delete(widget);
+    /**
+     * Keeps the second-level cache consistent with a widget written through JDBC, the way Hibernate
+     * does for its own updates: the cached widget is locked until the transaction completes, so no
+     * concurrent transaction can cache the old state meanwhile, and cached queries on widgets are
+     * invalidated. Does nothing when neither cache is enabled.
+     */
+    private void lockCachedWidget(long id) {
+        SessionImplementor session = (SessionImplementor) this.currentSession();
+        SessionFactoryImplementor factory = session.getFactory();
+        EntityPersister persister = factory.getMetamodel().entityPersister(Widget.class);
+
+        if (persister.canWriteToCache()) {
+            EntityDataAccess cacheAccess = persister.getCacheAccessStrategy();
+            Object key = cacheAccess.generateCacheKey(id, persister, factory, session.getTenantIdentifier());
+            SoftLock lock = cacheAccess.lockItem(session, key, null);
+            session.getActionQueue().registerProcess(
+                    (success, completedSession) -> cacheAccess.unlockItem(completedSession, key, lock));
+        }
+
+        if (factory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+            Serializable[] spaces = persister.getQuerySpaces();
+            String[] querySpaces = Arrays.copyOf(spaces, spaces.length, String[].class);
+            TimestampsCache timestamps = factory.getCache().getTimestampsCache();
+            timestamps.preInvalidate(querySpaces, session);
+            session.getActionQueue().registerProcess(
+                    (success, completedSession) -> timestamps.invalidate(querySpaces, completedSession));
+        }
+    }
+
+    private void recordChange(Operation operation, Collection<Long> ids) {
+        if (this.changeDAO != null) {
+            this.changeDAO.record(operation, ids);
+        }
+    }
+
+    private static void appendWhere(StringBuilder sql, List<Object> parameters, long id, WriteCondition condition) {
+        sql.append(" WHERE id = ?");
+        parameters.add(id);
+        if (condition.getVersions() != null) {
+            sql.append(" AND version IN (")
+                    .append(String.join(", ", Collections.nCopies(condition.getVersions().size(), "?")))
+                    .append(")");
+            parameters.addAll(condition.getVersions());
+        }
+        if (condition.getUnmodifiedSince() != null) {
+            // HTTP dates have a precision of one second
+            sql.append(" AND updated_at < ?");
+            parameters.add(new Timestamp(condition.getUnmodifiedSince().getTime() + 1000));
+        }
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+    }
+
+    private static Widget toWidget(ResultSet row) throws SQLException {
+        Widget widget = new Widget();
+        widget.setId(row.getLong("id"));
+        widget.setName(row.getString("name"));
+        widget.setCategory(row.getString("category"));
+        widget.setPrice(row.getDouble("price"));
+        widget.setCreatedAt(row.getTimestamp("created_at"));
+        widget.setUpdatedAt(row.getTimestamp("updated_at"));
+        widget.setVersion(row.getLong("version"));
+        return widget;
+    }
+
+    private Session batchingSession() {
+        Session session = this.currentSession();
+        session.setJdbcBatchSize(this.batchSize);
+        return session;
+    }
+
+    private void flushBatch(Session session) {
+        session.flush();
+        session.clear();
+    }
+
+    private CriteriaQuery<Widget> keysetQuery(Optional<String> category, long afterId) {
+        CriteriaBuilder criteriaBuilder = this.currentSession().getCriteriaBuilder();
+        CriteriaQuery<Widget> criteriaQuery = this.criteriaQuery();
+        Root<Widget> root = criteriaQuery.from(Widget.class);
+
+        Predicate predicate = criteriaBuilder.greaterThan(root.get("id"), afterId);
+        if (category.isPresent()) {
+            predicate = criteriaBuilder.and(predicate, criteriaBuilder.equal(root.get("category"), category.get()));
+        }
+
+        return criteriaQuery.select(root)
+                .where(predicate)
+                .orderBy(criteriaBuilder.asc(root.get("id")));
     }
 }
@@ -0,0 +1,36 @@
+package com.warehouse.dao;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Extra conditions a single-statement write must satisfy, taken from the If-Match and
+ * If-Unmodified-Since headers of the request.
+ */
+@AllArgsConstructor
+@Getter
+public final class WriteCondition {
+    private static final WriteCondition NONE = new WriteCondition(null, null);
+
+    // Versions the widget may have, null for any version
+    private final List<Long> versions;
+
+    // The widget must not have been modified after this date, null for no constraint
+    private final Date unmodifiedSince;
+
+    public static WriteCondition none() {
+        return NONE;
+    }
+
+    public static WriteCondition version(long version) {
+        return new WriteCondition(Collections.singletonList(version), null);
+    }
+
+    public boolean isConditional() {
+        return this.versions != null || this.unmodifiedSince != null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.warehouse.db;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.ws.rs.container.AsyncResponse;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+/**
+ * Runs the database work of asynchronous resource methods on a bounded pool of threads, and resumes
+ * the request with its result. A slow database then ties up these threads rather than the server's,
+ * so requests answered from memory keep flowing. Work that can't be queued, or that waits for a thread
+ * longer than the timeout, is answered with 503 Service Unavailable by a {@link DatabaseUnavailableException}
+ * and never runs, so the request is safe to retry. Work that started runs until it completes or the timeout
+ * of its transaction rolls it back, and answers the request: a write answered while running could still
+ * commit, and a retry would then apply it twice.
+ */
+public class DatabaseExecutor {
+    private final Transactions transactions;
+    private final Executor executor;
+    private final long timeoutMillis;
+    private final Counter inFlight;
+    private final Timer queueWait;
+    private final Meter rejections;
+    private final Meter timeouts;
+
+    /**
+     * @param executor   runs the work, or null to run it on the calling thread without a timeout
+     * @param inFlight   counts the work submitted and not completed
+     * @param queueWait  times how long work waited for a thread
+     * @param rejections counts the work rejected because the queue was full
+     * @param timeouts   counts the requests answered while their work waited for a thread
+     */
+    public DatabaseExecutor(Transactions transactions, Executor executor, long timeoutMillis, Counter inFlight,
+            Timer queueWait, Meter rejections, Meter timeouts) {
+        this.transactions = transactions;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.inFlight = inFlight;
+        this.queueWait = queueWait;
+        this.rejections = rejections;
+        this.timeouts = timeouts;
+    }
+
+    public Transactions getTransactions() {
+        return this.transactions;
+    }
+
+    /**
+     * Runs the work on the calling thread, as synchronous resource methods do.
+     */
+    public static DatabaseExecutor direct(Transactions transactions) {
+        return new DatabaseExecutor(transactions, null, 0, new Counter(), new Timer(), new Meter(), new Meter());
+    }
+
+    /**
+     * Resumes the request with the result of the work, run in a read-only unit of work.
+     */
+    public void read(AsyncResponse response, Supplier<?> work) {
+        this.execute(response, () -> this.transactions.read(work));
+    }
+
+    /**
+     * Resumes the request with the result of the work, run in a read-only unit of work on the primary even
+     * when a read replica serves the other reads. For results that are cached, which mustn't lag behind writes.
+     */
+    public void readPrimary(AsyncResponse response, Supplier<?> work) {
+        this.execute(response, () -> ReadRouting.run(true, () -> this.transactions.read(work)));
+    }
+
+    /**
+     * Resumes the request with the result of the work, run in a unit of work.
+     */
+    public void write(AsyncResponse response, Supplier<?> work) {
+        this.execute(response, () -> this.transactions.write(work));
+    }
+
+    /**
+     * Resumes the request with what the committed function makes of the result of the work, run in a unit
+     * of work. The function runs once the unit of work committed, so it can publish the written state to
+     * caches without ever publishing a write that rolled back.
+     */
+    public <T> void write(AsyncResponse response, Supplier<T> work, Function<? super T, ?> committed) {
+        this.execute(response, () -> committed.apply(this.transactions.write(work)));
+    }
+
+    /**
+     * Resumes the request with the result of the work, run without a unit of work. The response is
+     * written by the thread resuming it, so a streamed response can open its own.
+     */
+    public void execute(AsyncResponse response, Supplier<?> work) {
+        if (this.executor == null) {
+            complete(response, work);
+            return;
+        }
+
+        // Claimed by the timeout while the work is queued, which then never runs, or by the work once started
+        AtomicBoolean claimed = new AtomicBoolean();
+        response.setTimeoutHandler(timedOut -> {
+            if (claimed.compareAndSet(false, true)) {
+                this.timeouts.mark();
+                timedOut.resume(new DatabaseUnavailableException("Timed out waiting for the database"));
+                return;
+            }
+            // The work is running and answers the request once done
+            try {
+                timedOut.setTimeout(this.timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (IllegalStateException e) {
+                // Answered in the meantime
+            }
+        });
+        response.setTimeout(this.timeoutMillis, TimeUnit.MILLISECONDS);
+
+        // The routing of reads set for the request follows its work to the executor's thread
+        boolean primaryRequired = ReadRouting.isPrimaryRequired();
+        long queuedAt = System.nanoTime();
+        this.inFlight.inc();
+        try {
+            this.executor.execute(() -> {
+                this.queueWait.update(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    // The database isn't asked for a request that was already answered
+                    if (claimed.compareAndSet(false, true)) {
+                        complete(response, () -> ReadRouting.run(primaryRequired, work));
+                    }
+                } finally {
+                    this.inFlight.dec();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.inFlight.dec();
+            this.rejections.mark();
+            response.resume(new DatabaseUnavailableException("Too many requests waiting for the database"));
+        }
+    }
+
+    private static void complete(AsyncResponse response, Supplier<?> work) {
+        Object result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            response.resume(e);
+            return;
+        }
+        response.resume(result);
+    }
+}
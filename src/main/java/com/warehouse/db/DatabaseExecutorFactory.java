@@ -0,0 +1,89 @@
+package com.warehouse.db;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Builds the executor running the database work of the widget resource. When it is disabled, that work
+ * runs on the request thread. With virtual threads, every task runs on a thread of its own and waits for
+ * a connection of the database pool, which is then what limits the work in progress.
+ */
+public class DatabaseExecutorFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    // At most as many as the connections of the database pool, more threads would only wait for one.
+    // Not used with virtual threads
+    @JsonProperty("threads")
+    @Getter
+    @Setter
+    @Min(1)
+    private int threads = 16;
+
+    // Work waiting for a thread beyond this is rejected with 503. Not used with virtual threads
+    @JsonProperty("queueSize")
+    @Getter
+    @Setter
+    @Min(1)
+    private int queueSize = 256;
+
+    // Requests whose work waited this long for a thread are answered with 503. Work that started is bounded by the
+    // transaction timeout instead
+    @JsonProperty("timeout")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration timeout = Duration.seconds(5);
+
+    /**
+     * Builds the executor, and registers metrics under the given prefix: the number of tasks submitted and
+     * not completed ({@code in-flight}), waiting for a thread of the pool ({@code queue-depth}), how long they
+     * waited ({@code queue-wait}), and the requests rejected because the queue was full ({@code rejected}) or
+     * answered because they timed out waiting for a thread ({@code timeouts}).
+     *
+     * @param virtualThreads whether to run every task on a new virtual thread rather than on a pool
+     */
+    public DatabaseExecutor build(LifecycleEnvironment lifecycle, MetricRegistry metrics, String metricsPrefix,
+            Transactions transactions, boolean virtualThreads) {
+        if (!this.enabled) {
+            return DatabaseExecutor.direct(transactions);
+        }
+
+        ExecutorService executor;
+        if (virtualThreads) {
+            executor = VirtualThreads.newThreadPerTaskExecutor("database-");
+            lifecycle.manage(new ExecutorServiceManager(executor, Duration.seconds(5), "database"));
+        } else {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(this.queueSize);
+            executor = lifecycle.executorService("database-%d")
+                    .minThreads(this.threads)
+                    .maxThreads(this.threads)
+                    .workQueue(queue)
+                    .build();
+            metrics.register(name(metricsPrefix, "queue-depth"), (Gauge<Integer>) queue::size);
+        }
+        return new DatabaseExecutor(transactions, executor, this.timeout.toMilliseconds(),
+                metrics.counter(name(metricsPrefix, "in-flight")),
+                metrics.timer(name(metricsPrefix, "queue-wait")),
+                metrics.meter(name(metricsPrefix, "rejected")),
+                metrics.meter(name(metricsPrefix, "timeouts")));
+    }
+}
@@ -0,0 +1,16 @@
+package com.warehouse.db;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Answers 503 Service Unavailable to a request whose database work was rejected because the queue was full,
+ * or timed out waiting for a thread. Unlike other 503s, these tell that the database is overloaded.
+ */
+public class DatabaseUnavailableException extends WebApplicationException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(String message) {
+        super(message, Status.SERVICE_UNAVAILABLE);
+    }
+}
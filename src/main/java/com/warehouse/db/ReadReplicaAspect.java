@@ -0,0 +1,87 @@
+package com.warehouse.db;
+
+import java.lang.annotation.Annotation;
+import java.util.Map;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.SessionFactory;
+
+import com.codahale.metrics.Meter;
+
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWork;
+
+/**
+ * Opens the sessions of read-only units of work on the read replica, unless {@link ReadRouting} requires
+ * the primary. Units of work naming a session factory other than the default one are left alone.
+ */
+public class ReadReplicaAspect extends TimedUnitOfWorkAspect {
+    public static final String REPLICA_NAME = HibernateBundle.DEFAULT_NAME + "-replica";
+
+    private final Meter primaryReads;
+    private final Meter replicaReads;
+
+    /**
+     * @param sessionFactories the session factories by name, including the replica's under {@link #REPLICA_NAME}
+     * @param timeoutSeconds   the timeout of every transaction, or 0 for none
+     */
+    public ReadReplicaAspect(Map<String, SessionFactory> sessionFactories, Meter primaryReads, Meter replicaReads,
+            int timeoutSeconds) {
+        super(sessionFactories, timeoutSeconds);
+        this.primaryReads = primaryReads;
+        this.replicaReads = replicaReads;
+    }
+
+    @Override
+    public void beforeStart(UnitOfWork unitOfWork) {
+        if (unitOfWork == null || !unitOfWork.readOnly() || !HibernateBundle.DEFAULT_NAME.equals(unitOfWork.value())) {
+            super.beforeStart(unitOfWork);
+        } else if (ReadRouting.isPrimaryRequired()) {
+            this.primaryReads.mark();
+            super.beforeStart(unitOfWork);
+        } else {
+            this.replicaReads.mark();
+            super.beforeStart(new ReplicaUnitOfWork(unitOfWork));
+        }
+    }
+
+    // The same unit of work, on the replica's session factory
+    private static class ReplicaUnitOfWork implements UnitOfWork {
+        private final UnitOfWork unitOfWork;
+
+        ReplicaUnitOfWork(UnitOfWork unitOfWork) {
+            this.unitOfWork = unitOfWork;
+        }
+
+        @Override
+        public String value() {
+            return REPLICA_NAME;
+        }
+
+        @Override
+        public boolean readOnly() {
+            return true;
+        }
+
+        @Override
+        public boolean transactional() {
+            return this.unitOfWork.transactional();
+        }
+
+        @Override
+        public CacheMode cacheMode() {
+            return this.unitOfWork.cacheMode();
+        }
+
+        @Override
+        public FlushMode flushMode() {
+            return this.unitOfWork.flushMode();
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return UnitOfWork.class;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.warehouse.db;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.SessionFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Builds the session factory of an optional read replica of the database, which serves the read-only
+ * units of work while writes go to the primary. Its connection pool is reported as metrics and checked
+ * for health under the name {@value ReadReplicaAspect#REPLICA_NAME}, next to the primary's.
+ *
+ * The replica has no second-level cache, whose entries would never be evicted by writes, which go to the primary.
+ */
+public class ReadReplicaFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    // Only required when enabled
+    @JsonProperty("database")
+    @Getter
+    @Setter
+    @Valid
+    private DataSourceFactory database;
+
+    // Reads of a client that wrote within this window go to the primary, 0 to always read from the replica
+    @JsonProperty("readYourWritesWindow")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration readYourWritesWindow = Duration.seconds(5);
+
+    // Header telling clients apart for read-your-writes, clients without it are told apart by their address
+    @JsonProperty("clientIdHeader")
+    @Getter
+    @Setter
+    @NotEmpty
+    private String clientIdHeader = "X-Client-Id";
+
+    // Number of recent writers remembered for read-your-writes
+    @JsonProperty("maximumClients")
+    @Getter
+    @Setter
+    @Min(1)
+    private long maximumClients = 100_000;
+
+    @JsonIgnore
+    @ValidationMethod(message = "readReplica.database is required when the read replica is enabled")
+    public boolean isDatabaseConfigured() {
+        return !this.enabled || this.database != null;
+    }
+
+    /**
+     * Builds the session factory of the replica, managed by the environment's lifecycle.
+     */
+    public SessionFactory build(Environment environment, List<Class<?>> entities) {
+        return SessionFactories.buildUncached(environment, ReadReplicaAspect.REPLICA_NAME, this.database, entities,
+                Collections.emptyMap());
+    }
+
+    /**
+     * Builds the proxy factory routing read-only units of work to the replica, and registers the number of
+     * reads sent to the primary and to the replica as metrics under the given prefix.
+     */
+    public ReadReplicaProxyFactory buildProxyFactory(MetricRegistry metrics, String metricsPrefix,
+            SessionFactory primary, SessionFactory replica) {
+        return this.buildProxyFactory(metrics, metricsPrefix, primary, replica, 0);
+    }
+
+    /**
+     * @param timeoutSeconds the timeout of the transactions of the units of work, or 0 for none
+     */
+    public ReadReplicaProxyFactory buildProxyFactory(MetricRegistry metrics, String metricsPrefix,
+            SessionFactory primary, SessionFactory replica, int timeoutSeconds) {
+        return new ReadReplicaProxyFactory(primary, replica, metrics.meter(name(metricsPrefix, "primary-reads")),
+                metrics.meter(name(metricsPrefix, "replica-reads")), timeoutSeconds);
+    }
+
+    /**
+     * Builds the filter sending the reads of recent writers to the primary, and registers the number of
+     * requests it sent there as a metric under the given prefix.
+     */
+    public ReadYourWritesFilter buildFilter(MetricRegistry metrics, String metricsPrefix) {
+        return new ReadYourWritesFilter(this.clientIdHeader, this.readYourWritesWindow.toMilliseconds(),
+                this.maximumClients, metrics.meter(name(metricsPrefix, "read-your-writes")));
+    }
+}
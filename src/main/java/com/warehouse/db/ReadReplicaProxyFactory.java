@@ -0,0 +1,40 @@
+package com.warehouse.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+
+import com.codahale.metrics.Meter;
+
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWorkAspect;
+
+/**
+ * Creates proxies whose read-only units of work read from the replica, as routed by {@link ReadReplicaAspect}.
+ */
+public class ReadReplicaProxyFactory extends TimedUnitOfWorkAwareProxyFactory {
+    private final SessionFactory replica;
+    private final Meter primaryReads;
+    private final Meter replicaReads;
+
+    /**
+     * @param primaryReads counts the read-only units of work that had to read from the primary
+     * @param replicaReads counts the read-only units of work that read from the replica
+     * @param timeoutSeconds the timeout of every transaction, or 0 for none
+     */
+    public ReadReplicaProxyFactory(SessionFactory primary, SessionFactory replica, Meter primaryReads,
+            Meter replicaReads, int timeoutSeconds) {
+        super(HibernateBundle.DEFAULT_NAME, primary, timeoutSeconds);
+        this.replica = replica;
+        this.primaryReads = primaryReads;
+        this.replicaReads = replicaReads;
+    }
+
+    @Override
+    public UnitOfWorkAspect newAspect(Map<String, SessionFactory> sessionFactories) {
+        Map<String, SessionFactory> withReplica = new HashMap<>(sessionFactories);
+        withReplica.put(ReadReplicaAspect.REPLICA_NAME, this.replica);
+        return new ReadReplicaAspect(withReplica, this.primaryReads, this.replicaReads, this.getTimeoutSeconds());
+    }
+}
@@ -0,0 +1,40 @@
+package com.warehouse.db;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the read-only units of work of the current thread must read from the primary database, even
+ * when a read replica serves the others: to read what the same client just wrote, or to read what is
+ * then cached and mustn't lag behind the primary.
+ */
+public final class ReadRouting {
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> false);
+
+    private ReadRouting() {
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get();
+    }
+
+    /**
+     * Requires the primary, or not, for the work that follows on this thread, until it is set again.
+     */
+    public static void setPrimaryRequired(boolean primaryRequired) {
+        PRIMARY_REQUIRED.set(primaryRequired);
+    }
+
+    /**
+     * Runs the work, requiring the primary for it if {@code primaryRequired}, and restores the routing of
+     * the thread afterwards.
+     */
+    public static <T> T run(boolean primaryRequired, Supplier<T> work) {
+        boolean previous = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(previous || primaryRequired);
+        try {
+            return work.get();
+        } finally {
+            PRIMARY_REQUIRED.set(previous);
+        }
+    }
+}
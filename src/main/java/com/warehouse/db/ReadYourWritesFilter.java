@@ -0,0 +1,76 @@
+package com.warehouse.db;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response.Status.Family;
+
+import com.codahale.metrics.Meter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Sends the reads of a client that wrote successfully within the last {@code window} to the primary, so
+ * it reads its own writes whatever the lag of the replica. Clients are told apart by a header they send,
+ * or by their address.
+ */
+@Priority(Priorities.USER)
+public class ReadYourWritesFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private final String clientIdHeader;
+    private final Cache<String, Boolean> recentWriters;
+    private final Meter pinnedRequests;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    /**
+     * @param maximumClients how many recent writers are remembered, the oldest are forgotten first
+     * @param pinnedRequests counts the requests sent to the primary because their client wrote recently
+     */
+    public ReadYourWritesFilter(String clientIdHeader, long windowMillis, long maximumClients, Meter pinnedRequests) {
+        this.clientIdHeader = clientIdHeader;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(windowMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumClients)
+                .build();
+        this.pinnedRequests = pinnedRequests;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        // Set on every request, as the thread served another client before
+        boolean recentWriter = this.recentWriters.getIfPresent(this.clientId(request)) != null;
+        if (recentWriter) {
+            this.pinnedRequests.mark();
+        }
+        ReadRouting.setPrimaryRequired(recentWriter);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        if (!isRead(request.getMethod()) && response.getStatusInfo().getFamily() == Family.SUCCESSFUL) {
+            this.recentWriters.put(this.clientId(request), Boolean.TRUE);
+        }
+    }
+
+    private String clientId(ContainerRequestContext request) {
+        String clientId = request.getHeaderString(this.clientIdHeader);
+        if (clientId != null) {
+            return clientId;
+        }
+        return this.servletRequest == null ? "" : this.servletRequest.getRemoteAddr();
+    }
+
+    private static boolean isRead(String method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.OPTIONS.equals(method);
+    }
+}
@@ -0,0 +1,58 @@
+package com.warehouse.db;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.hibernate.SessionFactoryHealthCheck;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+
+/**
+ * Builds the session factories of databases other than the one of the Hibernate bundle, the way the
+ * bundle builds its own: managed by the environment's lifecycle, with their connection pool reported
+ * as metrics and checked for health under their name.
+ */
+public final class SessionFactories {
+
+    private SessionFactories() {
+    }
+
+    /**
+     * Builds a session factory without second-level cache nor query cache. Their entries would never be
+     * evicted by the writes to the other databases, and the caches of several session factories would share
+     * their regions.
+     *
+     * @param settings Hibernate settings applied on top of the data source's properties
+     */
+    public static SessionFactory buildUncached(Environment environment, String name, DataSourceFactory database,
+            List<Class<?>> entities, Map<String, String> settings) {
+        SessionFactoryFactory sessionFactoryFactory = new SessionFactoryFactory();
+        HibernateBundle<Object> bundle = new HibernateBundle<Object>(entities, sessionFactoryFactory) {
+            @Override
+            public DataSourceFactory getDataSourceFactory(Object configuration) {
+                return database;
+            }
+
+            @Override
+            protected void configure(Configuration configuration) {
+                configuration.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+                configuration.setProperty(AvailableSettings.USE_QUERY_CACHE, "false");
+                settings.forEach(configuration::setProperty);
+            }
+        };
+
+        SessionFactory sessionFactory = sessionFactoryFactory.build(bundle, environment, database, entities, name);
+        environment.healthChecks().register(name, new SessionFactoryHealthCheck(
+                environment.getHealthCheckExecutorService(),
+                database.getValidationQueryTimeout().orElse(Duration.seconds(5)),
+                sessionFactory, database.getValidationQuery()));
+        return sessionFactory;
+    }
+}
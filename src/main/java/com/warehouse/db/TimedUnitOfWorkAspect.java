@@ -0,0 +1,50 @@
+package com.warehouse.db;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+
+import io.dropwizard.hibernate.UnitOfWorkAspect;
+
+/**
+ * Gives the transactions of units of work a timeout: Hibernate cancels their statements once it expired,
+ * through the JDBC query timeout of each, and fails those that follow. A hung query then can't hold a
+ * connection, nor the thread and request waiting for it, for longer than the timeout.
+ */
+public class TimedUnitOfWorkAspect extends UnitOfWorkAspect {
+    private static final ThreadLocal<Boolean> UNBOUNDED = ThreadLocal.withInitial(() -> false);
+
+    private final int timeoutSeconds;
+
+    /**
+     * @param timeoutSeconds the timeout of every transaction, or 0 for none
+     */
+    public TimedUnitOfWorkAspect(Map<String, SessionFactory> sessionFactories, int timeoutSeconds) {
+        super(sessionFactories);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Runs the work, whose units of work then have no timeout. For those lasting as long as a streamed
+     * response, which only read.
+     */
+    public static <T> T unbounded(Supplier<T> work) {
+        boolean previous = UNBOUNDED.get();
+        UNBOUNDED.set(true);
+        try {
+            return work.get();
+        } finally {
+            UNBOUNDED.set(previous);
+        }
+    }
+
+    // Called once the session is open and before its transaction begins, which starts the timeout
+    @Override
+    protected void configureSession() {
+        super.configureSession();
+        if (this.timeoutSeconds > 0 && !UNBOUNDED.get()) {
+            this.getSession().getTransaction().setTimeout(this.timeoutSeconds);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.warehouse.db;
+
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWorkAspect;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+
+/**
+ * Creates proxies whose units of work time out, as {@link TimedUnitOfWorkAspect} does.
+ */
+public class TimedUnitOfWorkAwareProxyFactory extends UnitOfWorkAwareProxyFactory {
+    private final int timeoutSeconds;
+
+    /**
+     * @param timeoutSeconds the timeout of every transaction, or 0 for none
+     */
+    public TimedUnitOfWorkAwareProxyFactory(HibernateBundle<?> bundle, int timeoutSeconds) {
+        super(bundle);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public TimedUnitOfWorkAwareProxyFactory(String name, SessionFactory sessionFactory, int timeoutSeconds) {
+        super(name, sessionFactory);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    protected int getTimeoutSeconds() {
+        return this.timeoutSeconds;
+    }
+
+    @Override
+    public UnitOfWorkAspect newAspect(Map<String, SessionFactory> sessionFactories) {
+        return new TimedUnitOfWorkAspect(sessionFactories, this.timeoutSeconds);
+    }
+}
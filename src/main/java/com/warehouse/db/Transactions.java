@@ -0,0 +1,32 @@
+package com.warehouse.db;
+
+import java.util.function.Supplier;
+
+import io.dropwizard.hibernate.UnitOfWork;
+
+/**
+ * Runs work in a unit of work of its own, on whatever thread calls it. Resource methods that are
+ * resumed on another thread can't rely on the request's {@link UnitOfWork}.
+ *
+ * Meant to be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+ */
+public class Transactions {
+
+    @UnitOfWork(readOnly = true)
+    public <T> T read(Supplier<T> work) {
+        return work.get();
+    }
+
+    @UnitOfWork
+    public <T> T write(Supplier<T> work) {
+        return work.get();
+    }
+
+    /**
+     * Runs the work in a read-only unit of work without the timeout of {@link TimedUnitOfWorkAspect}, for
+     * work lasting as long as a streamed response.
+     */
+    public <T> T stream(Supplier<T> work) {
+        return TimedUnitOfWorkAspect.unbounded(() -> this.read(work));
+    }
+}
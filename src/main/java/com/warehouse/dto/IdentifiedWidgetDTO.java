@@ -0,0 +1,27 @@
+package com.warehouse.dto;
+
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@ApiModel(description = "Widget DTO carrying the ID of the widget to update, used by bulk updates")
+public class IdentifiedWidgetDTO extends WidgetDTO {
+    @JsonProperty("id")
+    @Getter
+    @Setter
+    @NotNull
+    @ApiModelProperty(value = "Widget ID", example = "123")
+    private Long id;
+
+    public IdentifiedWidgetDTO(Long id, String name, String category, Double price) {
+        super(name, category, price);
+        this.id = id;
+    }
+}
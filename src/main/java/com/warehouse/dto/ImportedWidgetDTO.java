@@ -0,0 +1,27 @@
+package com.warehouse.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// The other properties of an exported widget, such as its timestamps and version, are ignored
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ApiModel(description = "Widget DTO of an import, carrying the ID of the widget to update if it exists")
+public class ImportedWidgetDTO extends WidgetDTO {
+    @JsonProperty("id")
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widget ID, absent to create a widget", example = "123")
+    private Long id;
+
+    public ImportedWidgetDTO(Long id, String name, String category, Double price) {
+        super(name, category, price);
+        this.id = id;
+    }
+}
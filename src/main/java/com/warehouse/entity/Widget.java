@@ -2,14 +2,23 @@ package com.warehouse.entity;
 
 import java.util.Date;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
@@ -21,13 +30,22 @@ import lombok.Setter;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "widget")
+// For the price queries of a category, when not answered from memory
+@Table(name = "widget", indexes = @Index(name = "widget_category_price", columnList = "category, price, id"))
+// Only used when the second-level cache is enabled
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @ApiModel(description = "A widget that represents an item in the warehouse")
 public class Widget {
     @Getter
     @Setter
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // A pooled sequence rather than IDENTITY, so Hibernate can assign IDs without an INSERT and batch inserts.
+    // When sharded, the IDs also tell the shard of the widget
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "widget_id_seq")
+    @GenericGenerator(name = "widget_id_seq", strategy = "com.warehouse.shard.ShardIdGenerator", parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "widget_id_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50") })
     @ApiModelProperty(value = "Widget ID", example = "123")
     private long id;
 
@@ -55,4 +73,19 @@ public class Widget {
     @CreationTimestamp
     @ApiModelProperty(value = "Timestamp when the widget is created", example = "1711300944611")
     private Date createdAt;
+
+    @Getter
+    @Setter
+    @Column(name = "updated_at")
+    @UpdateTimestamp
+    @ApiModelProperty(value = "Timestamp when the widget was last modified", example = "1711300944611")
+    private Date updatedAt;
+
+    // Incremented by Hibernate on every update, for optimistic locking and entity tags
+    @Getter
+    @Setter
+    @Version
+    @Column(name = "version", nullable = false)
+    @ApiModelProperty(value = "Version of the widget, incremented on every update", example = "3")
+    private long version;
 }
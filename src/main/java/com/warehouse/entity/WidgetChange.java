@@ -0,0 +1,65 @@
+package com.warehouse.entity;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A row of the outbox: a widget was created, updated or deleted, in the transaction that inserted the
+ * row. Rows are only ever inserted, and deleted once older than the retention.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "widget_change", indexes = @Index(name = "widget_change_changed_at", columnList = "changed_at"))
+public class WidgetChange {
+
+    public enum Operation {
+        CREATED, UPDATED, DELETED
+    }
+
+    // Assigned by the database on insert, unlike pooled sequence values which nodes reserve in advance, so the
+    // sequence numbers of the changes follow the order in which they were written
+    @Getter
+    @Setter
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private long seq;
+
+    @Getter
+    @Setter
+    @Column(name = "widget_id", nullable = false)
+    private long widgetId;
+
+    @Getter
+    @Setter
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 16)
+    private Operation operation;
+
+    // The node that wrote the change, which doesn't need to apply it to its own cache
+    @Getter
+    @Setter
+    @Column(name = "origin", nullable = false, length = 64)
+    private String origin;
+
+    // Clock of the writing node when the row was inserted
+    @Getter
+    @Setter
+    @Column(name = "changed_at", nullable = false)
+    private Date changedAt;
+}
@@ -0,0 +1,235 @@
+package com.warehouse.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.WidgetSnapshot;
+
+/**
+ * Keeps the price statistics of every category in memory so {@link CategoryInfo} can be answered
+ * without querying the database.
+ *
+ * The index remembers the category and price of each widget, which lets writers simply report the
+ * new state of a widget: the previous contribution is looked up and reverted here. Updates of the
+ * same widget are serialized by the per-ID map, while different widgets update the shared category
+ * counters concurrently.
+ *
+ * Optionally, the widgets of every category are also kept ordered by price and ID in a skip list, to
+ * answer price ranges and the cheapest widgets in logarithmic time.
+ */
+public class CategoryAggregateIndex {
+
+    private static final Comparator<WidgetSnapshot> BY_PRICE = Comparator.comparingDouble(WidgetSnapshot::getPrice)
+            .thenComparingLong(WidgetSnapshot::getId);
+
+    private final boolean priceOrdered;
+    private final ConcurrentMap<Long, Entry> widgets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CategoryAggregate> categories = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public CategoryAggregateIndex() {
+        this(false);
+    }
+
+    /**
+     * @param priceOrdered whether to also keep the widgets ordered by price, for {@link #findByPrice}
+     */
+    public CategoryAggregateIndex(boolean priceOrdered) {
+        this.priceOrdered = priceOrdered;
+    }
+
+    /**
+     * Whether the index has been populated from the database and can be used to answer queries.
+     */
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+
+    public void markLoaded() {
+        this.loaded = true;
+    }
+
+    /**
+     * Whether the index can answer {@link #findByPrice}, once loaded.
+     */
+    public boolean isPriceOrdered() {
+        return this.priceOrdered;
+    }
+
+    /**
+     * Records the current state of a created or updated widget, unless the index already holds a later
+     * version of it: writes and loads report their snapshots in any order.
+     */
+    public void put(WidgetSnapshot widget) {
+        Entry entry;
+        do {
+            entry = this.widgets.compute(widget.getId(), (id, previous) -> {
+                if (previous != null && previous.widget.getVersion() > widget.getVersion()) {
+                    return previous;
+                }
+                if (previous != null) {
+                    previous.aggregate.remove(previous.widget);
+                }
+                CategoryAggregate aggregate = this.categories.computeIfAbsent(widget.getCategory(),
+                        category -> new CategoryAggregate(category, this.priceOrdered));
+                aggregate.add(widget);
+                return new Entry(aggregate, widget);
+            });
+            // Added to an aggregate that clearCategory replaced meanwhile, whose sweep may have missed it
+        } while (this.categories.get(entry.widget.getCategory()) != entry.aggregate);
+    }
+
+    public void remove(long id) {
+        this.widgets.computeIfPresent(id, (key, previous) -> {
+            previous.aggregate.remove(previous.widget);
+            return null;
+        });
+    }
+
+    /**
+     * Forgets every widget of a category, so it can be reloaded from the database.
+     */
+    public void clearCategory(String category) {
+        CategoryAggregate stale = this.categories.put(category, new CategoryAggregate(category, this.priceOrdered));
+        if (stale != null) {
+            this.widgets.values().removeIf(entry -> entry.aggregate == stale);
+        }
+    }
+
+    /**
+     * Returns the statistics of a category, empty if it has no widgets.
+     */
+    public Optional<CategoryInfo> get(String category) {
+        CategoryAggregate aggregate = this.categories.get(category);
+        if (aggregate == null || aggregate.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(aggregate.toCategoryInfo());
+    }
+
+    /**
+     * Returns the statistics of every category that has widgets, ordered by category.
+     */
+    public List<CategoryInfo> getAll() {
+        return this.categories.values().stream()
+                .filter(aggregate -> !aggregate.isEmpty())
+                .map(CategoryAggregate::toCategoryInfo)
+                .sorted((first, second) -> first.getCategory().compareTo(second.getCategory()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns at most {@code limit} widgets of the category, or of every category, that come after the
+     * given price and ID and cost at most {@code maxPrice}, ordered by price then ID. Requires a price
+     * ordered index.
+     */
+    public List<WidgetSnapshot> findByPrice(Optional<String> category, double afterPrice, long afterId,
+            double maxPrice, int limit) {
+        if (!this.priceOrdered) {
+            throw new IllegalStateException("The index isn't ordered by price");
+        }
+        WidgetSnapshot from = new WidgetSnapshot(afterId, null, null, afterPrice, 0L, 0L, 0L);
+        WidgetSnapshot to = new WidgetSnapshot(Long.MAX_VALUE, null, null, maxPrice, 0L, 0L, 0L);
+        if (BY_PRICE.compare(from, to) >= 0) {
+            return new ArrayList<>();
+        }
+
+        if (category.isPresent()) {
+            CategoryAggregate aggregate = this.categories.get(category.get());
+            return aggregate == null ? new ArrayList<>() : aggregate.range(from, to, limit);
+        }
+
+        // The first widgets of every category, of which the first ones overall
+        List<WidgetSnapshot> widgets = new ArrayList<>();
+        for (CategoryAggregate aggregate : this.categories.values()) {
+            widgets.addAll(aggregate.range(from, to, limit));
+        }
+        widgets.sort(BY_PRICE);
+        return widgets.size() > limit ? new ArrayList<>(widgets.subList(0, limit)) : widgets;
+    }
+
+    private static final class Entry {
+        private final CategoryAggregate aggregate;
+        private final WidgetSnapshot widget;
+
+        private Entry(CategoryAggregate aggregate, WidgetSnapshot widget) {
+            this.aggregate = aggregate;
+            this.widget = widget;
+        }
+    }
+
+    private static final class CategoryAggregate {
+        private final String category;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder totalPrice = new DoubleAdder();
+        // Multiset of prices, to keep min and max correct when the cheapest or dearest widget goes away
+        private final ConcurrentSkipListMap<Double, Long> prices = new ConcurrentSkipListMap<>();
+        // The widgets ordered by price then ID, null unless the index is ordered by price
+        private final ConcurrentSkipListMap<WidgetSnapshot, Boolean> byPrice;
+
+        private CategoryAggregate(String category, boolean priceOrdered) {
+            this.category = category;
+            this.byPrice = priceOrdered ? new ConcurrentSkipListMap<>(BY_PRICE) : null;
+        }
+
+        private void add(WidgetSnapshot widget) {
+            double price = widget.getPrice();
+            this.prices.merge(price, 1L, Long::sum);
+            this.totalPrice.add(price);
+            this.count.increment();
+            if (this.byPrice != null) {
+                this.byPrice.put(widget, Boolean.TRUE);
+            }
+        }
+
+        private void remove(WidgetSnapshot widget) {
+            double price = widget.getPrice();
+            this.count.decrement();
+            this.totalPrice.add(-price);
+            this.prices.computeIfPresent(price, (key, occurrences) -> occurrences == 1 ? null : occurrences - 1);
+            if (this.byPrice != null) {
+                this.byPrice.remove(widget);
+            }
+        }
+
+        // The widgets after from, up to to included
+        private List<WidgetSnapshot> range(WidgetSnapshot from, WidgetSnapshot to, int limit) {
+            NavigableMap<WidgetSnapshot, Boolean> range = this.byPrice.subMap(from, false, to, true);
+            List<WidgetSnapshot> widgets = new ArrayList<>(Math.min(limit, 16));
+            for (WidgetSnapshot widget : range.keySet()) {
+                if (widgets.size() == limit) {
+                    break;
+                }
+                widgets.add(widget);
+            }
+            return widgets;
+        }
+
+        private boolean isEmpty() {
+            return this.count.sum() <= 0;
+        }
+
+        private CategoryInfo toCategoryInfo() {
+            long numberOfWidgets = this.count.sum();
+            double sum = this.totalPrice.sum();
+            Map.Entry<Double, Long> min = this.prices.firstEntry();
+            Map.Entry<Double, Long> max = this.prices.lastEntry();
+
+            return new CategoryInfo(this.category, sum, (int) numberOfWidgets,
+                    min == null ? null : min.getKey(),
+                    max == null ? null : max.getKey(),
+                    numberOfWidgets == 0 ? null : sum / numberOfWidgets);
+        }
+    }
+}
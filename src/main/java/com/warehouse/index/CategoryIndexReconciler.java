@@ -0,0 +1,99 @@
+package com.warehouse.index;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.hibernate.UnitOfWork;
+
+/**
+ * Loads the {@link CategoryAggregateIndex} from the database and periodically compares it with the
+ * aggregates computed by the database, reloading the categories that drifted (e.g. because of a
+ * transaction that was rolled back after the index had been updated).
+ *
+ * Writes still in flight during a pass can make a category look out of sync, so a category is only
+ * reloaded once it disagrees with the database on two consecutive passes.
+ *
+ * Meant to be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+ */
+public class CategoryIndexReconciler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CategoryIndexReconciler.class);
+
+    // Relative tolerance when comparing price sums, which are accumulated in a different order than in the database
+    private static final double PRICE_TOLERANCE = 1e-9;
+
+    private final WidgetDAO widgetDAO;
+    private final CategoryAggregateIndex index;
+    private Set<String> suspects = new HashSet<>();
+
+    public CategoryIndexReconciler(WidgetDAO widgetDAO, CategoryAggregateIndex index) {
+        this.widgetDAO = widgetDAO;
+        this.index = index;
+    }
+
+    public void load() {
+        try {
+            long start = System.nanoTime();
+            this.widgetDAO.scroll(Optional.empty(), widget -> this.index.put(WidgetSnapshot.of(widget)));
+            this.index.markLoaded();
+            LOGGER.info("Loaded category index in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to load category index, category info is served from the database", e);
+        }
+    }
+
+    @UnitOfWork(readOnly = true)
+    public void reconcile() {
+        if (!this.index.isLoaded()) {
+            this.load();
+            return;
+        }
+
+        try {
+            Map<String, CategoryInfo> expected = this.widgetDAO.aggregateAllCategories().stream()
+                    .collect(Collectors.toMap(CategoryInfo::getCategory, Function.identity()));
+            Map<String, CategoryInfo> actual = this.index.getAll().stream()
+                    .collect(Collectors.toMap(CategoryInfo::getCategory, Function.identity()));
+
+            Set<String> categories = new HashSet<>(expected.keySet());
+            categories.addAll(actual.keySet());
+            Set<String> drifted = categories.stream()
+                    .filter(category -> !matches(expected.get(category), actual.get(category)))
+                    .collect(Collectors.toSet());
+
+            for (String category : drifted) {
+                if (this.suspects.contains(category)) {
+                    LOGGER.warn("Category index drifted for '{}', reloading it", category);
+                    this.index.clearCategory(category);
+                    this.widgetDAO.scroll(Optional.of(category), widget -> this.index.put(WidgetSnapshot.of(widget)));
+                }
+            }
+            this.suspects = drifted;
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to reconcile category index", e);
+        }
+    }
+
+    private static boolean matches(CategoryInfo expected, CategoryInfo actual) {
+        if (expected == null || actual == null) {
+            return expected == actual;
+        }
+        double tolerance = PRICE_TOLERANCE * Math.max(1d, Math.abs(expected.getTotalPrice()));
+        return expected.getNumberOfWidgets() == actual.getNumberOfWidgets()
+                && Math.abs(expected.getTotalPrice() - actual.getTotalPrice()) <= tolerance
+                && Objects.equals(expected.getMinPrice(), actual.getMinPrice())
+                && Objects.equals(expected.getMaxPrice(), actual.getMaxPrice());
+    }
+}
@@ -0,0 +1,45 @@
+package com.warehouse.index;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+public class IndexConfiguration {
+    @JsonProperty("categoryAggregatesEnabled")
+    @Getter
+    @Setter
+    private boolean categoryAggregatesEnabled = true;
+
+    @JsonProperty("priceOrderEnabled")
+    @Getter
+    @Setter
+    private boolean priceOrderEnabled = true;
+
+    @JsonProperty("reconciliationInterval")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration reconciliationInterval = Duration.minutes(5);
+
+    @JsonProperty("nameSearchEnabled")
+    @Getter
+    @Setter
+    private boolean nameSearchEnabled = true;
+
+    @JsonProperty("nameSearchMaxWidgets")
+    @Getter
+    @Setter
+    @Min(1)
+    private int nameSearchMaxWidgets = 1_000_000;
+
+    @JsonProperty("nameSearchRebuildInterval")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration nameSearchRebuildInterval = Duration.hours(1);
+}
@@ -0,0 +1,430 @@
+package com.warehouse.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.codahale.metrics.Timer;
+import com.warehouse.representation.WidgetSnapshot;
+
+/**
+ * Searches widgets by name in memory: case-insensitive substring search through an inverted index of the
+ * trigrams of the names. The candidates of a query are the widgets having its rarest trigram, checked
+ * against the whole query. Queries shorter than a trigram check every widget.
+ *
+ * Matches are ranked by relevance: a name equal to the query first, then names starting with it, names with
+ * a word starting with it, and names containing it elsewhere; shorter names first among equals.
+ *
+ * Memory is bounded by the number of widgets: beyond it, the index empties itself and is no longer
+ * available, so searches go to the database, until a rebuild finds few enough widgets. Updated and deleted
+ * widgets leave stale entries behind, dropped once they outnumber the live ones.
+ */
+public class NameSearchIndex {
+
+    public static final int GRAM_LENGTH = 3;
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt((Match match) -> match.relevance)
+            .reversed()
+            .thenComparingInt(match -> match.widget.getName().length())
+            .thenComparingLong(match -> match.widget.getId());
+
+    private final int maxWidgets;
+    private final Timer searches;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by the lock
+    private Postings current;
+    // Guarded by the lock, only during a rebuild
+    private Postings building;
+    private volatile boolean loaded;
+
+    /**
+     * @param searches times the searches answered by the index
+     */
+    public NameSearchIndex(int maxWidgets, Timer searches) {
+        this.maxWidgets = maxWidgets;
+        this.searches = searches;
+        this.current = new Postings(maxWidgets, false);
+    }
+
+    /**
+     * An index that holds nothing and is never available, for when name search is disabled.
+     */
+    public static NameSearchIndex disabled() {
+        return new NameSearchIndex(0, new Timer());
+    }
+
+    /**
+     * Whether the index has been loaded and holds every widget, so it can answer searches.
+     */
+    public boolean isAvailable() {
+        if (!this.loaded) {
+            return false;
+        }
+        this.lock.readLock().lock();
+        try {
+            return !this.current.overflowed;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the current state of a created or updated widget.
+     */
+    public void put(WidgetSnapshot widget) {
+        this.lock.writeLock().lock();
+        try {
+            this.current.put(widget);
+            if (this.building != null) {
+                this.building.put(widget);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        this.lock.writeLock().lock();
+        try {
+            this.current.remove(id);
+            if (this.building != null) {
+                this.building.remove(id);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the index again from every widget given by {@code scan}, and replaces it once complete. Writes
+     * made meanwhile apply to both, so the new index misses none of them, and a widget read by the scan
+     * before it was written or deleted doesn't override its write. Only one rebuild runs at a time.
+     *
+     * @param scan gives the current state of every widget to its consumer
+     */
+    public void rebuild(Consumer<Consumer<WidgetSnapshot>> scan) {
+        this.lock.writeLock().lock();
+        try {
+            this.building = new Postings(this.maxWidgets, true);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        try {
+            scan.accept(widget -> {
+                this.lock.writeLock().lock();
+                try {
+                    this.building.load(widget);
+                } finally {
+                    this.lock.writeLock().unlock();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.lock.writeLock().lock();
+            try {
+                this.building = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            this.building.built();
+            this.current = this.building;
+            this.building = null;
+            this.loaded = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most relevant widgets whose name contains the query, ignoring case, most relevant first.
+     * Queries shorter than {@link #GRAM_LENGTH} are refused: they would have to scan every widget while
+     * holding the lock that writes wait for.
+     */
+    public List<WidgetSnapshot> search(String query, Optional<String> category, int limit) {
+        if (query.length() < GRAM_LENGTH) {
+            throw new IllegalArgumentException("Queries need at least " + GRAM_LENGTH + " characters");
+        }
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        PriorityQueue<Match> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+
+        try (Timer.Context timer = this.searches.time()) {
+            this.lock.readLock().lock();
+            try {
+                this.current.forEachCandidate(lowerQuery, document -> {
+                    if (category.isPresent() && !category.get().equals(document.widget.getCategory())) {
+                        return;
+                    }
+                    int position = document.lowerName.indexOf(lowerQuery);
+                    if (position >= 0) {
+                        top.add(new Match(document.widget, relevance(document.lowerName, lowerQuery, position)));
+                        if (top.size() > limit) {
+                            top.poll();
+                        }
+                    }
+                });
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+
+        return top.stream().sorted(RANKING).map(match -> match.widget).collect(Collectors.toList());
+    }
+
+    /**
+     * Ranks widgets found elsewhere, such as in the database, the way the index ranks its matches. Widgets
+     * whose name doesn't contain the query are left out.
+     */
+    public static List<WidgetSnapshot> rank(String query, List<WidgetSnapshot> widgets, int limit) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        List<Match> matches = new ArrayList<>(widgets.size());
+        for (WidgetSnapshot widget : widgets) {
+            String lowerName = widget.getName().toLowerCase(Locale.ROOT);
+            int position = lowerName.indexOf(lowerQuery);
+            if (position >= 0) {
+                matches.add(new Match(widget, relevance(lowerName, lowerQuery, position)));
+            }
+        }
+        return matches.stream().sorted(RANKING).limit(limit).map(match -> match.widget).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the number of widgets indexed.
+     */
+    public int getSize() {
+        this.lock.readLock().lock();
+        try {
+            return this.current.slots.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries of the inverted index, stale ones included, which its memory follows.
+     */
+    public long getPostings() {
+        this.lock.readLock().lock();
+        try {
+            return this.current.postings;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // 3 for an equal name, 2 for a name starting with the query, 1 for a word starting with it, 0 otherwise
+    static int relevance(String lowerName, String lowerQuery, int position) {
+        if (position == 0) {
+            return lowerName.length() == lowerQuery.length() ? 3 : 2;
+        }
+        if (!Character.isLetterOrDigit(lowerName.charAt(position - 1))) {
+            return 1;
+        }
+        // A later occurrence may start a word
+        for (int next = lowerName.indexOf(lowerQuery, position + 1); next > 0;
+                next = lowerName.indexOf(lowerQuery, next + 1)) {
+            if (!Character.isLetterOrDigit(lowerName.charAt(next - 1))) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    // The distinct trigrams of a string, three chars packed in a long
+    static long[] grams(String lower) {
+        if (lower.length() < GRAM_LENGTH) {
+            return new long[0];
+        }
+        long[] grams = new long[lower.length() - GRAM_LENGTH + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) lower.charAt(i) << 32) | ((long) lower.charAt(i + 1) << 16) | lower.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private static final class Document {
+        private final WidgetSnapshot widget;
+        private final String lowerName;
+
+        private Document(WidgetSnapshot widget, String lowerName) {
+            this.widget = widget;
+            this.lowerName = lowerName;
+        }
+    }
+
+    private static final class Match {
+        private final WidgetSnapshot widget;
+        private final int relevance;
+
+        private Match(WidgetSnapshot widget, int relevance) {
+            this.widget = widget;
+            this.relevance = relevance;
+        }
+    }
+
+    /**
+     * The documents and the inverted index, not thread-safe. Every document has a slot, and the postings of
+     * a trigram are the slots of the documents having it. A document written again gets a new slot, and its
+     * previous slot is left empty until compaction.
+     */
+    private static final class Postings {
+        private final int maxWidgets;
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private List<Document> documents = new ArrayList<>();
+        private Map<Long, IntList> grams = new HashMap<>();
+        // While building, the widgets deleted since the rebuild started, which the scan may still read
+        private Set<Long> removed;
+        private int emptySlots;
+        private long postings;
+        private boolean overflowed;
+
+        private Postings(int maxWidgets, boolean building) {
+            this.maxWidgets = maxWidgets;
+            this.removed = building ? new HashSet<>() : null;
+        }
+
+        private void put(WidgetSnapshot widget) {
+            this.index(widget);
+        }
+
+        // A widget read by a scan, unless a write of a later version or its deletion came first
+        private void load(WidgetSnapshot widget) {
+            if (this.removed.contains(widget.getId())) {
+                return;
+            }
+            Integer slot = this.slots.get(widget.getId());
+            if (slot != null && this.documents.get(slot).widget.getVersion() >= widget.getVersion()) {
+                return;
+            }
+            this.index(widget);
+        }
+
+        private void built() {
+            this.removed = null;
+        }
+
+        private void remove(long id) {
+            if (this.removed != null) {
+                this.removed.add(id);
+            }
+            Integer slot = this.slots.remove(id);
+            if (slot != null) {
+                this.documents.set(slot, null);
+                this.emptySlots++;
+                this.compactIfSparse();
+            }
+        }
+
+        private void index(WidgetSnapshot widget) {
+            if (this.overflowed) {
+                return;
+            }
+            String lowerName = widget.getName().toLowerCase(Locale.ROOT);
+            Integer slot = this.slots.get(widget.getId());
+            if (slot != null) {
+                Document previous = this.documents.get(slot);
+                if (previous.lowerName.equals(lowerName)) {
+                    // Same trigrams
+                    this.documents.set(slot, new Document(widget, lowerName));
+                    return;
+                }
+                this.documents.set(slot, null);
+                this.emptySlots++;
+            } else if (this.slots.size() >= this.maxWidgets) {
+                this.overflow();
+                return;
+            }
+
+            this.add(new Document(widget, lowerName));
+            this.compactIfSparse();
+        }
+
+        private void add(Document document) {
+            int slot = this.documents.size();
+            this.documents.add(document);
+            this.slots.put(document.widget.getId(), slot);
+            for (long gram : grams(document.lowerName)) {
+                this.grams.computeIfAbsent(gram, key -> new IntList()).add(slot);
+                this.postings++;
+            }
+        }
+
+        private void compactIfSparse() {
+            if (this.emptySlots > Math.max(this.slots.size(), 1024)) {
+                List<Document> live = new ArrayList<>(this.slots.size());
+                for (Document document : this.documents) {
+                    if (document != null) {
+                        live.add(document);
+                    }
+                }
+                this.documents = new ArrayList<>(live.size());
+                this.grams = new HashMap<>();
+                this.slots.clear();
+                this.emptySlots = 0;
+                this.postings = 0;
+                live.forEach(this::add);
+            }
+        }
+
+        private void overflow() {
+            this.overflowed = true;
+            this.slots.clear();
+            this.documents = new ArrayList<>();
+            this.grams = new HashMap<>();
+            this.emptySlots = 0;
+            this.postings = 0;
+        }
+
+        /**
+         * Gives the documents that may contain the query, at least a trigram long: those having its
+         * rarest trigram.
+         */
+        private void forEachCandidate(String lowerQuery, Consumer<Document> consumer) {
+            long[] queryGrams = grams(lowerQuery);
+            IntList rarest = null;
+            for (long gram : queryGrams) {
+                IntList slots = this.grams.get(gram);
+                if (slots == null) {
+                    return;
+                }
+                if (rarest == null || slots.size < rarest.size) {
+                    rarest = slots;
+                }
+            }
+            for (int i = 0; i < rarest.size; i++) {
+                Document document = this.documents.get(rarest.values[i]);
+                if (document != null) {
+                    consumer.accept(document);
+                }
+            }
+        }
+    }
+
+    // Growable array of slots, smaller than boxed integers
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+}
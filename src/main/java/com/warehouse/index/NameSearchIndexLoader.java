@@ -0,0 +1,42 @@
+package com.warehouse.index;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.representation.WidgetSnapshot;
+
+/**
+ * Builds the {@link NameSearchIndex} from the database, at startup and then periodically, which corrects
+ * what the index missed: writes of other nodes, and writes rolled back after the index had been updated.
+ */
+public class NameSearchIndexLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NameSearchIndexLoader.class);
+
+    private final WidgetDAO widgetDAO;
+    private final NameSearchIndex index;
+
+    public NameSearchIndexLoader(WidgetDAO widgetDAO, NameSearchIndex index) {
+        this.widgetDAO = widgetDAO;
+        this.index = index;
+    }
+
+    public void rebuild() {
+        try {
+            long start = System.nanoTime();
+            this.index.rebuild(consumer -> this.widgetDAO.scroll(Optional.empty(),
+                    widget -> consumer.accept(WidgetSnapshot.of(widget))));
+            if (this.index.isAvailable()) {
+                LOGGER.info("Built name search index of {} widgets in {} ms", this.index.getSize(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } else {
+                LOGGER.warn("Too many widgets for the name search index, searches are served from the database");
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to build name search index", e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.warehouse.ingest;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+import com.warehouse.entity.Widget;
+
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Builds the queue creating the widgets of POST /widgets in group commits. When it is disabled, every
+ * widget is created in a transaction of its own.
+ */
+public class IngestionFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    // Answer 202 Accepted with the URL of the widget's status as soon as it is queued, rather than once it is created
+    @JsonProperty("async")
+    @Getter
+    @Setter
+    private boolean async = false;
+
+    // Widgets queued beyond this are rejected with 503 and Retry-After
+    @JsonProperty("queueSize")
+    @Getter
+    @Setter
+    @Min(1)
+    private int queueSize = 10000;
+
+    @JsonProperty("maxBatchSize")
+    @Getter
+    @Setter
+    @Min(1)
+    private int maxBatchSize = 500;
+
+    // Longest time a widget waits for others to share its commit
+    @JsonProperty("maxDelay")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration maxDelay = Duration.milliseconds(5);
+
+    @JsonProperty("retryAfter")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration retryAfter = Duration.seconds(1);
+
+    // Requests whose widget wasn't created in time are answered with 503 while it is still queued, in which case
+    // it is withdrawn, or with 504 once its batch is being committed, as the widget may then still be created
+    @JsonProperty("timeout")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration timeout = Duration.seconds(5);
+
+    // Threads completing the widgets of committed batches, which publishes them and answers their requests, so the
+    // writer can go on with the next batch
+    @JsonProperty("completionThreads")
+    @Getter
+    @Setter
+    @Min(1)
+    private int completionThreads = 4;
+
+    // How long the status of a widget queued in async mode can be looked up
+    @JsonProperty("statusRetention")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration statusRetention = Duration.minutes(10);
+
+    /**
+     * Builds the queue, managed by the lifecycle, and registers metrics under the given prefix: the widgets
+     * queued ({@code queue-depth}), the size of every batch ({@code batch-size}), how long its commit took
+     * ({@code commits}) and the widgets rejected because the queue was full ({@code rejected}).
+     */
+    public IngestionQueue build(LifecycleEnvironment lifecycle, MetricRegistry metrics, String metricsPrefix,
+            WidgetDAO widgetDAO, Transactions transactions) {
+        Cache<String, CompletableFuture<Widget>> tickets = Caffeine.newBuilder()
+                .expireAfterWrite(this.statusRetention.toMilliseconds(), TimeUnit.MILLISECONDS)
+                .build();
+        // Managed before the queue, so it is stopped after the queue completed the widgets left
+        ExecutorService completions = lifecycle.executorService("widget-ingestion-completion-%d")
+                .minThreads(this.completionThreads)
+                .maxThreads(this.completionThreads)
+                .build();
+        IngestionQueue queue = new IngestionQueue(this.queueSize, this.async, this.retryAfter.toSeconds(),
+                this.timeout.toMilliseconds(), this.maxBatchSize,
+                this.maxDelay.toNanoseconds(), widgetDAO, transactions, completions, tickets,
+                metrics.histogram(name(metricsPrefix, "batch-size")), metrics.timer(name(metricsPrefix, "commits")),
+                metrics.meter(name(metricsPrefix, "rejected")));
+        metrics.register(name(metricsPrefix, "queue-depth"), (Gauge<Integer>) queue::getQueueDepth);
+        lifecycle.manage(queue);
+        return queue;
+    }
+}
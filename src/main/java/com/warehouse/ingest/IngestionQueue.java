@@ -0,0 +1,277 @@
+package com.warehouse.ingest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.entity.Widget;
+
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * Creates widgets in group commits: widgets to create wait in a bounded queue, from which a single writer
+ * inserts them in batches, one transaction per batch. A batch is committed once it has {@code maxBatchSize}
+ * widgets, or {@code maxDelay} after its first widget was queued, so concurrent producers share the cost
+ * of a commit rather than paying one each.
+ *
+ * A batch that fails is retried one widget at a time, so a single bad widget doesn't fail the others.
+ * The widgets of a batch are completed on the completion executor: what depends on them, such as publishing
+ * them and answering their requests, then runs there rather than holding up the next batch.
+ */
+public class IngestionQueue implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestionQueue.class);
+
+    private final BlockingQueue<PendingWidget> queue;
+    private final boolean async;
+    private final long retryAfterSeconds;
+    private final long timeoutMillis;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final WidgetDAO widgetDAO;
+    private final Transactions transactions;
+    private final Executor completions;
+    private final Cache<String, CompletableFuture<Widget>> tickets;
+    private final Histogram batchSizes;
+    private final Timer commits;
+    private final Meter rejections;
+    // Held to queue a widget, and exclusively to stop, so that no widget is queued once the writer is stopping
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * @param async         whether requests are answered as soon as their widget is queued
+     * @param timeoutMillis how long requests wait for their widget to be created, when not async
+     * @param tickets       the widgets queued with {@link #track(CompletableFuture)}, by ticket
+     * @param batchSizes    the number of widgets of every batch committed
+     * @param commits       times the insertion and commit of every batch
+     * @param rejections    counts the widgets rejected because the queue was full
+     */
+    public IngestionQueue(int queueSize, boolean async, long retryAfterSeconds, long timeoutMillis, int maxBatchSize,
+            long maxDelayNanos, WidgetDAO widgetDAO, Transactions transactions,
+            Cache<String, CompletableFuture<Widget>> tickets, Histogram batchSizes, Timer commits,
+            Meter rejections) {
+        this(queueSize, async, retryAfterSeconds, timeoutMillis, maxBatchSize, maxDelayNanos, widgetDAO, transactions,
+                Runnable::run, tickets, batchSizes, commits, rejections);
+    }
+
+    /**
+     * @param completions completes the widgets once committed, and runs what depends on them
+     */
+    public IngestionQueue(int queueSize, boolean async, long retryAfterSeconds, long timeoutMillis, int maxBatchSize,
+            long maxDelayNanos, WidgetDAO widgetDAO, Transactions transactions, Executor completions,
+            Cache<String, CompletableFuture<Widget>> tickets, Histogram batchSizes, Timer commits,
+            Meter rejections) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.async = async;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.timeoutMillis = timeoutMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.widgetDAO = widgetDAO;
+        this.transactions = transactions;
+        this.completions = completions;
+        this.tickets = tickets;
+        this.batchSizes = batchSizes;
+        this.commits = commits;
+        this.rejections = rejections;
+    }
+
+    /**
+     * Queues a widget to create.
+     *
+     * @return completed with the widget once its batch committed, or null if the queue is full or stopped
+     */
+    public CompletableFuture<Widget> offer(WidgetDTO widgetDTO) {
+        PendingWidget pending = new PendingWidget(widgetDTO);
+        Lock lock = this.lifecycle.readLock();
+        lock.lock();
+        try {
+            if (!this.running || !this.queue.offer(pending)) {
+                this.rejections.mark();
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return pending.created;
+    }
+
+    /**
+     * Removes a widget from the queue, unless the writer already took it to commit.
+     *
+     * @param created as returned by {@link #offer(WidgetDTO)}
+     * @return whether the widget was removed, and then won't be created
+     */
+    public boolean withdraw(CompletableFuture<Widget> created) {
+        return this.queue.removeIf(pending -> pending.created == created);
+    }
+
+    /**
+     * Keeps the outcome of a queued widget for a while, so it can be looked up by the returned ticket.
+     */
+    public String track(CompletableFuture<Widget> created) {
+        String ticket = UUID.randomUUID().toString();
+        this.tickets.put(ticket, created);
+        return ticket;
+    }
+
+    /**
+     * @return the outcome of the widget queued with this ticket, empty if the ticket is unknown or expired
+     */
+    public Optional<CompletableFuture<Widget>> getTracked(String ticket) {
+        return Optional.ofNullable(this.tickets.getIfPresent(ticket));
+    }
+
+    public boolean isAsync() {
+        return this.async;
+    }
+
+    /**
+     * @return how long producers are asked to wait before trying again when the queue is full
+     */
+    public long getRetryAfterSeconds() {
+        return this.retryAfterSeconds;
+    }
+
+    /**
+     * @return how long requests wait for their widget to be created, when not async
+     */
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    @Override
+    public void start() {
+        this.running = true;
+        this.writer = new Thread(this::write, "widget-ingestion");
+        this.writer.start();
+    }
+
+    /**
+     * Stops accepting widgets, and returns once the queued ones were committed.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        Lock lock = this.lifecycle.writeLock();
+        lock.lock();
+        try {
+            this.running = false;
+        } finally {
+            lock.unlock();
+        }
+        this.writer.join();
+
+        // Left by a writer that was interrupted
+        List<PendingWidget> late = new ArrayList<>();
+        this.queue.drainTo(late);
+        late.forEach(pending -> pending.created.completeExceptionally(
+                new IllegalStateException("Widget ingestion has stopped")));
+    }
+
+    private void write() {
+        List<PendingWidget> batch = new ArrayList<>(this.maxBatchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                this.collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.running = false;
+            }
+            if (!batch.isEmpty()) {
+                this.commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Waits for a first widget, then for more until the batch is full or the delay elapsed
+    private void collectBatch(List<PendingWidget> batch) throws InterruptedException {
+        PendingWidget first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + this.maxDelayNanos;
+        while (batch.size() < this.maxBatchSize) {
+            if (this.queue.drainTo(batch, this.maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            PendingWidget next = remaining > 0 ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingWidget> batch) {
+        List<WidgetDTO> widgetDTOs = batch.stream().map(pending -> pending.widgetDTO).collect(Collectors.toList());
+        List<Widget> created;
+        try (Timer.Context context = this.commits.time()) {
+            created = this.transactions.write(() -> this.widgetDAO.createAll(widgetDTOs));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                PendingWidget pending = batch.get(0);
+                this.complete(() -> pending.created.completeExceptionally(e));
+                return;
+            }
+            LOGGER.warn("Failed to commit a batch of {} widgets, committing them one at a time", batch.size(), e);
+            batch.forEach(pending -> this.commit(Collections.singletonList(pending)));
+            return;
+        }
+
+        this.batchSizes.update(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWidget pending = batch.get(i);
+            Widget widget = created.get(i);
+            this.complete(() -> pending.created.complete(widget));
+        }
+    }
+
+    private void complete(Runnable completion) {
+        try {
+            this.completions.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // The executor is stopping
+            completion.run();
+        }
+    }
+
+    private static class PendingWidget {
+        private final WidgetDTO widgetDTO;
+        private final CompletableFuture<Widget> created = new CompletableFuture<>();
+
+        PendingWidget(WidgetDTO widgetDTO) {
+            this.widgetDTO = widgetDTO;
+        }
+    }
+}
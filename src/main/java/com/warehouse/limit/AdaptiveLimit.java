@@ -0,0 +1,96 @@
+package com.warehouse.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit adjusted to the measured latency, in the manner of the gradient algorithm of
+ * Netflix's concurrency-limits. The limit shrinks when requests get slower than their long-term average,
+ * and grows by about its square root while they don't and the traffic uses at least half of it. A request
+ * dropped by an overloaded server shrinks it multiplicatively, as AIMD does.
+ */
+public class AdaptiveLimit {
+    // Number of samples the long-term average latency is computed over
+    private static final int LONG_WINDOW = 600;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double longRtt;
+
+    /**
+     * @param tolerance how much slower than their long-term average requests can get before the limit shrinks
+     */
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return whether the request can proceed, in which case {@link #release(long, boolean)} or {@link #release()}
+     *         must follow
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = this.inFlight.get();
+            if (current >= this.getLimit()) {
+                return false;
+            }
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param rttNanos time the request took
+     * @param dropped  whether the server was too busy to serve the request
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int inFlight = this.inFlight.getAndDecrement();
+        this.update(Math.max(1, rttNanos), dropped, inFlight);
+    }
+
+    /**
+     * Gives the permit back without a latency sample, for a request whose duration says nothing about the
+     * latency of the server, such as a response streamed for as long as the client reads it.
+     */
+    public void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) this.limit;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    private synchronized void update(long rtt, boolean dropped, int inFlight) {
+        if (dropped) {
+            this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+            return;
+        }
+
+        this.longRtt = this.longRtt == 0 ? rtt : this.longRtt + (rtt - this.longRtt) / LONG_WINDOW;
+        // Let the average come down quickly once latency has recovered
+        if (this.longRtt / rtt > 2) {
+            this.longRtt *= 0.95;
+        }
+        // The latency of a limit the traffic doesn't reach says nothing about it
+        if (inFlight < this.limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, this.tolerance * this.longRtt / rtt));
+        double newLimit = this.limit * gradient + Math.sqrt(this.limit);
+        newLimit = this.limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, newLimit));
+    }
+}
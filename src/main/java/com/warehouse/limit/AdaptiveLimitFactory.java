@@ -0,0 +1,59 @@
+package com.warehouse.limit;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.validation.ValidationMethod;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Bounds of the adaptive concurrency limit of a {@link LimitGroup}.
+ */
+public class AdaptiveLimitFactory {
+    @JsonProperty("initialLimit")
+    @Getter
+    @Setter
+    @Min(1)
+    private int initialLimit = 20;
+
+    @JsonProperty("minLimit")
+    @Getter
+    @Setter
+    @Min(1)
+    private int minLimit = 1;
+
+    @JsonProperty("maxLimit")
+    @Getter
+    @Setter
+    @Min(1)
+    private int maxLimit = 200;
+
+    // How much slower than usual requests can get before the limit shrinks
+    @JsonProperty("tolerance")
+    @Getter
+    @Setter
+    @DecimalMin("1.0")
+    private double tolerance = 1.5;
+
+    public AdaptiveLimitFactory() {
+    }
+
+    public AdaptiveLimitFactory(int initialLimit, int maxLimit) {
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "initialLimit must be between minLimit and maxLimit")
+    public boolean isInitialLimitInBounds() {
+        return this.minLimit <= this.initialLimit && this.initialLimit <= this.maxLimit;
+    }
+
+    public AdaptiveLimit build() {
+        return new AdaptiveLimit(this.initialLimit, this.minLimit, this.maxLimit, this.tolerance);
+    }
+}
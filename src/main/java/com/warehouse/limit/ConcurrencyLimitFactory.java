@@ -0,0 +1,86 @@
+package com.warehouse.limit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Builds the adaptive concurrency limits of the {@link LimitGroup}s. Requests beyond the limit of their
+ * group are answered with 503 Service Unavailable, telling clients when to retry.
+ */
+public class ConcurrencyLimitFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    @JsonProperty("retryAfter")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration retryAfter = Duration.seconds(1);
+
+    @JsonProperty("reads")
+    @Getter
+    @Setter
+    @Valid
+    @NotNull
+    private AdaptiveLimitFactory reads = new AdaptiveLimitFactory(50, 500);
+
+    @JsonProperty("writes")
+    @Getter
+    @Setter
+    @Valid
+    @NotNull
+    private AdaptiveLimitFactory writes = new AdaptiveLimitFactory(20, 200);
+
+    @JsonProperty("info")
+    @Getter
+    @Setter
+    @Valid
+    @NotNull
+    private AdaptiveLimitFactory info = new AdaptiveLimitFactory(10, 100);
+
+    /**
+     * Builds the feature applying the limits, and registers metrics under the given prefix for every group:
+     * its current {@code limit}, the requests {@code in-flight} and the {@code rejected} ones.
+     */
+    public ConcurrencyLimitFeature build(MetricRegistry metrics, String metricsPrefix) {
+        Map<LimitGroup, ConcurrencyLimitFilter> filters = new EnumMap<>(LimitGroup.class);
+        long retryAfterSeconds = Math.max(1, this.retryAfter.toSeconds());
+        for (LimitGroup group : LimitGroup.values()) {
+            AdaptiveLimit limit = this.getFactory(group).build();
+            String groupPrefix = name(metricsPrefix, group.getName());
+            metrics.register(name(groupPrefix, "limit"), (Gauge<Integer>) limit::getLimit);
+            metrics.register(name(groupPrefix, "in-flight"), (Gauge<Integer>) limit::getInFlight);
+            filters.put(group, new ConcurrencyLimitFilter(group, limit, metrics.meter(name(groupPrefix, "rejected")),
+                    retryAfterSeconds));
+        }
+        return new ConcurrencyLimitFeature(filters);
+    }
+
+    private AdaptiveLimitFactory getFactory(LimitGroup group) {
+        switch (group) {
+        case READS:
+            return this.reads;
+        case WRITES:
+            return this.writes;
+        case INFO:
+            return this.info;
+        default:
+            throw new IllegalArgumentException("Unknown group " + group);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.warehouse.limit;
+
+import java.util.Map;
+
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import com.warehouse.db.DatabaseUnavailableException;
+
+/**
+ * Registers the filter of its group on every resource method annotated with {@link ConcurrencyLimited}, and
+ * gives the permits back once the requests finished. That is after their response was written, streamed ones
+ * included, so that they count against the limit while they stream. Streamed responses last as long as the client
+ * reads them, and aren't taken as latency samples. Only the requests the database was too busy for count as
+ * dropped; other 503s don't tell that the server is overloaded.
+ */
+public class ConcurrencyLimitFeature implements DynamicFeature, ApplicationEventListener {
+    private final Map<LimitGroup, ConcurrencyLimitFilter> filters;
+
+    public ConcurrencyLimitFeature(Map<LimitGroup, ConcurrencyLimitFilter> filters) {
+        this.filters = filters;
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        ConcurrencyLimited limited = resourceInfo.getResourceMethod().getAnnotation(ConcurrencyLimited.class);
+        if (limited != null) {
+            context.register(this.filters.get(limited.value()));
+        }
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return new Releaser();
+    }
+
+    private static final class Releaser implements RequestEventListener {
+        private ConcurrencyLimitFilter.Permit permit;
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            // Taken on the first event after the filter admitted the request
+            if (this.permit == null && event.getContainerRequest() != null) {
+                this.permit = ConcurrencyLimitFilter.take(event.getContainerRequest());
+            }
+            if (event.getType() == RequestEvent.Type.FINISHED && this.permit != null) {
+                ContainerResponse response = event.getContainerResponse();
+                if (response != null && response.getEntity() instanceof StreamingOutput) {
+                    this.permit.releaseStreamed();
+                } else {
+                    this.permit.release(event.getException() instanceof DatabaseUnavailableException);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.warehouse.limit;
+
+import java.io.IOException;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.codahale.metrics.Meter;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+/**
+ * Admits the requests of a {@link LimitGroup} while its limit allows, and answers the others with
+ * 503 Service Unavailable and a Retry-After header before their entity is even read. The permit of an
+ * admitted request is given back by the {@link ConcurrencyLimitFeature} once its response has been written.
+ */
+@Priority(Priorities.AUTHENTICATION - 100)
+public class ConcurrencyLimitFilter implements ContainerRequestFilter {
+    private static final String PERMIT = ConcurrencyLimitFilter.class.getName() + ".permit";
+
+    private final LimitGroup group;
+    private final AdaptiveLimit limit;
+    private final Meter rejections;
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(LimitGroup group, AdaptiveLimit limit, Meter rejections, long retryAfterSeconds) {
+        this.group = group;
+        this.limit = limit;
+        this.rejections = rejections;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        if (!this.limit.tryAcquire()) {
+            this.rejections.mark();
+            request.abortWith(Response.status(Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, this.retryAfterSeconds)
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorMessage(Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                            "Too many concurrent " + this.group.getName() + " requests"))
+                    .build());
+            return;
+        }
+        request.setProperty(PERMIT, new Permit(this.limit, System.nanoTime()));
+    }
+
+    /**
+     * Takes the permit held by the request over, so that it outlives the request's properties, which a
+     * servlet container clears once the response is complete.
+     *
+     * @return the permit, or null when the request wasn't admitted or its permit was already taken
+     */
+    static Permit take(ContainerRequestContext request) {
+        Object permit = request.getProperty(PERMIT);
+        if (permit != null) {
+            request.removeProperty(PERMIT);
+        }
+        return (Permit) permit;
+    }
+
+    static final class Permit {
+        private final AdaptiveLimit limit;
+        private final long startedAt;
+
+        Permit(AdaptiveLimit limit, long startedAt) {
+            this.limit = limit;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * @param dropped whether the request was answered because the server was too busy to serve it
+         */
+        void release(boolean dropped) {
+            this.limit.release(System.nanoTime() - this.startedAt, dropped);
+        }
+
+        // For a response that was streamed, whose duration isn't a latency
+        void releaseStreamed() {
+            this.limit.release();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.warehouse.limit;
+
+/**
+ * Endpoints sharing a concurrency limit, because their requests cost the database about the same.
+ */
+public enum LimitGroup {
+    /**
+     * Lookups and pages of widgets, often answered from the cache.
+     */
+    READS("reads"),
+    /**
+     * Creations, updates and deletions.
+     */
+    WRITES("writes"),
+    /**
+     * Price statistics of categories, aggregated by the database when the index isn't loaded.
+     */
+    INFO("info");
+
+    private final String name;
+
+    LimitGroup(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,34 @@
+package com.warehouse.representation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Position of the item in the request", example = "0")
+    private int index;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widget ID, absent if the widget couldn't be created", example = "123")
+    private Long id;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "HTTP status of the item", example = "201")
+    private int status;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Why the item failed, absent on success", example = "price must be greater than or equal to 0")
+    private String error;
+}
@@ -0,0 +1,33 @@
+package com.warehouse.representation;
+
+import java.util.List;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkResponse {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "The number of items that were applied", example = "98")
+    private int succeeded;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "The number of items that were rejected", example = "2")
+    private int failed;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Result of every item, in request order")
+    private List<BulkItemResult> items;
+
+    public static BulkResponse of(List<BulkItemResult> items) {
+        int succeeded = (int) items.stream().filter(item -> item.getStatus() < 300).count();
+        return new BulkResponse(succeeded, items.size() - succeeded, items);
+    }
+}
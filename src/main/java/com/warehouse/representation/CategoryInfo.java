@@ -23,4 +23,23 @@ public class CategoryInfo {
     @Setter
     @ApiModelProperty(value = "The number of items of an indicated category", example = "26")
     private int numberOfWidgets;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Lowest price of items of an indicated category, absent if it has no items", example = "1.20")
+    private Double minPrice;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Highest price of items of an indicated category, absent if it has no items", example = "15.40")
+    private Double maxPrice;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Average price of items of an indicated category, absent if it has no items", example = "4.25")
+    private Double averagePrice;
+
+    public static CategoryInfo empty(String category) {
+        return new CategoryInfo(category, 0d, 0, null, null, null);
+    }
 }
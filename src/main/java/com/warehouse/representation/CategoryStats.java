@@ -0,0 +1,102 @@
+package com.warehouse.representation;
+
+import java.util.List;
+import java.util.Map;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public class CategoryStats {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Category", example = "Book")
+    private String category;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "The number of items of the category", example = "26")
+    private long numberOfWidgets;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Lowest price of items of the category", example = "1.20")
+    private double minPrice;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Highest price of items of the category", example = "15.40")
+    private double maxPrice;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Average price of items of the category", example = "4.25")
+    private double averagePrice;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Standard deviation of the prices of items of the category", example = "2.10")
+    private double standardDeviation;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Price percentiles, interpolated between the closest prices, by percentile", example = "{\"p50\": 3.90, \"p99\": 14.80}")
+    private Map<String, Double> percentiles;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Number of items per price bin, bins of equal width from the lowest to the highest price")
+    private List<PriceBin> histogram;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Width of the time buckets in milliseconds, the one asked for or, by default, 1 day widened to fit the most buckets allowed", example = "86400000")
+    private long bucketMillis;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Number of items created per time bucket, from the bucket of the oldest item to the newest's")
+    private List<TimeBucket> created;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Timestamp when the statistics were taken", example = "1711300944611")
+    private long snapshotAt;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class PriceBin {
+        @Getter
+        @Setter
+        @ApiModelProperty(value = "Lowest price of the bin, included", example = "1.20")
+        private double from;
+
+        @Getter
+        @Setter
+        @ApiModelProperty(value = "Highest price of the bin, excluded but for the last bin", example = "2.62")
+        private double to;
+
+        @Getter
+        @Setter
+        @ApiModelProperty(value = "Number of items", example = "7")
+        private long count;
+    }
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class TimeBucket {
+        @Getter
+        @Setter
+        @ApiModelProperty(value = "Start of the bucket", example = "1711238400000")
+        private long from;
+
+        @Getter
+        @Setter
+        @ApiModelProperty(value = "Number of items", example = "3")
+        private long count;
+    }
+}
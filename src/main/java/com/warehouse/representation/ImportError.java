@@ -0,0 +1,21 @@
+package com.warehouse.representation;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportError {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Line of the rejected record, or of the first record of a batch that failed", example = "12")
+    private long line;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Why the record was rejected", example = "price must be greater than or equal to 0")
+    private String error;
+}
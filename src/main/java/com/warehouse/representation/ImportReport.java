@@ -0,0 +1,50 @@
+package com.warehouse.representation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Outcome of an import. Only the first errors are listed, so the report of a large import stays small.
+ */
+public class ImportReport {
+    public static final int MAX_ERRORS = 100;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widgets created, from records without ID or with the ID of no widget", example = "120")
+    private long created;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widgets updated, from records with the ID of an existing widget", example = "880")
+    private long updated;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Records rejected as invalid or part of a batch that failed", example = "2")
+    private long rejected;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Whether the stream was read to its end, false when it isn't valid JSON", example = "true")
+    private boolean complete = true;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "The first errors, in stream order")
+    private List<ImportError> errors = new ArrayList<>();
+
+    /**
+     * Counts rejected records, listing their error unless enough errors are listed already.
+     */
+    public void reject(long line, int records, String error) {
+        this.rejected += records;
+        if (this.errors.size() < MAX_ERRORS) {
+            this.errors.add(new ImportError(line, error));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.warehouse.representation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestionStatus {
+    public static final String PENDING = "pending";
+    public static final String CREATED = "created";
+    public static final String FAILED = "failed";
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Ticket of the queued widget", example = "0b8e4f0c-5d5e-4c41-9a3c-0f4c7f1f3b8e")
+    private String ticket;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "pending, created or failed", example = "created")
+    private String status;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widget ID, once created", example = "123")
+    private Long id;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Why the widget couldn't be created")
+    private String error;
+}
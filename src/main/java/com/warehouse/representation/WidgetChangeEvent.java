@@ -0,0 +1,41 @@
+package com.warehouse.representation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@ApiModel(description = "A widget was created, updated or deleted")
+public class WidgetChangeEvent {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Sequence number of the change, to resume the feed after it", example = "4711")
+    private long seq;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "ID of the changed widget", example = "123")
+    private long widgetId;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "CREATED, UPDATED or DELETED", example = "UPDATED")
+    private String operation;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Timestamp of the change", example = "1711300944611")
+    private long changedAt;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Current state of the widget, absent once it is deleted")
+    private WidgetSnapshot widget;
+}
@@ -0,0 +1,25 @@
+package com.warehouse.representation;
+
+import java.util.List;
+
+import com.warehouse.entity.Widget;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public class WidgetPage {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widgets of the page, ordered by ID")
+    private List<Widget> widgets;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Opaque cursor to pass as 'after' to fetch the next page, absent on the last page", example = "MTIz")
+    private String next;
+}
@@ -0,0 +1,23 @@
+package com.warehouse.representation;
+
+import java.util.List;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public class WidgetPricePage {
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Widgets of the page, ordered by price then ID")
+    private List<WidgetSnapshot> widgets;
+
+    @Getter
+    @Setter
+    @ApiModelProperty(value = "Opaque cursor to pass as 'after' to fetch the next page, absent on the last page", example = "MTMuNToxMjM")
+    private String next;
+}
@@ -0,0 +1,63 @@
+package com.warehouse.representation;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.warehouse.entity.Widget;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Immutable copy of a {@link Widget}, detached from any Hibernate session. It is what the widget
+ * cache holds and hands out to concurrent requests, and it serializes like the entity.
+ */
+@AllArgsConstructor
+@Getter
+@ApiModel(description = "A widget that represents an item in the warehouse")
+public final class WidgetSnapshot {
+    @JsonProperty("id")
+    @ApiModelProperty(value = "Widget ID", example = "123")
+    private final long id;
+
+    @JsonProperty("name")
+    @ApiModelProperty(value = "Widget name", example = "Harry Potter and the Philosopher's Stone")
+    private final String name;
+
+    @JsonProperty("category")
+    @ApiModelProperty(value = "Widget category", example = "Book")
+    private final String category;
+
+    @JsonProperty("price")
+    @ApiModelProperty(value = "Widget price", example = "13.5")
+    private final double price;
+
+    @JsonProperty("createdAt")
+    @ApiModelProperty(value = "Timestamp when the widget is created", example = "1711300944611")
+    private final long createdAt;
+
+    @JsonProperty("updatedAt")
+    @ApiModelProperty(value = "Timestamp when the widget was last modified", example = "1711300944611")
+    private final long updatedAt;
+
+    @JsonProperty("version")
+    @ApiModelProperty(value = "Version of the widget, incremented on every update", example = "3")
+    private final long version;
+
+    public static WidgetSnapshot of(Widget widget) {
+        return new WidgetSnapshot(
+                widget.getId(),
+                widget.getName(),
+                widget.getCategory(),
+                widget.getPrice(),
+                toMillis(widget.getCreatedAt()),
+                toMillis(widget.getUpdatedAt()),
+                widget.getVersion());
+    }
+
+    private static long toMillis(Date date) {
+        return date == null ? 0L : date.getTime();
+    }
+}
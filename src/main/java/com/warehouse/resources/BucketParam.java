@@ -0,0 +1,28 @@
+package com.warehouse.resources;
+
+import io.dropwizard.jersey.params.AbstractParam;
+import io.dropwizard.util.Duration;
+
+/**
+ * The width of time buckets, of at least a millisecond, e.g. {@code bucket=1 day} or {@code bucket=6h}.
+ */
+public class BucketParam extends AbstractParam<Duration> {
+
+    public BucketParam(String input) {
+        super(input, "bucket");
+    }
+
+    @Override
+    protected String errorMessage(Exception e) {
+        return "Parameter bucket must be a duration of at least a millisecond";
+    }
+
+    @Override
+    protected Duration parse(String input) {
+        Duration duration = Duration.parse(input);
+        if (duration.toMilliseconds() <= 0) {
+            throw new IllegalArgumentException(input);
+        }
+        return duration;
+    }
+}
@@ -0,0 +1,31 @@
+package com.warehouse.resources;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.Setter;
+
+public class BulkConfiguration {
+    // Number of statements sent to the database in one JDBC batch
+    @JsonProperty("batchSize")
+    @Getter
+    @Setter
+    @Min(1)
+    private int batchSize = 50;
+
+    // Largest number of widgets accepted in a single bulk request or multi-get
+    @JsonProperty("maxItems")
+    @Getter
+    @Setter
+    @Min(1)
+    private int maxItems = 10000;
+
+    // Number of records of an import written in a single transaction
+    @JsonProperty("importBatchSize")
+    @Getter
+    @Setter
+    @Min(1)
+    private int importBatchSize = 1000;
+}
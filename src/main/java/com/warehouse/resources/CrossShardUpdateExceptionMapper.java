@@ -0,0 +1,25 @@
+package com.warehouse.resources;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import com.warehouse.shard.CrossShardUpdateException;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+/**
+ * Answers 409 Conflict when an update would move a widget to a category stored on another shard.
+ */
+@Provider
+public class CrossShardUpdateExceptionMapper implements ExceptionMapper<CrossShardUpdateException> {
+    @Override
+    public Response toResponse(CrossShardUpdateException exception) {
+        return Response.status(Status.CONFLICT)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Status.CONFLICT.getStatusCode(), exception.getMessage()))
+                .build();
+    }
+}
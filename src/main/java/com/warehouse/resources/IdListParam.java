@@ -0,0 +1,32 @@
+package com.warehouse.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.dropwizard.jersey.params.AbstractParam;
+
+/**
+ * A comma-separated list of widget IDs, e.g. {@code ids=1,2,3}.
+ */
+public class IdListParam extends AbstractParam<List<Long>> {
+
+    public IdListParam(String input) {
+        super(input, "ids");
+    }
+
+    @Override
+    protected String errorMessage(Exception e) {
+        return "Parameter ids must be a comma-separated list of widget IDs";
+    }
+
+    @Override
+    protected List<Long> parse(String input) {
+        List<Long> ids = new ArrayList<>();
+        for (String id : input.split(",")) {
+            if (!id.trim().isEmpty()) {
+                ids.add(Long.parseLong(id.trim()));
+            }
+        }
+        return ids;
+    }
+}
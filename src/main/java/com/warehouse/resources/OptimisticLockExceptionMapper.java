@@ -0,0 +1,24 @@
+package com.warehouse.resources;
+
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+/**
+ * Answers 409 Conflict when a widget was modified by another request between being read and written.
+ */
+@Provider
+public class OptimisticLockExceptionMapper implements ExceptionMapper<OptimisticLockException> {
+    @Override
+    public Response toResponse(OptimisticLockException exception) {
+        return Response.status(Status.CONFLICT)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Status.CONFLICT.getStatusCode(), "Widget was modified concurrently"))
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.warehouse.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Encodes the keyset position of a widget page as an opaque token, so clients don't start
+ * depending on the cursor being a raw widget ID.
+ */
+final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long decode(String cursor) {
+        try {
+            return Long.parseLong(decodeToString(cursor));
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+
+    /**
+     * Encodes the position of the last widget of a page ordered by price.
+     */
+    static String encode(double lastPrice, long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((lastPrice + ":" + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a position encoded by {@link #encode(double, long)}, as its price and ID.
+     */
+    static Position decodePrice(String cursor) {
+        try {
+            String[] parts = decodeToString(cursor).split(":", -1);
+            if (parts.length != 2) {
+                throw invalid();
+            }
+            return new Position(Double.parseDouble(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+
+    private static String decodeToString(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static WebApplicationException invalid() {
+        return new WebApplicationException("Invalid cursor", Status.BAD_REQUEST);
+    }
+
+    static final class Position {
+        final double price;
+        final long id;
+
+        private Position(double price, long id) {
+            this.price = price;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.warehouse.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.dropwizard.jersey.params.AbstractParam;
+
+/**
+ * A comma-separated list of percentiles between 0 and 100, e.g. {@code percentiles=50,99.9}.
+ */
+public class PercentileListParam extends AbstractParam<List<Double>> {
+
+    public PercentileListParam(String input) {
+        super(input, "percentiles");
+    }
+
+    @Override
+    protected String errorMessage(Exception e) {
+        return "Parameter percentiles must be a comma-separated list of numbers between 0 and 100";
+    }
+
+    @Override
+    protected List<Double> parse(String input) {
+        List<Double> percentiles = new ArrayList<>();
+        for (String percentile : input.split(",")) {
+            if (!percentile.trim().isEmpty()) {
+                double value = Double.parseDouble(percentile.trim());
+                if (!(value >= 0 && value <= 100)) {
+                    throw new IllegalArgumentException(percentile);
+                }
+                percentiles.add(value);
+            }
+        }
+        return percentiles;
+    }
+}
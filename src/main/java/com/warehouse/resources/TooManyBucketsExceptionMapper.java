@@ -0,0 +1,25 @@
+package com.warehouse.resources;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import com.warehouse.stats.TooManyBucketsException;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+/**
+ * Answers 400 Bad Request when the time bucket width asked for would need more buckets than allowed.
+ */
+@Provider
+public class TooManyBucketsExceptionMapper implements ExceptionMapper<TooManyBucketsException> {
+    @Override
+    public Response toResponse(TooManyBucketsException exception) {
+        return Response.status(Status.BAD_REQUEST)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Status.BAD_REQUEST.getStatusCode(), exception.getMessage()))
+                .build();
+    }
+}
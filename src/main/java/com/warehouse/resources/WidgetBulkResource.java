@@ -0,0 +1,231 @@
+package com.warehouse.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.IdentifiedWidgetDTO;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.entity.Widget;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.limit.ConcurrencyLimited;
+import com.warehouse.limit.LimitGroup;
+import com.warehouse.representation.BulkItemResult;
+import com.warehouse.representation.BulkResponse;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.PATCH;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates, updates and deletes many widgets in one transaction, written in JDBC batches.
+ * Invalid items are reported in the response without failing the others, and the written
+ * widgets are published to the cache and the indexes once the transaction committed.
+ */
+@Path("/widgets/_bulk")
+@Api("/widgets")
+@Consumes(MediaType.APPLICATION_JSON)
+@Produces(MediaType.APPLICATION_JSON)
+public class WidgetBulkResource {
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    private WidgetDAO widgetDAO;
+    private WidgetCache cache;
+    private CategoryAggregateIndex categoryIndex;
+    private NameSearchIndex searchIndex;
+    private Validator validator;
+    private Transactions transactions;
+    private int maxItems;
+
+    public WidgetBulkResource(WidgetDAO widgetDAO, WidgetCache cache,
+            CategoryAggregateIndex categoryIndex, Validator validator, Transactions transactions, int maxItems) {
+        this(widgetDAO, cache, categoryIndex, NameSearchIndex.disabled(), validator, transactions, maxItems);
+    }
+
+    public WidgetBulkResource(WidgetDAO widgetDAO, WidgetCache cache, CategoryAggregateIndex categoryIndex,
+            NameSearchIndex searchIndex, Validator validator, Transactions transactions, int maxItems) {
+        this.widgetDAO = widgetDAO;
+        this.cache = cache;
+        this.categoryIndex = categoryIndex;
+        this.searchIndex = searchIndex;
+        this.validator = validator;
+        this.transactions = transactions;
+        this.maxItems = maxItems;
+    }
+
+    @POST
+    @Timed
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Create many widgets", httpMethod = "POST", response = BulkResponse.class)
+    public BulkResponse createWidgets(@NotNull List<WidgetDTO> widgetDTOs) {
+        this.checkSize(widgetDTOs.size());
+        BulkItemResult[] results = new BulkItemResult[widgetDTOs.size()];
+        List<WidgetDTO> validWidgetDTOs = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < widgetDTOs.size(); i++) {
+            String error = this.validate(widgetDTOs.get(i));
+            if (error != null) {
+                results[i] = new BulkItemResult(i, null, UNPROCESSABLE_ENTITY, error);
+            } else {
+                validWidgetDTOs.add(widgetDTOs.get(i));
+                validIndexes.add(i);
+            }
+        }
+
+        List<Widget> createdWidgets = this.transactions.write(() -> this.widgetDAO.createAll(validWidgetDTOs));
+        for (int i = 0; i < createdWidgets.size(); i++) {
+            int index = validIndexes.get(i);
+            results[index] = new BulkItemResult(index, createdWidgets.get(i).getId(),
+                    Status.CREATED.getStatusCode(), null);
+        }
+
+        createdWidgets.forEach(this::index);
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    @PUT
+    @Timed
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Update many widgets", httpMethod = "PUT", response = BulkResponse.class)
+    public BulkResponse putWidgets(@NotNull List<IdentifiedWidgetDTO> widgetDTOs) {
+        return this.updateWidgets(widgetDTOs, false);
+    }
+
+    @PATCH
+    @Timed
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Partial update of many widgets", httpMethod = "PATCH", response = BulkResponse.class)
+    public BulkResponse patchWidgets(@NotNull List<IdentifiedWidgetDTO> widgetDTOs) {
+        return this.updateWidgets(widgetDTOs, true);
+    }
+
+    @DELETE
+    @Timed
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Delete many widgets by ID", httpMethod = "DELETE", response = BulkResponse.class)
+    public BulkResponse deleteWidgets(@QueryParam("ids") @NotNull IdListParam idsParam) {
+        List<Long> ids = idsParam.get();
+        this.checkSize(ids.size());
+
+        Set<Long> deletedIds = this.transactions.write(() -> this.widgetDAO.deleteAll(new LinkedHashSet<>(ids)));
+
+        List<BulkItemResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            results.add(deletedIds.contains(id)
+                    ? new BulkItemResult(i, id, Status.OK.getStatusCode(), null)
+                    : new BulkItemResult(i, id, Status.NOT_FOUND.getStatusCode(), "Widget not found"));
+        }
+
+        this.cache.invalidateAll(deletedIds);
+        for (Long id : deletedIds) {
+            this.categoryIndex.remove(id);
+            this.searchIndex.remove(id);
+        }
+        return BulkResponse.of(results);
+    }
+
+    private BulkResponse updateWidgets(List<IdentifiedWidgetDTO> widgetDTOs, boolean partial) {
+        this.checkSize(widgetDTOs.size());
+        BulkItemResult[] results = new BulkItemResult[widgetDTOs.size()];
+        Map<Long, WidgetDTO> updates = new LinkedHashMap<>();
+        Map<Long, Integer> indexes = new HashMap<>();
+
+        for (int i = 0; i < widgetDTOs.size(); i++) {
+            IdentifiedWidgetDTO widgetDTO = widgetDTOs.get(i);
+            // A partial update only requires the ID, as a PATCH of a single widget requires nothing
+            String error = partial ? this.validateId(widgetDTO) : this.validate(widgetDTO);
+            if (error != null) {
+                results[i] = new BulkItemResult(i, widgetDTO == null ? null : widgetDTO.getId(),
+                        UNPROCESSABLE_ENTITY, error);
+            } else if (updates.containsKey(widgetDTO.getId())) {
+                results[i] = new BulkItemResult(i, widgetDTO.getId(), Status.CONFLICT.getStatusCode(),
+                        "Duplicate widget ID");
+            } else {
+                updates.put(widgetDTO.getId(), widgetDTO);
+                indexes.put(widgetDTO.getId(), i);
+            }
+        }
+
+        List<Widget> updatedWidgets = this.transactions.write(() -> this.widgetDAO.updateAll(updates, partial));
+        for (Widget widget : updatedWidgets) {
+            int index = indexes.remove(widget.getId());
+            results[index] = new BulkItemResult(index, widget.getId(), Status.OK.getStatusCode(), null);
+        }
+        indexes.forEach((id, index) -> results[index] = new BulkItemResult(index, id,
+                Status.NOT_FOUND.getStatusCode(), "Widget not found"));
+
+        // Invalidated rather than cached, to not serialize widgets that may never be read
+        List<Long> updatedIds = new ArrayList<>(updatedWidgets.size());
+        for (Widget widget : updatedWidgets) {
+            updatedIds.add(widget.getId());
+            this.index(widget);
+        }
+        this.cache.invalidateAll(updatedIds);
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    private void index(Widget widget) {
+        WidgetSnapshot snapshot = WidgetSnapshot.of(widget);
+        this.categoryIndex.put(snapshot);
+        this.searchIndex.put(snapshot);
+    }
+
+    private void checkSize(int size) {
+        if (size > this.maxItems) {
+            throw new WebApplicationException("A bulk request accepts at most " + this.maxItems + " widgets",
+                    Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+    }
+
+    private String validate(WidgetDTO widgetDTO) {
+        if (widgetDTO == null) {
+            return "widget must not be null";
+        }
+        return describe(this.validator.validate(widgetDTO));
+    }
+
+    private String validateId(IdentifiedWidgetDTO widgetDTO) {
+        if (widgetDTO == null) {
+            return "widget must not be null";
+        }
+        return describe(this.validator.validateProperty(widgetDTO, "id"));
+    }
+
+    static <T> String describe(Set<ConstraintViolation<T>> violations) {
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+}
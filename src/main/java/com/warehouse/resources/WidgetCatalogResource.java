@@ -0,0 +1,241 @@
+package com.warehouse.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.dto.ImportedWidgetDTO;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.entity.Widget;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.representation.ImportReport;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+import javax.validation.Validator;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Exports and imports the whole widget catalog as newline-delimited JSON, one widget per line, in constant
+ * memory whatever its size. Both are compressed by the server's gzip handler: the export when requested
+ * with Accept-Encoding: gzip, the import when sent with Content-Encoding: gzip.
+ */
+@Path("/widgets")
+@Api("/widgets")
+public class WidgetCatalogResource {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private WidgetDAO widgetDAO;
+    private WidgetCache cache;
+    private CategoryAggregateIndex categoryIndex;
+    private NameSearchIndex searchIndex;
+    private ObjectMapper objectMapper;
+    private ObjectReader reader;
+    private Validator validator;
+    private DatabaseExecutor database;
+    private int batchSize;
+
+    /**
+     * @param batchSize number of imported records written in a single transaction
+     */
+    public WidgetCatalogResource(WidgetDAO widgetDAO, WidgetCache cache, CategoryAggregateIndex categoryIndex,
+            NameSearchIndex searchIndex, ObjectMapper objectMapper, Validator validator, DatabaseExecutor database,
+            int batchSize) {
+        this.widgetDAO = widgetDAO;
+        this.cache = cache;
+        this.categoryIndex = categoryIndex;
+        this.searchIndex = searchIndex;
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(ImportedWidgetDTO.class);
+        this.validator = validator;
+        this.database = database;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Streams the widgets from a unit of work lasting as long as the stream, which the client's reading paces.
+     * Not subject to the concurrency limits, as the import isn't.
+     */
+    @Path("/_export")
+    @GET
+    @Timed
+    @Produces(APPLICATION_NDJSON)
+    @ApiOperation(value = "Export every widget, or those of a category, in ID order and one per line",
+            httpMethod = "GET", response = Widget.class, responseContainer = "List")
+    public void exportWidgets(@QueryParam("category") Optional<String> category,
+            @Suspended AsyncResponse response) {
+        // Written by the thread resuming the request, in a unit of work lasting as long as the stream
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null)) {
+                this.database.getTransactions().stream(() -> {
+                    this.widgetDAO.scroll(category, widget -> {
+                        try {
+                            generator.writeObject(widget);
+                            generator.writeRaw('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        this.database.execute(response, () -> Response.ok(stream, APPLICATION_NDJSON).build());
+    }
+
+    /**
+     * Reads the records one at a time and writes them in batches, each in a transaction of its own: the
+     * batches written before a failure stay written. Runs on the request thread for as long as the stream
+     * lasts, so it isn't subject to the concurrency limits, which would take its duration for latency.
+     */
+    @Path("/_import")
+    @POST
+    @Timed
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(value = "Import widgets, one per line: records with the ID of an existing widget update it, "
+            + "the others create a widget", httpMethod = "POST", response = ImportReport.class)
+    public ImportReport importWidgets(InputStream input) throws IOException {
+        ImportReport report = new ImportReport();
+        List<ImportedWidgetDTO> batch = new ArrayList<>(this.batchSize);
+        Set<Long> batchIds = new HashSet<>();
+        long batchLine = 0;
+
+        try (JsonParser parser = this.reader.getFactory().createParser(input);
+                MappingIterator<ImportedWidgetDTO> records = this.reader.readValues(parser)) {
+            while (true) {
+                long line = parser.getCurrentLocation().getLineNr();
+                ImportedWidgetDTO record;
+                try {
+                    if (!records.hasNextValue()) {
+                        break;
+                    }
+                    line = parser.getTokenLocation().getLineNr();
+                    record = records.nextValue();
+                } catch (JsonMappingException e) {
+                    // The iterator skips the rest of the record
+                    report.reject(line, 1, e.getOriginalMessage());
+                    continue;
+                } catch (JsonParseException e) {
+                    // Where the next record starts is unknown
+                    report.reject(e.getLocation().getLineNr(), 0, e.getOriginalMessage());
+                    report.setComplete(false);
+                    break;
+                }
+
+                String error = this.validate(record);
+                if (error != null) {
+                    report.reject(line, 1, error);
+                    continue;
+                }
+                // A widget updated twice in a batch would only be updated once
+                if (batch.size() == this.batchSize || (record.getId() != null && !batchIds.add(record.getId()))) {
+                    this.write(batch, batchLine, report);
+                    batch.clear();
+                    batchIds.clear();
+                    if (record.getId() != null) {
+                        batchIds.add(record.getId());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    batchLine = line;
+                }
+                batch.add(record);
+            }
+        }
+        this.write(batch, batchLine, report);
+        return report;
+    }
+
+    private String validate(ImportedWidgetDTO record) {
+        if (record == null) {
+            return "widget must not be null";
+        }
+        return WidgetBulkResource.describe(this.validator.validate(record));
+    }
+
+    /**
+     * Upserts a batch in a transaction, then publishes the written widgets to the category index and
+     * evicts them from the cache. A batch that fails is rejected as a whole.
+     */
+    private void write(List<ImportedWidgetDTO> batch, long line, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Widget> created = new ArrayList<>();
+        List<Widget> updated = new ArrayList<>();
+        try {
+            this.database.getTransactions().write(() -> {
+                Map<Long, WidgetDTO> updates = new LinkedHashMap<>();
+                List<WidgetDTO> creates = new ArrayList<>();
+                for (ImportedWidgetDTO record : batch) {
+                    if (record.getId() != null) {
+                        updates.put(record.getId(), record);
+                    } else {
+                        creates.add(record);
+                    }
+                }
+                updated.addAll(this.widgetDAO.updateAll(updates, false));
+                // Records with the ID of no widget create one, with an ID of its own
+                updated.forEach(widget -> updates.remove(widget.getId()));
+                creates.addAll(updates.values());
+                return created.addAll(this.widgetDAO.createAll(creates));
+            });
+        } catch (RuntimeException e) {
+            report.reject(line, batch.size(), "Batch of " + batch.size() + " widgets failed: " + e.getMessage());
+            return;
+        }
+
+        report.setCreated(report.getCreated() + created.size());
+        report.setUpdated(report.getUpdated() + updated.size());
+        List<Long> updatedIds = new ArrayList<>(updated.size());
+        for (Widget widget : updated) {
+            updatedIds.add(widget.getId());
+            this.index(widget);
+        }
+        created.forEach(this::index);
+        // Invalidated rather than cached, to not serialize widgets that may never be read
+        this.cache.invalidateAll(updatedIds);
+    }
+
+    private void index(Widget widget) {
+        WidgetSnapshot snapshot = WidgetSnapshot.of(widget);
+        this.categoryIndex.put(snapshot);
+        this.searchIndex.put(snapshot);
+    }
+}
@@ -0,0 +1,172 @@
+package com.warehouse.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.warehouse.dao.WidgetChangeDAO;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.entity.Widget;
+import com.warehouse.entity.WidgetChange;
+import com.warehouse.limit.ConcurrencyLimited;
+import com.warehouse.limit.LimitGroup;
+import com.warehouse.representation.WidgetChangeEvent;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Feeds the widget changes recorded in the outbox to downstream consumers, after a sequence number,
+ * as newline-delimited JSON or as server-sent events. Every response holds the changes available at
+ * the time, in order: consumers resume after the last sequence number they received, which browsers'
+ * EventSource does by itself with Last-Event-ID.
+ *
+ * Only changes up to the last settled one are returned (see {@link WidgetChangeDAO}), so a consumer
+ * never skips a change committed late.
+ */
+@Path("/widgets/changes")
+@Api("/widgets")
+public class WidgetChangeResource {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String TEXT_EVENT_STREAM = "text/event-stream";
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private WidgetChangeDAO changeDAO;
+    private WidgetDAO widgetDAO;
+    private ObjectWriter writer;
+    private DatabaseExecutor database;
+    private long settleMillis;
+    private long retryMillis;
+
+    /**
+     * @param changeDAO    reads the outbox, or null when changes aren't recorded or the feed isn't available
+     * @param settleMillis how long after its insert a change is settled
+     * @param retryMillis  how long event stream clients wait before asking for the next changes
+     */
+    public WidgetChangeResource(WidgetChangeDAO changeDAO, WidgetDAO widgetDAO, ObjectMapper objectMapper,
+            DatabaseExecutor database, long settleMillis, long retryMillis) {
+        this.changeDAO = changeDAO;
+        this.widgetDAO = widgetDAO;
+        this.writer = objectMapper.writerFor(WidgetChangeEvent.class);
+        this.database = database;
+        this.settleMillis = settleMillis;
+        this.retryMillis = retryMillis;
+    }
+
+    @GET
+    @Timed
+    @ConcurrencyLimited(LimitGroup.READS)
+    @Produces(APPLICATION_NDJSON)
+    @ApiOperation(value = "Get the widget changes after a sequence number, one JSON object per line",
+            httpMethod = "GET", response = WidgetChangeEvent.class, responseContainer = "List")
+    public void getChanges(@QueryParam("since") @Min(0) Long since,
+            @QueryParam("limit") @Min(1) @Max(10000) Integer limit,
+            @Suspended AsyncResponse response) {
+        this.checkAvailable();
+        this.database.readPrimary(response, () -> {
+            List<WidgetChangeEvent> events = this.readChanges(since == null ? 0 : since, limit);
+            StreamingOutput stream = output -> {
+                for (WidgetChangeEvent event : events) {
+                    output.write(this.serialize(event));
+                    output.write('\n');
+                }
+            };
+            return Response.ok(stream, APPLICATION_NDJSON).build();
+        });
+    }
+
+    @GET
+    @Timed
+    @ConcurrencyLimited(LimitGroup.READS)
+    // Less preferred, so that clients accepting anything are answered with newline-delimited JSON
+    @Produces(TEXT_EVENT_STREAM + ";qs=0.5")
+    @ApiOperation(value = "Get the widget changes after a sequence number, as server-sent events",
+            httpMethod = "GET", response = WidgetChangeEvent.class, responseContainer = "List")
+    public void getChangeEvents(@QueryParam("since") @Min(0) Long since,
+            @HeaderParam("Last-Event-ID") Long lastEventId,
+            @QueryParam("limit") @Min(1) @Max(10000) Integer limit,
+            @Suspended AsyncResponse response) {
+        this.checkAvailable();
+        // The header of a reconnecting client is more recent than the query of the URL it reconnects to
+        long after = lastEventId != null ? lastEventId : since == null ? 0 : since;
+        this.database.readPrimary(response, () -> {
+            List<WidgetChangeEvent> events = this.readChanges(after, limit);
+            StreamingOutput stream = output -> {
+                output.write(("retry: " + this.retryMillis + "\n\n").getBytes(StandardCharsets.UTF_8));
+                for (WidgetChangeEvent event : events) {
+                    output.write(("id: " + event.getSeq() + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+                    output.write(this.serialize(event));
+                    output.write("\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+            };
+            return Response.ok(stream, TEXT_EVENT_STREAM).build();
+        });
+    }
+
+    /**
+     * Reads the changes after {@code since} up to the last settled one, with the current state of the
+     * widgets still existing.
+     */
+    private List<WidgetChangeEvent> readChanges(long since, Integer limit) {
+        Date settled = new Date(System.currentTimeMillis() - this.settleMillis);
+        List<WidgetChange> changes = this.changeDAO.findAfter(since, limit == null ? DEFAULT_LIMIT : limit);
+        int end = changes.size();
+        while (end > 0 && !changes.get(end - 1).getChangedAt().before(settled)) {
+            end--;
+        }
+        changes = changes.subList(0, end);
+
+        List<Long> widgetIds = changes.stream()
+                .filter(change -> change.getOperation() != WidgetChange.Operation.DELETED)
+                .map(WidgetChange::getWidgetId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Widget> widgets = this.widgetDAO.findByIds(widgetIds).stream()
+                .collect(Collectors.toMap(Widget::getId, Function.identity()));
+
+        List<WidgetChangeEvent> events = new ArrayList<>(changes.size());
+        for (WidgetChange change : changes) {
+            Widget widget = change.getOperation() == WidgetChange.Operation.DELETED
+                    ? null
+                    : widgets.get(change.getWidgetId());
+            events.add(new WidgetChangeEvent(change.getSeq(), change.getWidgetId(), change.getOperation().name(),
+                    change.getChangedAt().getTime(), widget == null ? null : WidgetSnapshot.of(widget)));
+        }
+        return events;
+    }
+
+    private byte[] serialize(WidgetChangeEvent event) throws JsonProcessingException {
+        return this.writer.writeValueAsBytes(event);
+    }
+
+    private void checkAvailable() {
+        if (this.changeDAO == null) {
+            throw new WebApplicationException("The change feed isn't enabled", Status.NOT_FOUND);
+        }
+    }
+}
@@ -1,17 +1,36 @@
 package com.warehouse.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.cache.CachedWidget;
+import com.warehouse.cache.WidgetCache;
 import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dao.WriteCondition;
+import com.warehouse.db.DatabaseExecutor;
 import com.warehouse.dto.WidgetDTO;
 import com.warehouse.entity.Widget;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.ingest.IngestionQueue;
+import com.warehouse.limit.ConcurrencyLimited;
+import com.warehouse.limit.LimitGroup;
 import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.IngestionStatus;
+import com.warehouse.representation.WidgetPage;
+import com.warehouse.representation.WidgetPricePage;
+import com.warehouse.representation.WidgetSnapshot;
 
-import io.dropwizard.hibernate.UnitOfWork;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -23,132 +42,568 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Widget endpoints. Requests answered from the cache or the category index complete on the request
+ * thread, database work is handed to the {@link DatabaseExecutor}, in a unit of work of its own.
+ */
 @Path("/widgets")
 @Api("/widgets")
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 public class WidgetResource {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_SEARCH_SIZE = 20;
+
     private WidgetDAO widgetDAO;
-    private Cache<Long, Widget> cache;
+    private WidgetCache cache;
+    private CategoryAggregateIndex categoryIndex;
+    private NameSearchIndex searchIndex;
+    private ObjectMapper objectMapper;
+    private DatabaseExecutor database;
+    private IngestionQueue ingestion;
+    private int maxIds;
+
+    public WidgetResource(WidgetDAO widgetDAO, WidgetCache cache, CategoryAggregateIndex categoryIndex,
+            ObjectMapper objectMapper, DatabaseExecutor database, int maxIds) {
+        this(widgetDAO, cache, categoryIndex, objectMapper, database, null, maxIds);
+    }
 
-    public WidgetResource(WidgetDAO widgetDAO, Cache<Long, Widget> cache) {
+    /**
+     * @param ingestion creates the widgets of POST requests in group commits, or null to create each in a
+     *                  transaction of its own
+     */
+    public WidgetResource(WidgetDAO widgetDAO, WidgetCache cache, CategoryAggregateIndex categoryIndex,
+            ObjectMapper objectMapper, DatabaseExecutor database, IngestionQueue ingestion, int maxIds) {
+        this(widgetDAO, cache, categoryIndex, NameSearchIndex.disabled(), objectMapper, database, ingestion, maxIds);
+    }
+
+    public WidgetResource(WidgetDAO widgetDAO, WidgetCache cache, CategoryAggregateIndex categoryIndex,
+            NameSearchIndex searchIndex, ObjectMapper objectMapper, DatabaseExecutor database,
+            IngestionQueue ingestion, int maxIds) {
         this.widgetDAO = widgetDAO;
         this.cache = cache;
+        this.categoryIndex = categoryIndex;
+        this.searchIndex = searchIndex;
+        this.objectMapper = objectMapper;
+        this.database = database;
+        this.ingestion = ingestion;
+        this.maxIds = maxIds;
     }
 
     @GET
     @Timed
-    @UnitOfWork
-    @ApiOperation(value = "Get wigets", httpMethod = "GET", response = Widget.class, responseContainer = "List")
-    public List<Widget> listWidgets(@QueryParam("category") Optional<String> category) {
-        System.out.println("category present" + category.isPresent());
-        if (category.isPresent()) {
-            return widgetDAO.findAllByCategory(category.get());
+    @ConcurrencyLimited(LimitGroup.READS)
+    @ApiOperation(value = "Get wigets. With 'ids' the widgets with those IDs are returned in the same order, "
+            + "with 'sort=price' a page ordered by price, optionally within 'minPrice' and 'maxPrice', "
+            + "without 'after' and 'limit' the whole catalog is streamed as a JSON array, otherwise a page is returned",
+            httpMethod = "GET", response = Widget.class, responseContainer = "List")
+    public void listWidgets(@QueryParam("category") Optional<String> category,
+            @QueryParam("after") Optional<String> after,
+            @QueryParam("limit") @Min(1) @Max(1000) Integer limit,
+            @QueryParam("ids") IdListParam ids,
+            @QueryParam("sort") @Pattern(regexp = "id|price") String sort,
+            @QueryParam("minPrice") Double minPrice,
+            @QueryParam("maxPrice") Double maxPrice,
+            @Suspended AsyncResponse response) {
+        if (ids != null) {
+            if (category.isPresent() || after.isPresent() || limit != null || sort != null) {
+                throw new WebApplicationException("Parameter ids can't be combined with category, after, limit or sort",
+                        Status.BAD_REQUEST);
+            }
+            this.getWidgetsByIds(ids.get(), response);
+            return;
+        }
+        if ("price".equals(sort)) {
+            this.listWidgetsByPrice(category, after, limit == null ? DEFAULT_PAGE_SIZE : limit,
+                    minPrice == null ? Double.NEGATIVE_INFINITY : minPrice,
+                    maxPrice == null ? Double.POSITIVE_INFINITY : maxPrice, response);
+            return;
+        }
+        if (minPrice != null || maxPrice != null) {
+            throw new WebApplicationException("Parameters minPrice and maxPrice require sort=price",
+                    Status.BAD_REQUEST);
+        }
+        if (after.isPresent() || limit != null) {
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            this.database.read(response, () -> Response.ok(this.listWidgetsPage(category, after, pageSize)).build());
+            return;
+        }
+
+        // Written by the thread resuming the request, in a unit of work lasting as long as the stream
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartArray();
+                this.database.getTransactions().stream(() -> {
+                    this.widgetDAO.scroll(category, widget -> {
+                        try {
+                            generator.writeObject(widget);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    return null;
+                });
+                generator.writeEndArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        this.database.execute(response, () -> Response.ok(stream).build());
+    }
+
+    private WidgetPage listWidgetsPage(Optional<String> category, Optional<String> after, int limit) {
+        long afterId = after.map(PageCursor::decode).orElse(0L);
+
+        // Fetch one extra row to find out whether another page follows without a COUNT query
+        List<Widget> widgets = this.widgetDAO.findPage(category, afterId, limit + 1);
+        if (widgets.size() <= limit) {
+            return new WidgetPage(widgets, null);
+        }
+
+        List<Widget> page = widgets.subList(0, limit);
+        return new WidgetPage(page, PageCursor.encode(page.get(limit - 1).getId()));
+    }
+
+    /**
+     * Answers from the price order of the category index once loaded, otherwise from the database.
+     */
+    private void listWidgetsByPrice(Optional<String> category, Optional<String> after, int limit,
+            double minPrice, double maxPrice, AsyncResponse response) {
+        if (Double.isNaN(minPrice) || Double.isNaN(maxPrice)) {
+            throw new WebApplicationException("Invalid price bound", Status.BAD_REQUEST);
+        }
+        PageCursor.Position position = after.map(PageCursor::decodePrice).orElse(null);
+        // Strictly after the cursor, or from the lowest ID at the minimum price
+        double afterPrice = position == null ? minPrice : Math.max(position.price, minPrice);
+        long afterId = position == null || position.price < minPrice ? Long.MIN_VALUE : position.id;
+
+        // Fetch one extra widget to find out whether another page follows
+        if (this.categoryIndex.isPriceOrdered() && this.categoryIndex.isLoaded()) {
+            response.resume(pricePage(this.categoryIndex.findByPrice(category, afterPrice, afterId, maxPrice,
+                    limit + 1), limit));
+            return;
+        }
+        this.database.read(response, () -> {
+            List<WidgetSnapshot> widgets = new ArrayList<>();
+            this.widgetDAO.findByPrice(category, afterPrice, afterId, maxPrice, limit + 1)
+                    .forEach(widget -> widgets.add(WidgetSnapshot.of(widget)));
+            return pricePage(widgets, limit);
+        });
+    }
+
+    private static WidgetPricePage pricePage(List<WidgetSnapshot> widgets, int limit) {
+        if (widgets.size() <= limit) {
+            return new WidgetPricePage(widgets, null);
+        }
+        List<WidgetSnapshot> page = widgets.subList(0, limit);
+        WidgetSnapshot last = page.get(limit - 1);
+        return new WidgetPricePage(page, PageCursor.encode(last.getPrice(), last.getId()));
+    }
+
+    @Path("/_mget")
+    @POST
+    @Timed
+    @ConcurrencyLimited(LimitGroup.READS)
+    @ApiOperation(value = "Get the widgets with the given IDs in the same order, for ID lists too long for a URL",
+            httpMethod = "POST", response = WidgetSnapshot.class, responseContainer = "List")
+    public void getWidgetsByIds(@NotNull List<Long> ids, @Suspended AsyncResponse response) {
+        if (ids.size() > this.maxIds) {
+            throw new WebApplicationException("At most " + this.maxIds + " widgets can be requested at once",
+                    Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+
+        // Hits are answered by the cache in one lookup, misses by one IN query
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        Map<Long, CachedWidget> found = new HashMap<>(this.cache.getAllPresent(uniqueIds));
+        if (found.size() == uniqueIds.size()) {
+            response.resume(widgetsFound(uniqueIds, found));
+            return;
+        }
+
+        List<Long> missingIds = new ArrayList<>(uniqueIds.size() - found.size());
+        for (Long id : uniqueIds) {
+            if (!found.containsKey(id)) {
+                missingIds.add(id);
+            }
+        }
+        // What is cached is read from the primary, a lagging replica could cache stale widgets
+        this.database.readPrimary(response, () -> {
+            for (Widget widget : this.widgetDAO.findByIds(missingIds)) {
+                found.put(widget.getId(), this.cache.put(WidgetSnapshot.of(widget)));
+            }
+            return widgetsFound(uniqueIds, found);
+        });
+    }
+
+    private static Response widgetsFound(Set<Long> uniqueIds, Map<Long, CachedWidget> found) {
+        // Widgets that don't exist are left out
+        List<byte[]> widgets = new ArrayList<>(uniqueIds.size());
+        for (Long id : uniqueIds) {
+            CachedWidget cachedWidget = found.get(id);
+            if (cachedWidget != null) {
+                widgets.add(cachedWidget.getJson());
+            }
         }
-        return widgetDAO.findAll();
+
+        StreamingOutput stream = output -> {
+            output.write('[');
+            for (int i = 0; i < widgets.size(); i++) {
+                if (i > 0) {
+                    output.write(',');
+                }
+                output.write(widgets.get(i));
+            }
+            output.write(']');
+        };
+        return Response.ok(stream).build();
     }
 
     @Path("/{id}")
     @GET
     @Timed
-    @UnitOfWork
-    @ApiOperation(value = "Get a wiget by id", httpMethod = "GET", response = Widget.class)
-    public Widget getWidgetById(@PathParam("id") Long id) {
-        Widget cachedWidget = this.cache.getIfPresent(id);
+    @ConcurrencyLimited(LimitGroup.READS)
+    @ApiOperation(value = "Get a wiget by id", httpMethod = "GET", response = WidgetSnapshot.class)
+    public void getWidgetById(@PathParam("id") Long id, @Context Request request,
+            @Suspended AsyncResponse response) {
+        CachedWidget cachedWidget = this.cache.getIfCached(id);
         if (cachedWidget != null) {
-            // Return cached widget if present
-            return cachedWidget;
+            response.resume(found(cachedWidget, request));
+            return;
+        }
+
+        // Concurrent misses for the same widget share a single database load, and those arriving while it
+        // runs wait for it without taking a thread of the database executor
+        CompletableFuture<CachedWidget> loading = this.cache.getLoading(id);
+        if (loading != null) {
+            loading.whenComplete((loaded, error) -> {
+                if (error != null) {
+                    response.resume(error instanceof CompletionException ? error.getCause() : error);
+                    return;
+                }
+                try {
+                    response.resume(found(loaded, request));
+                } catch (WebApplicationException e) {
+                    response.resume(e);
+                }
+            });
+            return;
         }
+        // Loaded from the primary, as it is cached
+        this.database.readPrimary(response, () -> found(this.cache.get(id,
+                key -> this.widgetDAO.findById(key).map(WidgetSnapshot::of).orElse(null)), request));
+    }
 
-        Widget widget = widgetDAO.findById(id)
-                .orElseThrow(() -> new WebApplicationException("Widget not found", Response.Status.NOT_FOUND));
+    private static Response found(CachedWidget cachedWidget, Request request) {
+        if (cachedWidget == null) {
+            throw new WebApplicationException("Widget not found", Response.Status.NOT_FOUND);
+        }
 
-        // Cache the widget
-        this.cache.put(id, widget);
-        return widget;
+        // Answers If-None-Match and If-Modified-Since with 304 Not Modified
+        ResponseBuilder notModified = request.evaluatePreconditions(cachedWidget.getLastModified(),
+                cachedWidget.getEntityTag());
+        if (notModified != null) {
+            return notModified.tag(cachedWidget.getEntityTag()).build();
+        }
+
+        return ok(cachedWidget);
     }
 
     @POST
     @Timed
-    @UnitOfWork
-    @ApiOperation(value = "Create a new widget", httpMethod = "POST", response = Widget.class)
-    public Widget createNewWidget(@Valid WidgetDTO widget) {
-        Widget createdWidget = widgetDAO.create(widget);
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Create a new widget", httpMethod = "POST", response = WidgetSnapshot.class)
+    public void createNewWidget(@Valid WidgetDTO widget, @Context UriInfo uriInfo,
+            @Suspended AsyncResponse response) {
+        if (this.ingestion == null) {
+            this.database.write(response, () -> this.widgetDAO.create(widget), created -> ok(this.written(created)));
+            return;
+        }
+
+        CompletableFuture<Widget> created = this.ingestion.offer(widget);
+        if (created == null) {
+            response.resume(this.retryLater());
+            return;
+        }
+        CompletableFuture<CachedWidget> published = created.thenApply(this::written);
+
+        if (this.ingestion.isAsync()) {
+            String ticket = this.ingestion.track(created);
+            response.resume(Response.accepted(new IngestionStatus(ticket, IngestionStatus.PENDING, null, null))
+                    .location(uriInfo.getBaseUriBuilder().path(WidgetResource.class).path("_ingest").path(ticket)
+                            .build())
+                    .build());
+            return;
+        }
+        response.setTimeoutHandler(timedOut -> {
+            // Safe to retry only while the widget can still be withdrawn
+            if (this.ingestion.withdraw(created)) {
+                timedOut.resume(this.retryLater());
+            } else {
+                timedOut.resume(new WebApplicationException(
+                        "Timed out waiting for the widget to be committed, it may still be created",
+                        Status.GATEWAY_TIMEOUT));
+            }
+        });
+        response.setTimeout(this.ingestion.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        // Resumed by the writer once the widget's batch committed
+        published.whenComplete((cachedWidget, error) -> {
+            if (error != null) {
+                response.resume(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                response.resume(ok(cachedWidget));
+            }
+        });
+    }
+
+    private WebApplicationException retryLater() {
+        return new WebApplicationException(Response.status(Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, this.ingestion.getRetryAfterSeconds())
+                .build());
+    }
+
+    @Path("/_ingest/{ticket}")
+    @GET
+    @Timed
+    @ApiOperation(value = "Get the status of a widget queued for creation", httpMethod = "GET",
+            response = IngestionStatus.class)
+    public IngestionStatus getIngestionStatus(@PathParam("ticket") String ticket) {
+        CompletableFuture<Widget> created = Optional.ofNullable(this.ingestion)
+                .flatMap(ingestion -> ingestion.getTracked(ticket))
+                .orElseThrow(() -> new WebApplicationException("Unknown ticket", Status.NOT_FOUND));
 
-        this.cache.put(createdWidget.getId(), createdWidget);
-        return createdWidget;
+        if (!created.isDone()) {
+            return new IngestionStatus(ticket, IngestionStatus.PENDING, null, null);
+        }
+        try {
+            return new IngestionStatus(ticket, IngestionStatus.CREATED, created.join().getId(), null);
+        } catch (CompletionException e) {
+            return new IngestionStatus(ticket, IngestionStatus.FAILED, null, e.getCause().getMessage());
+        }
     }
 
     @Path("/{id}")
     @PUT
     @Timed
-    @UnitOfWork
-    @ApiOperation(value = "Update a widget", httpMethod = "PUT", response = Widget.class)
-    public Widget putWidgetById(@PathParam("id") Long id, @Valid WidgetDTO widget) {
-        Widget foundWidget = widgetDAO.findById(id)
-                .orElseThrow(() -> new WebApplicationException("Widget not found", Status.NOT_FOUND));
-
-        Widget updatedWidget = this.widgetDAO.update(foundWidget, widget);
-
-        this.cache.put(id, updatedWidget);
-        return updatedWidget;
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Update a widget", httpMethod = "PUT", response = WidgetSnapshot.class)
+    public void putWidgetById(@PathParam("id") Long id, @Valid WidgetDTO widget,
+            @Context HttpHeaders headers, @Suspended AsyncResponse response) {
+        WriteCondition condition = writeCondition(headers);
+        this.database.write(response, () -> this.update(id, widget, false, condition),
+                updated -> ok(this.written(updated)));
     }
 
     @Path("/{id}")
     @PATCH
     @Timed
-    @UnitOfWork
-    @ApiOperation(value = "Partial update of a widget", httpMethod = "PATCH", response = Widget.class)
-    public Widget patchWidgetById(@PathParam("id") Long id, WidgetDTO widgetDTO) {
-        Widget foundWidget = widgetDAO.findById(id)
-                .orElseThrow(() -> new WebApplicationException("Widget not found", Status.NOT_FOUND));
-
-        Widget updatedWidget = this.widgetDAO.partialUpdate(foundWidget, widgetDTO);
-
-        this.cache.put(id, updatedWidget);
-        return updatedWidget;
+    @ConcurrencyLimited(LimitGroup.WRITES)
+    @ApiOperation(value = "Partial update of a widget", httpMethod = "PATCH", response = WidgetSnapshot.class)
+    public void patchWidgetById(@PathParam("id") Long id, WidgetDTO widgetDTO, @Context HttpHeaders headers,
+            @Suspended AsyncResponse response) {
+        WriteCondition condition = writeCondition(headers);
+        this.database.write(response, () -> this.update(id, widgetDTO, true, condition),
+                updated -> ok(this.written(updated)));
     }
 
     @Path("/{id}")
     @DELETE
     @Timed
-    @UnitOfWork
+    @ConcurrencyLimited(LimitGroup.WRITES)
     @ApiOperation(value = "Delete a widget by ID", httpMethod = "DELETE")
-    public Response patchWidgetById(@PathParam("id") Long id) {
-        Widget foundWidget = widgetDAO.findById(id)
-                .orElseThrow(() -> new WebApplicationException("Widget not found", Status.NOT_FOUND));
+    public void patchWidgetById(@PathParam("id") Long id, @Context HttpHeaders headers,
+            @Suspended AsyncResponse response) {
+        WriteCondition condition = writeCondition(headers);
+        this.database.write(response, () -> {
+            if (!canMatch(condition) || !this.widgetDAO.deleteById(id, condition)) {
+                throw this.writeFailed(id, condition);
+            }
+            return id;
+        }, deleted -> {
+            // Only once committed, or a miss in the meantime would load the widget back into the cache
+            this.cache.invalidate(deleted);
+            this.categoryIndex.remove(deleted);
+            this.searchIndex.remove(deleted);
+            return Response.ok().build();
+        });
+    }
 
-        this.widgetDAO.delete(foundWidget);
+    @Path("/search")
+    @GET
+    @Timed
+    @ConcurrencyLimited(LimitGroup.READS)
+    @ApiOperation(value = "Search widgets by name, ignoring case. Widgets named as the query come first, then those "
+            + "whose name starts with it, has a word starting with it, or contains it. Queries need at least 3 "
+            + "characters", httpMethod = "GET", response = WidgetSnapshot.class, responseContainer = "List")
+    public void searchWidgets(
+            @QueryParam("q") @NotBlank @Size(min = NameSearchIndex.GRAM_LENGTH, max = 100) String query,
+            @QueryParam("category") Optional<String> category,
+            @QueryParam("limit") @Min(1) @Max(100) Integer limit,
+            @Suspended AsyncResponse response) {
+        int size = limit == null ? DEFAULT_SEARCH_SIZE : limit;
+        if (this.searchIndex.isAvailable()) {
+            response.resume(this.searchIndex.search(query, category, size));
+            return;
+        }
+        this.database.read(response, () -> {
+            List<WidgetSnapshot> widgets = new ArrayList<>();
+            this.widgetDAO.findByName(query, category, size).forEach(widget -> widgets.add(WidgetSnapshot.of(widget)));
+            return NameSearchIndex.rank(query, widgets, size);
+        });
+    }
 
-        this.cache.invalidate(id);
-        return Response.ok().build();
+    @Path("/info")
+    @GET
+    @Timed
+    @ConcurrencyLimited(LimitGroup.INFO)
+    @ApiOperation(value = "Calculate the price statistics of every category", httpMethod = "GET", response = CategoryInfo.class, responseContainer = "List")
+    public void getPriceForAllCategories(@Suspended AsyncResponse response) {
+        if (this.categoryIndex.isLoaded()) {
+            response.resume(this.categoryIndex.getAll());
+            return;
+        }
+        this.database.read(response, this.widgetDAO::aggregateAllCategories);
     }
 
     @Path("/info/{category}")
     @GET
     @Timed
-    @UnitOfWork
+    @ConcurrencyLimited(LimitGroup.INFO)
     @ApiOperation(value = "Calculate the total price for a category", httpMethod = "GET", response = CategoryInfo.class)
-    public CategoryInfo getPriceForCategory(@PathParam("category") String category) {
-        List<Widget> widgets = this.widgetDAO.findAllByCategory(category);
-        Double sum = 0d;
-        for (Widget widget : widgets) {
-            sum += widget.getPrice();
+    public void getPriceForCategory(@PathParam("category") String category, @Suspended AsyncResponse response) {
+        if (this.categoryIndex.isLoaded()) {
+            response.resume(this.categoryIndex.get(category).orElseGet(() -> CategoryInfo.empty(category)));
+            return;
+        }
+        this.database.read(response, () -> this.widgetDAO.aggregateByCategory(category)
+                .orElseGet(() -> CategoryInfo.empty(category)));
+    }
+
+    /**
+     * Publishes the new state of a written widget to the cache and the indexes, as an
+     * immutable snapshot so later changes to the entity can't leak into them. Called once the
+     * write committed; concurrent writes of the same widget may publish in any order, the cache
+     * and the indexes keep the latest version.
+     */
+    private CachedWidget written(Widget widget) {
+        WidgetSnapshot snapshot = WidgetSnapshot.of(widget);
+        this.categoryIndex.put(snapshot);
+        this.searchIndex.put(snapshot);
+        return this.cache.put(snapshot);
+    }
+
+    private Widget update(long id, WidgetDTO widgetDTO, boolean partial, WriteCondition condition) {
+        Optional<Widget> updatedWidget = canMatch(condition)
+                ? this.widgetDAO.updateById(id, widgetDTO, partial, condition)
+                : Optional.empty();
+
+        return updatedWidget.orElseThrow(() -> this.writeFailed(id, condition));
+    }
+
+    /**
+     * Explains why a single-statement write affected no row: the widget doesn't exist (404), or it
+     * doesn't satisfy the If-Match or If-Unmodified-Since condition (412). The database is only asked
+     * again on this failure path, and only when the write was conditional.
+     */
+    private WebApplicationException writeFailed(long id, WriteCondition condition) {
+        // Whatever the cache holds for this widget is out of date
+        this.cache.invalidate(id);
+
+        Optional<Long> version = condition.isConditional() ? this.widgetDAO.findVersion(id) : Optional.empty();
+        if (!version.isPresent()) {
+            return new WebApplicationException("Widget not found", Status.NOT_FOUND);
+        }
+        return new WebApplicationException(Response.status(Status.PRECONDITION_FAILED)
+                .tag(CachedWidget.entityTag(version.get()))
+                .build());
+    }
+
+    /**
+     * Reads the If-Match and If-Unmodified-Since headers. Entity tags are widget versions, weak or
+     * unknown entity tags never match and an invalid date is ignored, as RFC 7232 requires.
+     */
+    private static WriteCondition writeCondition(HttpHeaders headers) {
+        List<Long> versions = null;
+        String ifMatch = headers.getHeaderString(HttpHeaders.IF_MATCH);
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+            versions = new ArrayList<>();
+            for (String value : ifMatch.split(",")) {
+                EntityTag entityTag = parseEntityTag(value.trim());
+                if (!entityTag.isWeak()) {
+                    try {
+                        versions.add(Long.parseLong(entityTag.getValue()));
+                    } catch (NumberFormatException e) {
+                        // Not the tag of any version
+                    }
+                }
+            }
         }
 
-        CategoryInfo response = new CategoryInfo();
-        response.setCategory(category);
-        response.setTotalPrice(sum);
-        response.setNumberOfWidgets(widgets.size());
+        Date unmodifiedSince = null;
+        String ifUnmodifiedSince = headers.getHeaderString(HttpHeaders.IF_UNMODIFIED_SINCE);
+        if (ifUnmodifiedSince != null) {
+            try {
+                unmodifiedSince = Date.from(ZonedDateTime.parse(ifUnmodifiedSince,
+                        DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            } catch (DateTimeParseException e) {
+                // Ignored
+            }
+        }
+
+        return new WriteCondition(versions, unmodifiedSince);
+    }
+
+    private static EntityTag parseEntityTag(String value) {
+        try {
+            return EntityTag.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException("Invalid If-Match header", Status.BAD_REQUEST);
+        }
+    }
+
+    // An If-Match header listing no usable version can't be satisfied by any widget
+    private static boolean canMatch(WriteCondition condition) {
+        return condition.getVersions() == null || !condition.getVersions().isEmpty();
+    }
 
-        return response;
+    /**
+     * Answers with the JSON serialized when the widget was cached, so Jackson isn't involved.
+     */
+    private static Response ok(CachedWidget cachedWidget) {
+        return Response.ok(cachedWidget.getJson(), MediaType.APPLICATION_JSON_TYPE)
+                .tag(cachedWidget.getEntityTag())
+                .lastModified(cachedWidget.getLastModified())
+                .build();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.warehouse.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.warehouse.limit.ConcurrencyLimited;
+import com.warehouse.limit.LimitGroup;
+import com.warehouse.representation.CategoryStats;
+import com.warehouse.stats.PriceColumns;
+import com.warehouse.stats.PriceStatistics;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price statistics of the categories, computed from the latest snapshot of the {@link PriceStatistics}
+ * rather than from the database, so up to one rebuild interval old.
+ */
+@Path("/widgets/stats")
+@Api("/widgets")
+@Produces(MediaType.APPLICATION_JSON)
+public class WidgetStatsResource {
+    private static final String DEFAULT_PERCENTILES = "50,90,95,99";
+    // Widened to fit the most buckets allowed, unlike a width asked for
+    private static final long DEFAULT_BUCKET_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private PriceStatistics statistics;
+
+    /**
+     * @param statistics computes the statistics, or null when they aren't enabled
+     */
+    public WidgetStatsResource(PriceStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @GET
+    @Timed
+    @ConcurrencyLimited(LimitGroup.INFO)
+    @ApiOperation(value = "Compute the price percentiles, price histogram and widgets created per time bucket "
+            + "of every category", httpMethod = "GET", response = CategoryStats.class, responseContainer = "List")
+    public List<CategoryStats> getStatsForAllCategories(
+            @QueryParam("percentiles") @DefaultValue(DEFAULT_PERCENTILES) PercentileListParam percentiles,
+            @QueryParam("bins") @DefaultValue("10") @Min(1) @Max(1000) int bins,
+            @QueryParam("bucket") BucketParam bucket) {
+        PriceColumns columns = this.columns();
+        return this.statistics.computeAll(columns, percentiles.get(), bins, bucketMillis(bucket), bucket != null);
+    }
+
+    @Path("/{category}")
+    @GET
+    @Timed
+    @ConcurrencyLimited(LimitGroup.INFO)
+    @ApiOperation(value = "Compute the price percentiles, price histogram and widgets created per time bucket "
+            + "of a category", httpMethod = "GET", response = CategoryStats.class)
+    public CategoryStats getStatsForCategory(@PathParam("category") String category,
+            @QueryParam("percentiles") @DefaultValue(DEFAULT_PERCENTILES) PercentileListParam percentiles,
+            @QueryParam("bins") @DefaultValue("10") @Min(1) @Max(1000) int bins,
+            @QueryParam("bucket") BucketParam bucket) {
+        PriceColumns columns = this.columns();
+        return this.statistics.compute(columns, category, percentiles.get(), bins, bucketMillis(bucket),
+                bucket != null)
+                .orElseThrow(() -> new WebApplicationException("Category has no widgets", Status.NOT_FOUND));
+    }
+
+    private PriceColumns columns() {
+        if (this.statistics == null) {
+            throw new WebApplicationException("Price statistics aren't enabled", Status.NOT_FOUND);
+        }
+        return this.statistics.getColumns().orElseThrow(() -> new WebApplicationException(
+                "Price statistics aren't available yet", Status.SERVICE_UNAVAILABLE));
+    }
+
+    private static long bucketMillis(BucketParam bucket) {
+        return bucket == null ? DEFAULT_BUCKET_MILLIS : bucket.get().toMilliseconds();
+    }
+}
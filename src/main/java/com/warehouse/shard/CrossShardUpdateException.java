@@ -0,0 +1,12 @@
+package com.warehouse.shard;
+
+/**
+ * Thrown when an update would move a widget to a category stored on another shard than its own.
+ */
+public class CrossShardUpdateException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CrossShardUpdateException(long id, String category) {
+        super("Widget " + id + " can't move to category '" + category + "', which is stored on another shard");
+    }
+}
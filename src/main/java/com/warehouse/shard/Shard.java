@@ -0,0 +1,32 @@
+package com.warehouse.shard;
+
+import org.hibernate.SessionFactory;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+
+import lombok.Getter;
+
+/**
+ * A database holding a part of the widgets, with the DAO and the units of work of its session factory.
+ */
+public class Shard {
+    @Getter
+    private final int id;
+
+    @Getter
+    private final SessionFactory sessionFactory;
+
+    @Getter
+    private final WidgetDAO widgetDAO;
+
+    @Getter
+    private final Transactions transactions;
+
+    public Shard(int id, SessionFactory sessionFactory, WidgetDAO widgetDAO, Transactions transactions) {
+        this.id = id;
+        this.sessionFactory = sessionFactory;
+        this.widgetDAO = widgetDAO;
+        this.transactions = transactions;
+    }
+}
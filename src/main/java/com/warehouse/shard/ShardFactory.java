@@ -0,0 +1,32 @@
+package com.warehouse.shard;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.db.DataSourceFactory;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A shard of the widgets and its database.
+ */
+public class ShardFactory {
+    // Stored in the IDs of the shard's widgets and placing it on the ring, so it must never change
+    @JsonProperty("id")
+    @Getter
+    @Setter
+    @Min(0)
+    @Max(ShardIdGenerator.MAX_SHARDS - 1)
+    private int id;
+
+    @JsonProperty("database")
+    @Getter
+    @Setter
+    @Valid
+    @NotNull
+    private DataSourceFactory database = new DataSourceFactory();
+}
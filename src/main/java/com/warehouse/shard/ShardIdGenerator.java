@@ -0,0 +1,45 @@
+package com.warehouse.shard;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Generates IDs from a database sequence, as {@link SequenceStyleGenerator} does. When the session factory
+ * is the one of a shard, as set by {@link #SHARD_SETTING}, the shard's ID is stored in the low bits of the IDs
+ * it generates: they are then unique across shards, and tell on which shard their widget is.
+ */
+public class ShardIdGenerator extends SequenceStyleGenerator {
+    public static final String SHARD_SETTING = "warehouse.shard.id";
+    public static final int SHARD_BITS = 10;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private Integer shard;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        Object shard = serviceRegistry.getService(ConfigurationService.class).getSettings().get(SHARD_SETTING);
+        this.shard = shard == null ? null : Integer.valueOf(shard.toString());
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Serializable id = super.generate(session, object);
+        return this.shard == null ? id : toId(((Number) id).longValue(), this.shard);
+    }
+
+    public static long toId(long sequenceValue, int shard) {
+        return sequenceValue << SHARD_BITS | shard;
+    }
+
+    public static int shardOf(long id) {
+        return (int) (id & (MAX_SHARDS - 1));
+    }
+}
@@ -0,0 +1,50 @@
+package com.warehouse.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns categories to shards by consistent hashing: every shard owns many points of a ring of hashes, and a
+ * category belongs to the shard owning the first point at or after its own hash. Adding a shard then only
+ * moves the categories it takes over, about one in the new number of shards.
+ */
+public class ShardRing {
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+
+    /**
+     * @param shards       the IDs of the shards
+     * @param virtualNodes number of points of every shard, more spread the categories more evenly
+     */
+    public ShardRing(Collection<Integer> shards, int virtualNodes) {
+        for (int shard : shards) {
+            for (int node = 0; node < virtualNodes; node++) {
+                this.ring.put(hash("shard-" + shard + "-" + node), shard);
+            }
+        }
+    }
+
+    public int shardFor(String category) {
+        Map.Entry<Long, Integer> owner = this.ring.ceilingEntry(hash(category));
+        return owner != null ? owner.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    // The first 8 bytes of the MD5 digest, as ketama does, spread well whatever the keys look like
+    private static long hash(String key) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is always available", e);
+        }
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = hash << 8 | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+}
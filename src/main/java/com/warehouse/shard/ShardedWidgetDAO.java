@@ -0,0 +1,304 @@
+package com.warehouse.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dao.WriteCondition;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+import com.warehouse.representation.CategoryInfo;
+
+/**
+ * Stores widgets across several databases, partitioned by category. Every category belongs to a single shard,
+ * chosen by a {@link ShardRing}, and the ID of a widget tells its shard, so lookups by ID or category read a
+ * single shard. Lookups of all widgets or categories read every shard in parallel and merge their results.
+ *
+ * Every shard runs its part of the work in a unit of work of its own: a write spanning several shards isn't
+ * atomic. A widget can't change to a category of another shard, as its ID would no longer tell its shard.
+ */
+public class ShardedWidgetDAO extends WidgetDAO {
+
+    private final Map<Integer, Shard> shards;
+    private final ShardRing ring;
+    private final Executor fanOut;
+
+    /**
+     * @param fanOut runs the work of every shard when several are involved
+     */
+    public ShardedWidgetDAO(List<Shard> shards, ShardRing ring, Executor fanOut, WidgetMapper widgetMapper,
+            int batchSize) {
+        // Every method is answered by the DAOs of the shards, never through the first shard's session factory
+        super(shards.get(0).getSessionFactory(), widgetMapper, batchSize);
+        this.shards = shards.stream().collect(Collectors.toMap(Shard::getId, Function.identity(),
+                (first, second) -> first, LinkedHashMap::new));
+        this.ring = ring;
+        this.fanOut = fanOut;
+    }
+
+    public Collection<Shard> getShards() {
+        return this.shards.values();
+    }
+
+    @Override
+    public Widget create(WidgetDTO widgetDTO) {
+        Shard shard = this.shardFor(widgetDTO.getCategory());
+        return shard.getTransactions().write(() -> shard.getWidgetDAO().create(widgetDTO));
+    }
+
+    @Override
+    public Optional<Widget> updateById(long id, WidgetDTO widgetDTO, boolean partial, WriteCondition condition) {
+        this.checkCategory(id, widgetDTO, partial);
+        return this.shardOf(id)
+                .flatMap(shard -> shard.getTransactions()
+                        .write(() -> shard.getWidgetDAO().updateById(id, widgetDTO, partial, condition)));
+    }
+
+    @Override
+    public boolean deleteById(long id, WriteCondition condition) {
+        return this.shardOf(id)
+                .map(shard -> shard.getTransactions().write(() -> shard.getWidgetDAO().deleteById(id, condition)))
+                .orElse(false);
+    }
+
+    @Override
+    public Optional<Long> findVersion(long id) {
+        return this.shardOf(id)
+                .flatMap(shard -> shard.getTransactions().read(() -> shard.getWidgetDAO().findVersion(id)));
+    }
+
+    /**
+     * Inserts the widgets of every shard in parallel, and returns them in the order they were given.
+     */
+    @Override
+    public List<Widget> createAll(List<WidgetDTO> widgetDTOs) {
+        Map<Shard, List<Integer>> indexesByShard = new LinkedHashMap<>();
+        for (int i = 0; i < widgetDTOs.size(); i++) {
+            indexesByShard.computeIfAbsent(this.shardFor(widgetDTOs.get(i).getCategory()), shard -> new ArrayList<>())
+                    .add(i);
+        }
+
+        Widget[] createdWidgets = new Widget[widgetDTOs.size()];
+        this.onShards(indexesByShard.keySet(), shard -> {
+            List<Integer> indexes = indexesByShard.get(shard);
+            List<WidgetDTO> shardDTOs = indexes.stream().map(widgetDTOs::get).collect(Collectors.toList());
+            List<Widget> created = shard.getTransactions().write(() -> shard.getWidgetDAO().createAll(shardDTOs));
+            for (int i = 0; i < created.size(); i++) {
+                createdWidgets[indexes.get(i)] = created.get(i);
+            }
+            return null;
+        });
+        return Arrays.asList(createdWidgets);
+    }
+
+    @Override
+    public List<Widget> updateAll(Map<Long, WidgetDTO> widgetDTOs, boolean partial) {
+        // Checked up front, so no shard is written when the update is rejected
+        widgetDTOs.forEach((id, widgetDTO) -> this.checkCategory(id, widgetDTO, partial));
+        Map<Shard, Map<Long, WidgetDTO>> byShard = this.groupByShard(widgetDTOs.keySet(), ids -> {
+            Map<Long, WidgetDTO> shardDTOs = new LinkedHashMap<>();
+            ids.forEach(id -> shardDTOs.put(id, widgetDTOs.get(id)));
+            return shardDTOs;
+        });
+        return flatten(this.onShards(byShard.keySet(), shard -> shard.getTransactions()
+                .write(() -> shard.getWidgetDAO().updateAll(byShard.get(shard), partial))));
+    }
+
+    @Override
+    public Set<Long> deleteAll(Collection<Long> ids) {
+        Map<Shard, List<Long>> byShard = this.groupByShard(ids, Function.identity());
+        Set<Long> deletedIds = new HashSet<>();
+        this.onShards(byShard.keySet(), shard -> shard.getTransactions()
+                .write(() -> shard.getWidgetDAO().deleteAll(byShard.get(shard))))
+                .forEach(deletedIds::addAll);
+        return deletedIds;
+    }
+
+    @Override
+    public List<Widget> findAll() {
+        List<Widget> widgets = flatten(this.onShards(this.shards.values(),
+                shard -> shard.getTransactions().read(() -> shard.getWidgetDAO().findAll())));
+        widgets.sort(Comparator.comparingLong(Widget::getId));
+        return widgets;
+    }
+
+    /**
+     * Reads the page from the category's shard, or, for all categories, reads a page from every shard and
+     * keeps the first widgets of all of them.
+     */
+    @Override
+    public List<Widget> findPage(Optional<String> category, long afterId, int limit) {
+        if (category.isPresent()) {
+            Shard shard = this.shardFor(category.get());
+            return shard.getTransactions().read(() -> shard.getWidgetDAO().findPage(category, afterId, limit));
+        }
+
+        List<Widget> widgets = flatten(this.onShards(this.shards.values(), shard -> shard.getTransactions()
+                .read(() -> shard.getWidgetDAO().findPage(category, afterId, limit))));
+        widgets.sort(Comparator.comparingLong(Widget::getId));
+        return widgets.size() > limit ? new ArrayList<>(widgets.subList(0, limit)) : widgets;
+    }
+
+    /**
+     * Reads the widgets from the category's shard, or, for all categories, reads them from every shard and
+     * keeps the cheapest of all of them.
+     */
+    @Override
+    public List<Widget> findByPrice(Optional<String> category, double afterPrice, long afterId, double maxPrice,
+            int limit) {
+        if (category.isPresent()) {
+            Shard shard = this.shardFor(category.get());
+            return shard.getTransactions().read(() -> shard.getWidgetDAO()
+                    .findByPrice(category, afterPrice, afterId, maxPrice, limit));
+        }
+
+        List<Widget> widgets = flatten(this.onShards(this.shards.values(), shard -> shard.getTransactions()
+                .read(() -> shard.getWidgetDAO().findByPrice(category, afterPrice, afterId, maxPrice, limit))));
+        widgets.sort(Comparator.comparingDouble(Widget::getPrice).thenComparingLong(Widget::getId));
+        return widgets.size() > limit ? new ArrayList<>(widgets.subList(0, limit)) : widgets;
+    }
+
+    /**
+     * Searches the category's shard, or, for all categories, every shard and keeps the shortest names of all
+     * of them.
+     */
+    @Override
+    public List<Widget> findByName(String query, Optional<String> category, int limit) {
+        if (category.isPresent()) {
+            Shard shard = this.shardFor(category.get());
+            return shard.getTransactions().read(() -> shard.getWidgetDAO().findByName(query, category, limit));
+        }
+
+        List<Widget> widgets = flatten(this.onShards(this.shards.values(), shard -> shard.getTransactions()
+                .read(() -> shard.getWidgetDAO().findByName(query, category, limit))));
+        widgets.sort(Comparator.comparingInt((Widget widget) -> widget.getName().length())
+                .thenComparingLong(Widget::getId));
+        return widgets.size() > limit ? new ArrayList<>(widgets.subList(0, limit)) : widgets;
+    }
+
+    /**
+     * Streams the widgets of the category's shard, or those of every shard one after the other: the widgets
+     * are in ID order within each shard only.
+     */
+    @Override
+    public void scroll(Optional<String> category, Consumer<Widget> consumer) {
+        Collection<Shard> shards = category.isPresent()
+                ? Collections.singletonList(this.shardFor(category.get()))
+                : this.shards.values();
+        for (Shard shard : shards) {
+            shard.getTransactions().read(() -> {
+                shard.getWidgetDAO().scroll(category, consumer);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public Optional<Widget> findById(long id) {
+        return this.shardOf(id)
+                .flatMap(shard -> shard.getTransactions().read(() -> shard.getWidgetDAO().findById(id)));
+    }
+
+    @Override
+    public List<Widget> findByIds(Collection<Long> ids) {
+        Map<Shard, List<Long>> byShard = this.groupByShard(ids, Function.identity());
+        return flatten(this.onShards(byShard.keySet(), shard -> shard.getTransactions()
+                .read(() -> shard.getWidgetDAO().findByIds(byShard.get(shard)))));
+    }
+
+    @Override
+    public List<Widget> findAllByCategory(String category) {
+        Shard shard = this.shardFor(category);
+        return shard.getTransactions().read(() -> shard.getWidgetDAO().findAllByCategory(category));
+    }
+
+    @Override
+    public Optional<CategoryInfo> aggregateByCategory(String category) {
+        Shard shard = this.shardFor(category);
+        return shard.getTransactions().read(() -> shard.getWidgetDAO().aggregateByCategory(category));
+    }
+
+    /**
+     * Aggregates every shard in parallel. A category is stored on a single shard, so its statistics are
+     * those of that shard.
+     */
+    @Override
+    public List<CategoryInfo> aggregateAllCategories() {
+        List<CategoryInfo> categories = flatten(this.onShards(this.shards.values(),
+                shard -> shard.getTransactions().read(() -> shard.getWidgetDAO().aggregateAllCategories())));
+        categories.sort(Comparator.comparing(CategoryInfo::getCategory));
+        return categories;
+    }
+
+    private Shard shardFor(String category) {
+        return this.shards.get(this.ring.shardFor(category));
+    }
+
+    // Empty for IDs of no shard, which can't be those of a widget
+    private Optional<Shard> shardOf(long id) {
+        return Optional.ofNullable(this.shards.get(ShardIdGenerator.shardOf(id)));
+    }
+
+    private void checkCategory(long id, WidgetDTO widgetDTO, boolean partial) {
+        String category = widgetDTO.getCategory();
+        if ((!partial || category != null) && this.ring.shardFor(category) != ShardIdGenerator.shardOf(id)) {
+            throw new CrossShardUpdateException(id, category);
+        }
+    }
+
+    // The IDs of every shard, skipping those of no shard
+    private <T> Map<Shard, T> groupByShard(Collection<Long> ids, Function<List<Long>, T> group) {
+        Map<Shard, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (Long id : ids) {
+            this.shardOf(id).ifPresent(shard -> idsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(id));
+        }
+        Map<Shard, T> groups = new LinkedHashMap<>();
+        idsByShard.forEach((shard, shardIds) -> groups.put(shard, group.apply(shardIds)));
+        return groups;
+    }
+
+    /**
+     * Runs the work of every shard in parallel, or on the calling thread for a single shard, and returns their
+     * results once all of them completed. The first failure is rethrown.
+     */
+    private <T> List<T> onShards(Collection<Shard> shards, Function<Shard, T> work) {
+        if (shards.size() <= 1) {
+            return shards.stream().map(work).collect(Collectors.toList());
+        }
+
+        List<CompletableFuture<T>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> work.apply(shard), this.fanOut))
+                .collect(Collectors.toList());
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private static <T> List<T> flatten(List<? extends Collection<T>> lists) {
+        List<T> flattened = new ArrayList<>();
+        lists.forEach(flattened::addAll);
+        return flattened;
+    }
+}
@@ -0,0 +1,113 @@
+package com.warehouse.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.SessionFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.warehouse.dao.WidgetChangeDAO;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.SessionFactories;
+import com.warehouse.db.TimedUnitOfWorkAwareProxyFactory;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.WidgetMapper;
+
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.validation.ValidationMethod;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Builds the DAO storing widgets across several shards, partitioned by category. The connection pool of
+ * every shard is reported as metrics and checked for health as {@code shard-<id>}.
+ */
+public class ShardingFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    // Points of every shard on the ring, more spread the categories more evenly among shards
+    @JsonProperty("virtualNodes")
+    @Getter
+    @Setter
+    @Min(1)
+    private int virtualNodes = 128;
+
+    // Threads reading and writing shards in parallel, for the requests spanning several of them
+    @JsonProperty("fanOutThreads")
+    @Getter
+    @Setter
+    @Min(1)
+    private int fanOutThreads = 16;
+
+    // Only required when enabled
+    @JsonProperty("shards")
+    @Getter
+    @Setter
+    @Valid
+    @NotNull
+    private List<ShardFactory> shards = Collections.emptyList();
+
+    @JsonIgnore
+    @ValidationMethod(message = "sharding requires at least one shard, with distinct ids")
+    public boolean isShardsValid() {
+        return !this.enabled || (!this.shards.isEmpty()
+                && this.shards.stream().map(ShardFactory::getId).distinct().count() == this.shards.size());
+    }
+
+    /**
+     * Builds the session factory of every shard, managed by the environment's lifecycle, and the DAO
+     * routing to them.
+     */
+    public ShardedWidgetDAO build(Environment environment, List<Class<?>> entities, WidgetMapper widgetMapper,
+            int batchSize) {
+        return this.build(environment, entities, widgetMapper, batchSize, null);
+    }
+
+    /**
+     * @param changeOrigin identifies this node in the changes every shard records in its outbox, or null to
+     *                     record none
+     */
+    public ShardedWidgetDAO build(Environment environment, List<Class<?>> entities, WidgetMapper widgetMapper,
+            int batchSize, String changeOrigin) {
+        return this.build(environment, entities, widgetMapper, batchSize, changeOrigin, 0);
+    }
+
+    /**
+     * @param transactionTimeoutSeconds the timeout of the transactions of every shard, or 0 for none
+     */
+    public ShardedWidgetDAO build(Environment environment, List<Class<?>> entities, WidgetMapper widgetMapper,
+            int batchSize, String changeOrigin, int transactionTimeoutSeconds) {
+        List<Shard> shards = new ArrayList<>(this.shards.size());
+        for (ShardFactory shardFactory : this.shards) {
+            SessionFactory sessionFactory = SessionFactories.buildUncached(environment, "shard-" + shardFactory.getId(),
+                    shardFactory.getDatabase(), entities, Collections.singletonMap(ShardIdGenerator.SHARD_SETTING,
+                            Integer.toString(shardFactory.getId())));
+            Transactions transactions = new TimedUnitOfWorkAwareProxyFactory(HibernateBundle.DEFAULT_NAME,
+                    sessionFactory, transactionTimeoutSeconds).create(Transactions.class);
+            WidgetChangeDAO changeDAO = changeOrigin == null ? null : new WidgetChangeDAO(sessionFactory, changeOrigin);
+            shards.add(new Shard(shardFactory.getId(), sessionFactory,
+                    new WidgetDAO(sessionFactory, null, changeDAO, widgetMapper, batchSize), transactions));
+        }
+
+        ExecutorService fanOut = environment.lifecycle()
+                .executorService("shard-fan-out-%d")
+                .minThreads(this.fanOutThreads)
+                .maxThreads(this.fanOutThreads)
+                .build();
+        ShardRing ring = new ShardRing(shards.stream().map(Shard::getId).collect(Collectors.toList()),
+                this.virtualNodes);
+        return new ShardedWidgetDAO(shards, ring, fanOut, widgetMapper, batchSize);
+    }
+}
@@ -0,0 +1,131 @@
+package com.warehouse.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable columnar snapshot of the price and creation time of every widget, in primitive arrays grouped
+ * by category: the values of the i-th category, in category order, are at positions {@code offsets[i]} to
+ * {@code offsets[i + 1]} of both columns.
+ *
+ * No statistic relates the price of a widget to its creation time, so each column is sorted on its own
+ * within a category, which gives minimum, maximum and percentiles by position.
+ */
+public final class PriceColumns {
+
+    private final String[] categories;
+    private final int[] offsets;
+    private final double[] prices;
+    private final long[] createdAt;
+    private final long builtAt;
+
+    private PriceColumns(String[] categories, int[] offsets, double[] prices, long[] createdAt, long builtAt) {
+        this.categories = categories;
+        this.offsets = offsets;
+        this.prices = prices;
+        this.createdAt = createdAt;
+        this.builtAt = builtAt;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of widgets.
+     */
+    public int getSize() {
+        return this.prices.length;
+    }
+
+    /**
+     * Returns the approximate memory taken by the columns, in bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) this.prices.length * (Double.BYTES + Long.BYTES) + (long) this.offsets.length * Integer.BYTES;
+    }
+
+    /**
+     * Returns when the snapshot was taken, in milliseconds since the epoch.
+     */
+    public long getBuiltAt() {
+        return this.builtAt;
+    }
+
+    String[] getCategories() {
+        return this.categories;
+    }
+
+    // The position of a category, negative if it has no widgets
+    int indexOf(String category) {
+        return Arrays.binarySearch(this.categories, category);
+    }
+
+    int from(int category) {
+        return this.offsets[category];
+    }
+
+    int to(int category) {
+        return this.offsets[category + 1];
+    }
+
+    double[] getPrices() {
+        return this.prices;
+    }
+
+    long[] getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * Collects the widgets category by category, in growable arrays, then lays them out in the columns.
+     */
+    public static final class Builder {
+        private final Map<String, Column> columns = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String category, double price, long createdAt) {
+            this.columns.computeIfAbsent(category, key -> new Column()).add(price, createdAt);
+            return this;
+        }
+
+        public PriceColumns build(long builtAt) {
+            String[] categories = this.columns.keySet().toArray(new String[0]);
+            Arrays.sort(categories);
+
+            int[] offsets = new int[categories.length + 1];
+            for (int i = 0; i < categories.length; i++) {
+                offsets[i + 1] = offsets[i] + this.columns.get(categories[i]).size;
+            }
+            double[] prices = new double[offsets[categories.length]];
+            long[] createdAt = new long[prices.length];
+            for (int i = 0; i < categories.length; i++) {
+                Column column = this.columns.get(categories[i]);
+                System.arraycopy(column.prices, 0, prices, offsets[i], column.size);
+                System.arraycopy(column.createdAt, 0, createdAt, offsets[i], column.size);
+                Arrays.sort(prices, offsets[i], offsets[i + 1]);
+                Arrays.sort(createdAt, offsets[i], offsets[i + 1]);
+            }
+            return new PriceColumns(categories, offsets, prices, createdAt, builtAt);
+        }
+    }
+
+    private static final class Column {
+        private double[] prices = new double[16];
+        private long[] createdAt = new long[16];
+        private int size;
+
+        private void add(double price, long created) {
+            if (this.size == this.prices.length) {
+                this.prices = Arrays.copyOf(this.prices, this.size * 2);
+                this.createdAt = Arrays.copyOf(this.createdAt, this.size * 2);
+            }
+            this.prices[this.size] = price;
+            this.createdAt[this.size] = created;
+            this.size++;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.warehouse.stats;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+
+/**
+ * Rebuilds the snapshot of the {@link PriceStatistics} from the database, in a read unit of work, so from
+ * the read replica when there is one.
+ */
+public class PriceColumnsLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceColumnsLoader.class);
+
+    private final WidgetDAO widgetDAO;
+    private final Transactions transactions;
+    private final PriceStatistics statistics;
+
+    public PriceColumnsLoader(WidgetDAO widgetDAO, Transactions transactions, PriceStatistics statistics) {
+        this.widgetDAO = widgetDAO;
+        this.transactions = transactions;
+        this.statistics = statistics;
+    }
+
+    public void rebuild() {
+        try {
+            long start = System.nanoTime();
+            this.statistics.rebuild(consumer -> this.transactions.read(() -> {
+                this.widgetDAO.scroll(Optional.empty(), consumer);
+                return null;
+            }));
+            LOGGER.info("Built price statistics snapshot in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to build price statistics snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.warehouse.stats;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import com.codahale.metrics.Timer;
+import com.warehouse.entity.Widget;
+import com.warehouse.representation.CategoryStats;
+import com.warehouse.representation.CategoryStats.PriceBin;
+import com.warehouse.representation.CategoryStats.TimeBucket;
+
+/**
+ * Computes the price statistics of the categories from a {@link PriceColumns} snapshot, rebuilt from the
+ * database periodically: percentiles by position in the sorted prices, everything else by a parallel scan
+ * of the columns on a fork-join pool.
+ */
+public class PriceStatistics {
+
+    private final ForkJoinPool pool;
+    private final int maxBuckets;
+    private final Timer builds;
+    private volatile PriceColumns columns;
+
+    /**
+     * @param maxBuckets most creation time buckets of a category, at least 2, so a short bucket over a long
+     *                   time doesn't allocate arrays too large
+     * @param builds     times the builds of the snapshot
+     */
+    public PriceStatistics(ForkJoinPool pool, int maxBuckets, Timer builds) {
+        this.pool = pool;
+        this.maxBuckets = maxBuckets;
+        this.builds = builds;
+    }
+
+    /**
+     * Returns the current snapshot, empty until built once.
+     */
+    public Optional<PriceColumns> getColumns() {
+        return Optional.ofNullable(this.columns);
+    }
+
+    /**
+     * Builds a new snapshot from every widget given by {@code scan}, and replaces the current one once
+     * complete.
+     */
+    public void rebuild(Consumer<Consumer<Widget>> scan) {
+        try (Timer.Context timer = this.builds.time()) {
+            long builtAt = System.currentTimeMillis();
+            PriceColumns.Builder builder = PriceColumns.builder();
+            scan.accept(widget -> builder.add(widget.getCategory(), widget.getPrice(),
+                    widget.getCreatedAt() == null ? 0L : widget.getCreatedAt().getTime()));
+            this.columns = builder.build(builtAt);
+        }
+    }
+
+    /**
+     * Returns the statistics of every category that has widgets, ordered by category.
+     *
+     * @param percentiles  between 0 and 100
+     * @param bins         number of price bins of the histogram
+     * @param bucketMillis width of the creation time buckets
+     * @param exactBucket  whether to refuse a width that would need more time buckets than allowed, rather
+     *                     than widen it to the smallest multiple that doesn't
+     * @throws TooManyBucketsException if a category would have more time buckets than allowed
+     */
+    public List<CategoryStats> computeAll(PriceColumns columns, List<Double> percentiles, int bins,
+            long bucketMillis, boolean exactBucket) {
+        List<CategoryStats> stats = new ArrayList<>(columns.getCategories().length);
+        for (int category = 0; category < columns.getCategories().length; category++) {
+            stats.add(this.compute(columns, category, percentiles, bins, bucketMillis, exactBucket));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of a category, empty if it has no widgets.
+     *
+     * @see #computeAll
+     */
+    public Optional<CategoryStats> compute(PriceColumns columns, String category, List<Double> percentiles,
+            int bins, long bucketMillis, boolean exactBucket) {
+        int index = columns.indexOf(category);
+        return index < 0
+                ? Optional.empty()
+                : Optional.of(this.compute(columns, index, percentiles, bins, bucketMillis, exactBucket));
+    }
+
+    private CategoryStats compute(PriceColumns columns, int category, List<Double> percentiles, int bins,
+            long requestedBucketMillis, boolean exactBucket) {
+        int from = columns.from(category);
+        int to = columns.to(category);
+        double[] prices = columns.getPrices();
+        long[] createdAt = columns.getCreatedAt();
+        double minPrice = prices[from];
+        double maxPrice = prices[to - 1];
+
+        long bucketMillis = requestedBucketMillis;
+        long buckets = buckets(createdAt[from], createdAt[to - 1], bucketMillis);
+        if (buckets > this.maxBuckets) {
+            if (exactBucket) {
+                throw new TooManyBucketsException(columns.getCategories()[category], buckets, this.maxBuckets);
+            }
+            bucketMillis = this.widen(createdAt[from], createdAt[to - 1], requestedBucketMillis, buckets);
+            buckets = buckets(createdAt[from], createdAt[to - 1], bucketMillis);
+        }
+        long origin = Math.floorDiv(createdAt[from], bucketMillis) * bucketMillis;
+
+        double binWidth = (maxPrice - minPrice) / bins;
+        StatsScan.Partial partial = this.pool.invoke(new StatsScan(columns, from, to, minPrice, binWidth, bins,
+                origin, bucketMillis, (int) buckets));
+
+        Map<String, Double> percentileValues = new LinkedHashMap<>();
+        for (double percentile : percentiles) {
+            percentileValues.put(percentileName(percentile), percentile(prices, from, to, percentile));
+        }
+        List<PriceBin> histogram = new ArrayList<>(bins);
+        for (int i = 0; i < bins; i++) {
+            double binTo = i == bins - 1 ? maxPrice : minPrice + (i + 1) * binWidth;
+            histogram.add(new PriceBin(minPrice + i * binWidth, binTo, partial.histogram[i]));
+        }
+        List<TimeBucket> created = new ArrayList<>(partial.created.length);
+        for (int i = 0; i < partial.created.length; i++) {
+            created.add(new TimeBucket(origin + i * bucketMillis, partial.created[i]));
+        }
+
+        return new CategoryStats(columns.getCategories()[category], partial.count, minPrice, maxPrice,
+                partial.mean, Math.sqrt(partial.squaredDeviations / partial.count), percentileValues, histogram,
+                bucketMillis, created, columns.getBuiltAt());
+    }
+
+    // Buckets aligned to their width, from the bucket of the oldest widget to the newest's
+    private static long buckets(long oldest, long newest, long bucketMillis) {
+        long origin = Math.floorDiv(oldest, bucketMillis) * bucketMillis;
+        return Math.floorDiv(newest - origin, bucketMillis) + 1;
+    }
+
+    // The smallest multiple of the width that needs no more buckets than allowed. Past the first guess, whose
+    // alignment can add a bucket, dividing into one bucket less than allowed always fits
+    private long widen(long oldest, long newest, long bucketMillis, long buckets) {
+        long multiple = (buckets + this.maxBuckets - 1) / this.maxBuckets;
+        if (buckets(oldest, newest, bucketMillis * multiple) > this.maxBuckets) {
+            multiple = (buckets + this.maxBuckets - 2) / (this.maxBuckets - 1);
+        }
+        return bucketMillis * multiple;
+    }
+
+    // Linear interpolation between the closest ranks of the sorted prices
+    static double percentile(double[] sortedPrices, int from, int to, double percentile) {
+        double rank = (to - from - 1) * percentile / 100;
+        int lower = (int) Math.floor(rank);
+        if (lower >= to - from - 1) {
+            return sortedPrices[to - 1];
+        }
+        double lowerPrice = sortedPrices[from + lower];
+        return lowerPrice + (rank - lower) * (sortedPrices[from + lower + 1] - lowerPrice);
+    }
+
+    // p50, p99.9
+    private static String percentileName(double percentile) {
+        return "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.warehouse.stats;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.ForkJoinPool;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Answers GET /widgets/stats from a columnar snapshot of the prices and creation times of the widgets,
+ * rebuilt periodically, so the statistics are as old as the snapshot.
+ */
+public class StatsFactory {
+    @JsonProperty("enabled")
+    @Getter
+    @Setter
+    private boolean enabled = true;
+
+    @JsonProperty("rebuildInterval")
+    @Getter
+    @Setter
+    @NotNull
+    private Duration rebuildInterval = Duration.minutes(5);
+
+    // Threads scanning the snapshot
+    @JsonProperty("parallelism")
+    @Getter
+    @Setter
+    @Min(1)
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // Most creation time buckets of a category in a response. Buckets of the default width are widened to fit
+    @JsonProperty("maxBuckets")
+    @Getter
+    @Setter
+    @Min(2)
+    private int maxBuckets = 1000;
+
+    /**
+     * Builds the statistics, with a fork-join pool managed by the lifecycle, and registers metrics under the
+     * given prefix: how long building the snapshot took ({@code builds}), its widgets ({@code size}), the
+     * memory taken by its columns ({@code memory-bytes}) and its age ({@code age-millis}).
+     */
+    public PriceStatistics build(LifecycleEnvironment lifecycle, MetricRegistry metrics, String metricsPrefix) {
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        lifecycle.manage(new ExecutorServiceManager(pool, Duration.seconds(5), "price-statistics"));
+
+        PriceStatistics statistics = new PriceStatistics(pool, this.maxBuckets,
+                metrics.timer(name(metricsPrefix, "builds")));
+        metrics.register(name(metricsPrefix, "size"), (Gauge<Integer>) () -> statistics.getColumns()
+                .map(PriceColumns::getSize)
+                .orElse(0));
+        metrics.register(name(metricsPrefix, "memory-bytes"), (Gauge<Long>) () -> statistics.getColumns()
+                .map(PriceColumns::getMemoryBytes)
+                .orElse(0L));
+        metrics.register(name(metricsPrefix, "age-millis"), (Gauge<Long>) () -> statistics.getColumns()
+                .map(columns -> System.currentTimeMillis() - columns.getBuiltAt())
+                .orElse(0L));
+        return statistics;
+    }
+}
@@ -0,0 +1,105 @@
+package com.warehouse.stats;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans a range of the columns of a category, splitting it in halves scanned in parallel down to
+ * {@link #THRESHOLD} widgets. Computes the mean and the sum of squared deviations by Chan's parallel
+ * variant of Welford's algorithm, the widgets per price bin and per creation time bucket.
+ */
+class StatsScan extends RecursiveTask<StatsScan.Partial> {
+
+    static final int THRESHOLD = 16_384;
+
+    private final PriceColumns columns;
+    private final int from;
+    private final int to;
+    private final double minPrice;
+    private final double binWidth;
+    private final int bins;
+    private final long origin;
+    private final long bucketMillis;
+    private final int buckets;
+
+    /**
+     * @param binWidth width of the price bins starting at {@code minPrice}, 0 for a single bin
+     * @param origin   start of the first creation time bucket
+     */
+    StatsScan(PriceColumns columns, int from, int to, double minPrice, double binWidth, int bins, long origin,
+            long bucketMillis, int buckets) {
+        this.columns = columns;
+        this.from = from;
+        this.to = to;
+        this.minPrice = minPrice;
+        this.binWidth = binWidth;
+        this.bins = bins;
+        this.origin = origin;
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+
+    @Override
+    protected Partial compute() {
+        if (this.to - this.from <= THRESHOLD) {
+            return this.scan();
+        }
+        int middle = (this.from + this.to) >>> 1;
+        StatsScan left = this.split(this.from, middle);
+        StatsScan right = this.split(middle, this.to);
+        left.fork();
+        Partial rightPartial = right.compute();
+        return left.join().merge(rightPartial);
+    }
+
+    private StatsScan split(int splitFrom, int splitTo) {
+        return new StatsScan(this.columns, splitFrom, splitTo, this.minPrice, this.binWidth, this.bins,
+                this.origin, this.bucketMillis, this.buckets);
+    }
+
+    private Partial scan() {
+        double[] prices = this.columns.getPrices();
+        long[] createdAt = this.columns.getCreatedAt();
+        Partial partial = new Partial(this.bins, this.buckets);
+
+        for (int i = this.from; i < this.to; i++) {
+            double price = prices[i];
+            partial.count++;
+            double delta = price - partial.mean;
+            partial.mean += delta / partial.count;
+            partial.squaredDeviations += delta * (price - partial.mean);
+
+            int bin = this.binWidth == 0 ? 0 : (int) ((price - this.minPrice) / this.binWidth);
+            partial.histogram[Math.min(bin, this.bins - 1)]++;
+            partial.created[(int) ((createdAt[i] - this.origin) / this.bucketMillis)]++;
+        }
+        return partial;
+    }
+
+    static final class Partial {
+        long count;
+        double mean;
+        double squaredDeviations;
+        final long[] histogram;
+        final long[] created;
+
+        private Partial(int bins, int buckets) {
+            this.histogram = new long[bins];
+            this.created = new long[buckets];
+        }
+
+        private Partial merge(Partial other) {
+            long count = this.count + other.count;
+            double delta = other.mean - this.mean;
+            this.squaredDeviations += other.squaredDeviations + delta * delta * this.count * other.count / count;
+            this.mean += delta * other.count / count;
+            this.count = count;
+            for (int i = 0; i < this.histogram.length; i++) {
+                this.histogram[i] += other.histogram[i];
+            }
+            for (int i = 0; i < this.created.length; i++) {
+                this.created[i] += other.created[i];
+            }
+            return this;
+        }
+    }
+}
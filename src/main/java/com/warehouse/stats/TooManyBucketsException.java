@@ -0,0 +1,13 @@
+package com.warehouse.stats;
+
+/**
+ * Thrown when the creation time buckets of the width asked for would be more than allowed for a category.
+ */
+public class TooManyBucketsException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public TooManyBucketsException(String category, long buckets, int maxBuckets) {
+        super("Category " + category + " would have " + buckets + " time buckets, at most " + maxBuckets
+                + " are allowed");
+    }
+}
@@ -0,0 +1,42 @@
+package com.warehouse.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.cache.CacheManager;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SecondLevelCacheFactoryTest {
+
+    @Test
+    @DisplayName("Should keep the caches off when disabled")
+    public void disabledTest() {
+        Configuration configuration = new Configuration();
+
+        new SecondLevelCacheFactory().configure(configuration);
+
+        assertThat(configuration.getProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE)).isEqualTo("false");
+        assertThat(configuration.getProperties()).doesNotContainKey(ConfigSettings.CACHE_MANAGER);
+    }
+
+    @Test
+    @DisplayName("Should create every configured region before Hibernate starts")
+    public void enabledTest() {
+        Configuration configuration = new Configuration();
+        SecondLevelCacheFactory factory = new SecondLevelCacheFactory();
+        factory.setEnabled(true);
+
+        factory.configure(configuration);
+
+        assertThat(configuration.getProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE)).isEqualTo("true");
+        assertThat(configuration.getProperty(AvailableSettings.USE_QUERY_CACHE)).isEqualTo("true");
+        CacheManager cacheManager = (CacheManager) configuration.getProperties().get(ConfigSettings.CACHE_MANAGER);
+        assertThat(cacheManager.getCacheNames()).containsExactlyInAnyOrder(SecondLevelCacheFactory.ENTITY_REGION,
+                SecondLevelCacheFactory.QUERY_RESULTS_REGION, SecondLevelCacheFactory.UPDATE_TIMESTAMPS_REGION);
+        cacheManager.close();
+    }
+}
@@ -0,0 +1,81 @@
+package com.warehouse.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+
+public class WidgetCacheFactoryTest {
+
+    @Test
+    @DisplayName("Should report cache statistics in the metric registry")
+    public void cacheMetricsTest() {
+        MetricRegistry metrics = new MetricRegistry();
+        WidgetCache cache = new WidgetCacheFactory().build(metrics, "widgets.cache", Jackson.newObjectMapper());
+
+        cache.put(new WidgetSnapshot(1L, "Harry Potter and the Philosopher's Stone", "Book", 9.60, 0L, 0L, 0L));
+        cache.getIfPresent(1L);
+        cache.getIfPresent(2L);
+
+        assertThat(metrics.meter("widgets.cache.hits").getCount()).isEqualTo(1);
+        assertThat(metrics.meter("widgets.cache.misses").getCount()).isEqualTo(1);
+        assertThat(metrics.getGauges().get("widgets.cache.size").getValue()).isEqualTo(1L);
+        assertThat(((Gauge<?>) metrics.getGauges().get("widgets.cache.hit-rate")).getValue()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Should not record statistics when disabled")
+    public void cacheWithoutStatsTest() {
+        MetricRegistry metrics = new MetricRegistry();
+        WidgetCacheFactory factory = new WidgetCacheFactory();
+        factory.setRecordStats(false);
+
+        WidgetCache cache = factory.build(metrics, "widgets.cache", Jackson.newObjectMapper());
+        cache.getIfPresent(1L);
+
+        assertThat(metrics.getMeters()).isEmpty();
+        assertThat(metrics.getGauges()).containsOnlyKeys("widgets.cache.size");
+    }
+
+    @Test
+    @DisplayName("Should reload a widget in the background once refreshAfterWrite has passed")
+    public void refreshAheadTest() throws Exception {
+        WidgetSnapshot updated = new WidgetSnapshot(1L, "Harry Potter and the Chamber of Secrets", "Book", 9.60,
+                0L, 1L, 1L);
+        WidgetSnapshotLoader loader = mock(WidgetSnapshotLoader.class);
+        when(loader.load(1L)).thenReturn(updated);
+        WidgetCacheFactory factory = new WidgetCacheFactory();
+        factory.setRefreshAfterWrite(Duration.milliseconds(1));
+
+        WidgetCache cache = factory.build(new MetricRegistry(), "widgets.cache", Jackson.newObjectMapper(), loader,
+                Runnable::run);
+        cache.put(new WidgetSnapshot(1L, "Harry Potter and the Philosopher's Stone", "Book", 9.60, 0L, 0L, 0L));
+        Thread.sleep(10);
+
+        // The stale widget is served while the refresh it triggers runs
+        cache.getIfPresent(1L);
+
+        assertThat(cache.getIfPresent(1L).getSnapshot()).isSameAs(updated);
+        verify(loader, atLeastOnce()).load(1L);
+    }
+
+    @Test
+    @DisplayName("Should refuse a refreshAfterWrite that isn't shorter than expireAfterWrite")
+    public void refreshAfterExpiryTest() {
+        WidgetCacheFactory factory = new WidgetCacheFactory();
+        factory.setRefreshAfterWrite(factory.getExpireAfterWrite());
+
+        assertThat(factory.isRefreshBeforeExpiry()).isFalse();
+    }
+}
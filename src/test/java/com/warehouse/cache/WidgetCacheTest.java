@@ -0,0 +1,181 @@
+package com.warehouse.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.jackson.Jackson;
+
+public class WidgetCacheTest {
+
+    private static final WidgetSnapshot SNAPSHOT = new WidgetSnapshot(1L, "Harry Potter and the Philosopher's Stone",
+            "Book", 9.60, 0L, 0L, 0L);
+
+    @Test
+    @DisplayName("Should load a widget once for concurrent misses")
+    public void coalescedLoadTest() throws Exception {
+        Timer directLoads = new Timer();
+        Meter coalescedLoads = new Meter();
+        WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(), Jackson.newObjectMapper(), directLoads,
+                coalescedLoads);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<CachedWidget> first = executor.submit(() -> cache.get(1L, id -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return SNAPSHOT;
+            }));
+            loading.await(5, TimeUnit.SECONDS);
+            Future<CachedWidget> second = executor.submit(() -> cache.get(1L, id -> {
+                loads.incrementAndGet();
+                return SNAPSHOT;
+            }));
+            // Let the second request reach the running load before it completes
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getSnapshot()).isSameAs(SNAPSHOT);
+            assertThat(second.get(5, TimeUnit.SECONDS).getSnapshot()).isSameAs(SNAPSHOT);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(directLoads.getCount()).isEqualTo(1);
+        assertThat(coalescedLoads.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should record a single hit or miss per lookup")
+    public void statsTest() {
+        AsyncCache<Long, CachedWidget> caffeine = Caffeine.newBuilder().recordStats().buildAsync();
+        WidgetCache cache = new WidgetCache(caffeine, Jackson.newObjectMapper());
+
+        cache.get(1L, id -> SNAPSHOT);
+        cache.get(1L, id -> SNAPSHOT);
+
+        assertThat(caffeine.synchronous().stats().missCount()).isEqualTo(1);
+        assertThat(caffeine.synchronous().stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should write and invalidate widgets while a load is in progress, without caching its result")
+    public void invalidateDuringLoadTest() throws Exception {
+        WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(), Jackson.newObjectMapper());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<CachedWidget> load = executor.submit(() -> cache.get(1L, id -> {
+                loading.countDown();
+                await(release);
+                return SNAPSHOT;
+            }));
+            loading.await(5, TimeUnit.SECONDS);
+
+            cache.put(new WidgetSnapshot(2L, "Teapot", "Kitchen", 5.0, 0L, 0L, 0L));
+            cache.invalidate(1L);
+            release.countDown();
+
+            assertThat(load.get(5, TimeUnit.SECONDS).getSnapshot()).isSameAs(SNAPSHOT);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.getIfPresent(1L)).isNull();
+        assertThat(cache.getIfPresent(2L)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should fail the requests waiting for a load that failed, and not cache it")
+    public void failedLoadTest() {
+        WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(), Jackson.newObjectMapper());
+
+        assertThatThrownBy(() -> cache.get(1L, id -> {
+            throw new IllegalStateException("Database unavailable");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.get(1L, id -> SNAPSHOT).getSnapshot()).isSameAs(SNAPSHOT);
+    }
+
+    @Test
+    @DisplayName("Should not cache a widget that doesn't exist")
+    public void loadMissingWidgetTest() {
+        WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(), Jackson.newObjectMapper());
+
+        assertThat(cache.get(2L, id -> null)).isNull();
+        assertThat(cache.getIfPresent(2L)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should return the load of a widget only while it is in progress")
+    public void getLoadingTest() throws Exception {
+        Meter coalescedLoads = new Meter();
+        WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(), Jackson.newObjectMapper(), new Timer(),
+                coalescedLoads);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(cache.getLoading(1L)).isNull();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> cache.get(1L, id -> {
+                loading.countDown();
+                await(release);
+                return SNAPSHOT;
+            }));
+            loading.await(5, TimeUnit.SECONDS);
+
+            CompletableFuture<CachedWidget> load = cache.getLoading(1L);
+            release.countDown();
+
+            assertThat(load.get(5, TimeUnit.SECONDS).getSnapshot()).isSameAs(SNAPSHOT);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.getLoading(1L)).isNull();
+        assertThat(coalescedLoads.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep the later version of a widget written concurrently")
+    public void putLaterVersionTest() {
+        WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(), Jackson.newObjectMapper());
+        WidgetSnapshot later = new WidgetSnapshot(1L, "Harry Potter and the Chamber of Secrets", "Book", 9.60, 0L,
+                0L, 1L);
+
+        cache.put(later);
+        assertThat(cache.put(SNAPSHOT).getSnapshot()).isSameAs(SNAPSHOT);
+
+        assertThat(cache.getIfPresent(1L).getSnapshot()).isSameAs(later);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
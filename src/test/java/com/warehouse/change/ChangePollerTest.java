@@ -0,0 +1,211 @@
+package com.warehouse.change;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetChangeDAO;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dao.WriteCondition;
+import com.warehouse.db.SessionFactories;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+import com.warehouse.entity.WidgetChange;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.WidgetSnapshot;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Two nodes sharing an embedded database: node A writes widgets, the poller of node B applies them.
+ */
+public class ChangePollerTest {
+
+    private static final String URL = "jdbc:h2:mem:changes;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final Environment environment = new Environment("warehouse", Jackson.newObjectMapper(),
+            Validators.newValidatorFactory(), new MetricRegistry(), ChangePollerTest.class.getClassLoader(),
+            new HealthCheckRegistry(), new Configuration());
+    private final WidgetCache cache = mock(WidgetCache.class);
+    private final CategoryAggregateIndex categoryIndex = new CategoryAggregateIndex(true);
+    private final NameSearchIndex searchIndex = new NameSearchIndex(100, new Timer());
+    private final Meter applied = new Meter();
+
+    private SessionFactory sessionFactory;
+    private Transactions transactions;
+    private WidgetDAO nodeA;
+    private WidgetDAO nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        this.sessionFactory = SessionFactories.buildUncached(this.environment, "changes", database(),
+                Arrays.asList(Widget.class, WidgetChange.class), Collections.emptyMap());
+        this.transactions = new UnitOfWorkAwareProxyFactory(HibernateBundle.DEFAULT_NAME, this.sessionFactory)
+                .create(Transactions.class);
+        this.nodeA = new WidgetDAO(this.sessionFactory, null, new WidgetChangeDAO(this.sessionFactory, "a"),
+                new WidgetMapper(), 50);
+        this.nodeB = new WidgetDAO(this.sessionFactory, null, new WidgetChangeDAO(this.sessionFactory, "b"),
+                new WidgetMapper(), 50);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Should evict the widgets written by other nodes, but not those written by this one")
+    public void pollTest() {
+        ChangePoller poller = this.poller(0);
+        poller.poll();
+
+        List<Long> created = this.transactions.write(() -> this.nodeA.createAll(Arrays.asList(
+                new WidgetDTO("Widget 1", "Book", 1d), new WidgetDTO("Widget 2", "Book", 2d),
+                new WidgetDTO("Widget 3", "Book", 3d)))).stream().map(Widget::getId).collect(Collectors.toList());
+        this.transactions.write(() -> this.nodeA.updateById(created.get(0), new WidgetDTO(null, null, 5d), true,
+                WriteCondition.none()));
+        this.transactions.write(() -> this.nodeA.deleteById(created.get(1), WriteCondition.none()));
+        Widget own = this.transactions.write(() -> this.nodeB.create(new WidgetDTO("Widget 4", "Book", 4d)));
+        poller.poll();
+
+        verify(this.cache, times(2)).invalidate(created.get(0));
+        verify(this.cache, times(2)).invalidate(created.get(1));
+        verify(this.cache).invalidate(created.get(2));
+        verify(this.cache, never()).invalidate(own.getId());
+        assertThat(this.applied.getCount()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should reload the widgets written by other nodes into the indexes, and remove the deleted ones")
+    public void reindexTest() {
+        ChangePoller poller = this.poller(0);
+        poller.poll();
+
+        List<Long> created = this.transactions.write(() -> this.nodeA.createAll(Arrays.asList(
+                new WidgetDTO("Widget 1", "Book", 1d), new WidgetDTO("Widget 2", "Book", 2d),
+                new WidgetDTO("Widget 3", "Book", 3d)))).stream().map(Widget::getId).collect(Collectors.toList());
+        poller.poll();
+        this.transactions.write(() -> this.nodeA.updateById(created.get(0), new WidgetDTO("Gadget 1", null, 5d), true,
+                WriteCondition.none()));
+        this.transactions.write(() -> this.nodeA.deleteById(created.get(1), WriteCondition.none()));
+        poller.poll();
+
+        assertThat(this.categoryIndex.findByPrice(Optional.of("Book"), Double.NEGATIVE_INFINITY, 0,
+                Double.MAX_VALUE, 10)).extracting(WidgetSnapshot::getId).containsExactly(created.get(2),
+                        created.get(0));
+        assertThat(this.categoryIndex.get("Book").map(CategoryInfo::getNumberOfWidgets)).contains(2);
+        assertThat(this.searchIndex.search("Widget", Optional.empty(), 10)).extracting(WidgetSnapshot::getName)
+                .containsExactly("Widget 3");
+        assertThat(this.searchIndex.search("Gadget", Optional.empty(), 10)).extracting(WidgetSnapshot::getId)
+                .containsExactly(created.get(0));
+    }
+
+    @Test
+    @DisplayName("Should apply a change committed after later ones, and every change only once")
+    public void lateCommitTest() throws Exception {
+        ChangePoller poller = this.poller(60_000);
+        poller.poll();
+
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO widget_change (widget_id, operation, origin, changed_at) VALUES (?, ?, ?, ?)")) {
+                statement.setLong(1, 42);
+                statement.setString(2, "UPDATED");
+                statement.setString(3, "a");
+                statement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                statement.executeUpdate();
+            }
+            Widget widget = this.transactions.write(() -> this.nodeA.create(new WidgetDTO("Widget", "Book", 1d)));
+            poller.poll();
+
+            verify(this.cache).invalidate(widget.getId());
+            verify(this.cache, never()).invalidate(42);
+
+            connection.commit();
+            poller.poll();
+            poller.poll();
+
+            verify(this.cache).invalidate(widget.getId());
+            verify(this.cache).invalidate(42);
+        }
+    }
+
+    @Test
+    @DisplayName("Should start after the changes settled before its first poll")
+    public void firstPollTest() {
+        this.transactions.write(() -> this.nodeA.create(new WidgetDTO("Widget", "Book", 1d)));
+
+        this.poller(0).poll();
+
+        verify(this.cache, never()).invalidate(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should delete the changes older than the retention")
+    public void pruneTest() throws Exception {
+        this.transactions.write(() -> this.nodeA.create(new WidgetDTO("Widget", "Book", 1d)));
+        WidgetChangeDAO changeDAO = this.nodeA.getChangeDAO();
+        assertThat(this.transactions.read(() -> changeDAO.findAfter(0, 10))).hasSize(1);
+
+        this.poller(0).prune(60_000);
+        assertThat(this.transactions.read(() -> changeDAO.findAfter(0, 10))).hasSize(1);
+
+        Thread.sleep(10);
+        this.poller(0).prune(0);
+        assertThat(this.transactions.read(() -> changeDAO.findAfter(0, 10))).isEmpty();
+    }
+
+    private ChangePoller poller(long settleMillis) {
+        ChangeSource source = new ChangeSource("database", this.nodeB, this.transactions,
+                this.sessionFactory);
+        // Small batches, read over several queries
+        return new ChangePoller(Collections.singletonList(source), this.cache, this.categoryIndex, this.searchIndex,
+                settleMillis, 2, new Timer(), this.applied);
+    }
+
+    private static DataSourceFactory database() {
+        DataSourceFactory database = new DataSourceFactory();
+        database.setDriverClass("org.h2.Driver");
+        database.setUrl(URL);
+        database.setUser("sa");
+        database.setPassword("");
+        database.setValidationQuery("SELECT 1");
+        database.setProperties(Collections.singletonMap("hibernate.hbm2ddl.auto", "create-drop"));
+        return database;
+    }
+}
@@ -0,0 +1,172 @@
+package com.warehouse.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+public class DatabaseExecutorTest {
+
+    private final AsyncResponse response = mock(AsyncResponse.class);
+    private final List<Runnable> queued = new ArrayList<>();
+    private final Counter inFlight = new Counter();
+    private final Timer queueWait = new Timer();
+    private final Meter rejections = new Meter();
+    private final Meter timeouts = new Meter();
+
+    @Test
+    @DisplayName("Should resume the request with the result of the work run by the executor")
+    public void executeTest() {
+        DatabaseExecutor executor = this.executor(this.queued::add);
+
+        executor.read(this.response, () -> "widget");
+        verify(this.response, never()).resume(any(Object.class));
+        assertThat(this.inFlight.getCount()).isEqualTo(1);
+        this.queued.forEach(Runnable::run);
+
+        verify(this.response).setTimeout(1000, TimeUnit.MILLISECONDS);
+        verify(this.response).resume("widget");
+        assertThat(this.queueWait.getCount()).isEqualTo(1);
+        assertThat(this.inFlight.getCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should resume the request with the exception thrown by the work")
+    public void failedWorkTest() {
+        WebApplicationException notFound = new WebApplicationException(Status.NOT_FOUND);
+
+        DatabaseExecutor.direct(new Transactions()).write(this.response, () -> {
+            throw notFound;
+        });
+
+        verify(this.response).resume(notFound);
+        verify(this.response, never()).setTimeout(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should only publish a write once its unit of work committed")
+    public void committedTest() {
+        IllegalStateException rolledBack = new IllegalStateException("Commit failed");
+        List<String> published = new ArrayList<>();
+        DatabaseExecutor executor = DatabaseExecutor.direct(new Transactions() {
+            @Override
+            public <T> T write(Supplier<T> work) {
+                work.get();
+                throw rolledBack;
+            }
+        });
+
+        executor.write(this.response, () -> "widget", published::add);
+
+        verify(this.response).resume(rolledBack);
+        assertThat(published).isEmpty();
+
+        DatabaseExecutor.direct(new Transactions()).write(this.response, () -> "widget", written -> {
+            published.add(written);
+            return "published";
+        });
+
+        verify(this.response).resume("published");
+        assertThat(published).containsExactly("widget");
+    }
+
+    @Test
+    @DisplayName("Should answer 503 when the queue is full")
+    public void rejectedTest() {
+        DatabaseExecutor executor = this.executor(command -> {
+            throw new RejectedExecutionException();
+        });
+
+        executor.read(this.response, () -> "widget");
+
+        verify(this.response).resume(argThat(DatabaseExecutorTest::isServiceUnavailable));
+        assertThat(this.rejections.getCount()).isEqualTo(1);
+        assertThat(this.inFlight.getCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should answer 503 on timeout, and skip the work of a request already answered")
+    public void timeoutTest() {
+        DatabaseExecutor executor = this.executor(this.queued::add);
+        ArgumentCaptor<TimeoutHandler> timeoutHandler = ArgumentCaptor.forClass(TimeoutHandler.class);
+        boolean[] ran = new boolean[1];
+
+        executor.read(this.response, () -> ran[0] = true);
+        verify(this.response).setTimeoutHandler(timeoutHandler.capture());
+        timeoutHandler.getValue().handleTimeout(this.response);
+        this.queued.forEach(Runnable::run);
+
+        verify(this.response).resume(argThat(DatabaseExecutorTest::isServiceUnavailable));
+        verify(this.response, never()).resume(eq(true));
+        assertThat(ran[0]).isFalse();
+        assertThat(this.timeouts.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should let work that started run to completion and answer the request despite the timeout")
+    public void startedWorkTimeoutTest() {
+        DatabaseExecutor executor = this.executor(this.queued::add);
+        ArgumentCaptor<TimeoutHandler> timeoutHandler = ArgumentCaptor.forClass(TimeoutHandler.class);
+
+        executor.write(this.response, () -> {
+            timeoutHandler.getValue().handleTimeout(this.response);
+            return "widget";
+        });
+        verify(this.response).setTimeoutHandler(timeoutHandler.capture());
+        this.queued.forEach(Runnable::run);
+
+        verify(this.response, never()).resume(any(Throwable.class));
+        verify(this.response).resume("widget");
+        verify(this.response, times(2)).setTimeout(1000, TimeUnit.MILLISECONDS);
+        assertThat(this.timeouts.getCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should carry the routing of reads set for the request over to the work")
+    public void readRoutingTest() {
+        DatabaseExecutor executor = this.executor(this.queued::add);
+
+        ReadRouting.setPrimaryRequired(true);
+        executor.execute(this.response, ReadRouting::isPrimaryRequired);
+        ReadRouting.setPrimaryRequired(false);
+        this.queued.forEach(Runnable::run);
+
+        verify(this.response).resume(true);
+        assertThat(ReadRouting.isPrimaryRequired()).isFalse();
+    }
+
+    private DatabaseExecutor executor(Executor executor) {
+        return new DatabaseExecutor(new Transactions(), executor, 1000, this.inFlight, this.queueWait,
+                this.rejections, this.timeouts);
+    }
+
+    private static boolean isServiceUnavailable(Throwable throwable) {
+        return throwable instanceof WebApplicationException && ((WebApplicationException) throwable).getResponse()
+                .getStatus() == Status.SERVICE_UNAVAILABLE.getStatusCode();
+    }
+}
@@ -0,0 +1,132 @@
+package com.warehouse.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Routes the units of work between two embedded databases, one standing for the primary and the other for
+ * its replica. Nothing replicates between them, which tells where every read went.
+ */
+public class ReadReplicaTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Environment environment = new Environment("warehouse", Jackson.newObjectMapper(),
+            Validators.newValidatorFactory(), this.metrics, ReadReplicaTest.class.getClassLoader(),
+            new HealthCheckRegistry(), new Configuration());
+    private final ReadReplicaFactory readReplicaFactory = new ReadReplicaFactory();
+
+    private SessionFactory primary;
+    private SessionFactory replica;
+    private WidgetDAO widgetDAO;
+    private Transactions transactions;
+
+    @BeforeEach
+    public void setUp() {
+        List<Class<?>> entities = Collections.singletonList(Widget.class);
+        SessionFactoryFactory sessionFactoryFactory = new SessionFactoryFactory();
+        DataSourceFactory primaryDatabase = database("primary");
+        this.primary = sessionFactoryFactory.build(new HibernateBundle<Object>(entities, sessionFactoryFactory) {
+            @Override
+            public DataSourceFactory getDataSourceFactory(Object configuration) {
+                return primaryDatabase;
+            }
+        }, this.environment, primaryDatabase, entities);
+
+        this.readReplicaFactory.setDatabase(database("replica"));
+        this.replica = this.readReplicaFactory.build(this.environment, entities);
+
+        this.widgetDAO = new WidgetDAO(this.primary, this.replica, new WidgetMapper(), 50);
+        this.transactions = this.readReplicaFactory
+                .buildProxyFactory(this.metrics, "database.routing", this.primary, this.replica)
+                .create(Transactions.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.primary.close();
+        this.replica.close();
+    }
+
+    @Test
+    @DisplayName("Should write to the primary, and read from the replica unless the primary is required")
+    public void routingTest() {
+        Widget widget = this.transactions.write(() -> this.widgetDAO.create(new WidgetDTO("Widget", "Book", 1d)));
+
+        Optional<Widget> fromReplica = this.transactions.read(() -> this.widgetDAO.findById(widget.getId()));
+        Optional<Widget> fromPrimary = ReadRouting.run(true,
+                () -> this.transactions.read(() -> this.widgetDAO.findById(widget.getId())));
+
+        assertThat(fromReplica).isEmpty();
+        assertThat(fromPrimary).hasValueSatisfying(found -> assertThat(found.getName()).isEqualTo("Widget"));
+        assertThat(ReadRouting.isPrimaryRequired()).isFalse();
+        assertThat(this.metrics.meter("database.routing.replica-reads").getCount()).isEqualTo(1);
+        assertThat(this.metrics.meter("database.routing.primary-reads").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should scroll the replica in a unit of work routed to it")
+    public void scrollTest() {
+        try (Session session = this.replica.openSession()) {
+            session.beginTransaction();
+            session.persist(new WidgetMapper().toEntity(new WidgetDTO("Replicated", "Book", 1d)));
+            session.getTransaction().commit();
+        }
+
+        List<String> names = new ArrayList<>();
+        this.transactions.read(() -> {
+            this.widgetDAO.scroll(Optional.empty(), widget -> names.add(widget.getName()));
+            return null;
+        });
+
+        assertThat(names).containsExactly("Replicated");
+    }
+
+    @Test
+    @DisplayName("Should report the pool and the health of the replica")
+    public void metricsTest() throws Exception {
+        // The pools register their metrics when they are started
+        for (LifeCycle managed : this.environment.lifecycle().getManagedObjects()) {
+            managed.start();
+        }
+
+        assertThat(this.metrics.getGauges().keySet()).anyMatch(name -> name.contains(ReadReplicaAspect.REPLICA_NAME));
+        assertThat(this.environment.healthChecks().getNames()).contains(ReadReplicaAspect.REPLICA_NAME);
+    }
+
+    private static DataSourceFactory database(String name) {
+        DataSourceFactory database = new DataSourceFactory();
+        database.setDriverClass("org.h2.Driver");
+        database.setUser("sa");
+        database.setPassword("");
+        database.setUrl("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        database.setProperties(Collections.singletonMap("hibernate.hbm2ddl.auto", "create-drop"));
+        return database;
+    }
+}
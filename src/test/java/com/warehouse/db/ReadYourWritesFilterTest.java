@@ -0,0 +1,69 @@
+package com.warehouse.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Meter;
+
+public class ReadYourWritesFilterTest {
+
+    private final Meter pinnedRequests = new Meter();
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter("X-Client-Id", 60_000, 100,
+            this.pinnedRequests);
+
+    @AfterEach
+    public void tearDown() {
+        ReadRouting.setPrimaryRequired(false);
+    }
+
+    @Test
+    @DisplayName("Should send the reads of a client that just wrote to the primary, and only theirs")
+    public void filterTest() throws Exception {
+        this.filter.filter(request(HttpMethod.GET, "writer"));
+        assertThat(ReadRouting.isPrimaryRequired()).isFalse();
+
+        ContainerRequestContext write = request(HttpMethod.POST, "writer");
+        this.filter.filter(write);
+        this.filter.filter(write, response(Status.OK));
+
+        this.filter.filter(request(HttpMethod.GET, "writer"));
+        assertThat(ReadRouting.isPrimaryRequired()).isTrue();
+        this.filter.filter(request(HttpMethod.GET, "reader"));
+        assertThat(ReadRouting.isPrimaryRequired()).isFalse();
+        assertThat(this.pinnedRequests.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep reading from the replica after a failed write")
+    public void failedWriteTest() throws Exception {
+        ContainerRequestContext write = request(HttpMethod.PUT, "writer");
+        this.filter.filter(write);
+        this.filter.filter(write, response(Status.CONFLICT));
+
+        this.filter.filter(request(HttpMethod.GET, "writer"));
+        assertThat(ReadRouting.isPrimaryRequired()).isFalse();
+    }
+
+    private static ContainerRequestContext request(String method, String clientId) {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getHeaderString("X-Client-Id")).thenReturn(clientId);
+        return request;
+    }
+
+    private static ContainerResponseContext response(Status status) {
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        when(response.getStatusInfo()).thenReturn(status);
+        return response;
+    }
+}
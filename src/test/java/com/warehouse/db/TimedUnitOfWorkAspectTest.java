@@ -0,0 +1,95 @@
+package com.warehouse.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.TransactionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Environment;
+
+public class TimedUnitOfWorkAspectTest {
+
+    private final Environment environment = new Environment("warehouse", Jackson.newObjectMapper(),
+            Validators.newValidatorFactory(), new MetricRegistry(), TimedUnitOfWorkAspectTest.class.getClassLoader(),
+            new HealthCheckRegistry(), new Configuration());
+
+    private SessionFactory sessionFactory;
+    private WidgetDAO widgetDAO;
+    private Transactions transactions;
+
+    @BeforeEach
+    public void setUp() {
+        this.sessionFactory = SessionFactories.buildUncached(this.environment, HibernateBundle.DEFAULT_NAME,
+                database(), Collections.singletonList(Widget.class), Collections.emptyMap());
+        this.widgetDAO = new WidgetDAO(this.sessionFactory, new WidgetMapper(), 50);
+        this.transactions = new TimedUnitOfWorkAwareProxyFactory(HibernateBundle.DEFAULT_NAME, this.sessionFactory, 2)
+                .create(Transactions.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Should fail the statements of a transaction that outlived its timeout, and roll it back")
+    public void timeoutTest() {
+        assertThatThrownBy(() -> this.transactions.write(() -> {
+            this.widgetDAO.create(new WidgetDTO("Widget", "Book", 1d));
+            sleep(1100);
+            return this.widgetDAO.findByName("Widget", Optional.empty(), 10);
+        })).hasRootCauseInstanceOf(TransactionException.class);
+
+        assertThat(this.transactions.read(() -> this.widgetDAO.findByName("Widget", Optional.empty(), 10)))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should not time out the unit of work of a stream")
+    public void streamTest() {
+        this.transactions.write(() -> this.widgetDAO.create(new WidgetDTO("Widget", "Book", 1d)));
+
+        assertThat(this.transactions.stream(() -> {
+            sleep(1100);
+            return this.widgetDAO.findByName("Widget", Optional.empty(), 10);
+        })).hasSize(1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DataSourceFactory database() {
+        DataSourceFactory database = new DataSourceFactory();
+        database.setDriverClass("org.h2.Driver");
+        database.setUser("sa");
+        database.setPassword("");
+        database.setUrl("jdbc:h2:mem:timed;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        database.setProperties(Collections.singletonMap("hibernate.hbm2ddl.auto", "create-drop"));
+        return database;
+    }
+}
@@ -0,0 +1,131 @@
+package com.warehouse.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.WidgetSnapshot;
+
+public class CategoryAggregateIndexTest {
+
+    private CategoryAggregateIndex index;
+
+    @BeforeEach
+    public void setup() {
+        this.index = new CategoryAggregateIndex();
+        this.index.put(widget(1L, "Book", 9.60));
+        this.index.put(widget(2L, "Book", 10.40));
+        this.index.put(widget(3L, "Toy", 5.00));
+    }
+
+    @Test
+    @DisplayName("Should aggregate the prices of a category")
+    public void aggregateTest() {
+        CategoryInfo info = this.index.get("Book").get();
+
+        assertThat(info.getNumberOfWidgets()).isEqualTo(2);
+        assertThat(info.getTotalPrice()).isEqualTo(20.0);
+        assertThat(info.getMinPrice()).isEqualTo(9.60);
+        assertThat(info.getMaxPrice()).isEqualTo(10.40);
+        assertThat(info.getAveragePrice()).isEqualTo(10.0);
+    }
+
+    @Test
+    @DisplayName("Should move the contribution of a widget when its category and price change")
+    public void moveCategoryTest() {
+        this.index.put(widget(2L, "Toy", 7.00));
+
+        CategoryInfo book = this.index.get("Book").get();
+        CategoryInfo toy = this.index.get("Toy").get();
+
+        assertThat(book.getNumberOfWidgets()).isEqualTo(1);
+        assertThat(book.getMaxPrice()).isEqualTo(9.60);
+        assertThat(toy.getNumberOfWidgets()).isEqualTo(2);
+        assertThat(toy.getTotalPrice()).isEqualTo(12.0);
+        assertThat(toy.getMaxPrice()).isEqualTo(7.00);
+    }
+
+    @Test
+    @DisplayName("Should forget removed widgets and empty categories")
+    public void removeTest() {
+        this.index.remove(3L);
+        this.index.remove(3L);
+
+        assertThat(this.index.get("Toy")).isEmpty();
+        assertThat(this.index.getAll()).extracting(CategoryInfo::getCategory).containsExactly("Book");
+    }
+
+    @Test
+    @DisplayName("Should ignore a snapshot older than the one it holds")
+    public void staleVersionTest() {
+        this.index.put(new WidgetSnapshot(1L, "Widget 1", "Toy", 20.00, 0L, 0L, 2L));
+        this.index.put(new WidgetSnapshot(1L, "Widget 1", "Book", 9.60, 0L, 0L, 1L));
+
+        assertThat(this.index.get("Book").get().getNumberOfWidgets()).isEqualTo(1);
+        assertThat(this.index.get("Toy").get().getTotalPrice()).isEqualTo(25.00);
+    }
+
+    @Test
+    @DisplayName("Should drop every widget of a cleared category")
+    public void clearCategoryTest() {
+        this.index.clearCategory("Book");
+        this.index.put(widget(1L, "Book", 9.60));
+
+        CategoryInfo book = this.index.get("Book").get();
+
+        assertThat(book.getNumberOfWidgets()).isEqualTo(1);
+        assertThat(book.getTotalPrice()).isEqualTo(9.60);
+    }
+
+    @Test
+    @DisplayName("Should return the widgets of a price range in price order, page after page")
+    public void findByPriceTest() {
+        CategoryAggregateIndex ordered = new CategoryAggregateIndex(true);
+        ordered.put(widget(1L, "Book", 9.60));
+        ordered.put(widget(2L, "Book", 10.40));
+        ordered.put(widget(3L, "Toy", 5.00));
+        ordered.put(widget(4L, "Book", 9.60));
+        ordered.put(widget(5L, "Book", 50.00));
+
+        assertThat(ordered.findByPrice(Optional.of("Book"), 9.60, Long.MIN_VALUE, 20.0, 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(1L, 4L, 2L);
+        assertThat(ordered.findByPrice(Optional.of("Book"), 9.60, 1L, 20.0, 1))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(4L);
+        assertThat(ordered.findByPrice(Optional.empty(), Double.NEGATIVE_INFINITY, Long.MIN_VALUE,
+                Double.POSITIVE_INFINITY, 2))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(3L, 1L);
+        assertThat(ordered.findByPrice(Optional.of("Game"), 0.0, Long.MIN_VALUE, 20.0, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should move a widget in the price order when its category and price change")
+    public void findByPriceAfterUpdateTest() {
+        CategoryAggregateIndex ordered = new CategoryAggregateIndex(true);
+        ordered.put(widget(1L, "Book", 9.60));
+        ordered.put(widget(2L, "Book", 10.40));
+        ordered.put(widget(1L, "Toy", 12.00));
+        ordered.put(widget(2L, "Book", 1.00));
+        ordered.remove(3L);
+
+        assertThat(ordered.findByPrice(Optional.of("Book"), Double.NEGATIVE_INFINITY, Long.MIN_VALUE,
+                Double.POSITIVE_INFINITY, 10))
+                .extracting(WidgetSnapshot::getPrice)
+                .containsExactly(1.00);
+        assertThat(ordered.findByPrice(Optional.of("Toy"), Double.NEGATIVE_INFINITY, Long.MIN_VALUE,
+                Double.POSITIVE_INFINITY, 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(1L);
+    }
+
+    private static WidgetSnapshot widget(long id, String category, double price) {
+        return new WidgetSnapshot(id, "Widget " + id, category, price, 0L, 0L, 0L);
+    }
+}
@@ -0,0 +1,137 @@
+package com.warehouse.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Timer;
+import com.warehouse.representation.WidgetSnapshot;
+
+public class NameSearchIndexTest {
+
+    private NameSearchIndex index;
+
+    @BeforeEach
+    public void setup() {
+        this.index = new NameSearchIndex(100, new Timer());
+        this.index.rebuild(consumer -> Arrays.asList(
+                widget(1L, "Harry Potter and the Philosopher's Stone", "Book", 0L),
+                widget(2L, "Potter's Wheel", "Toy", 0L),
+                widget(3L, "Teapot", "Kitchen", 0L),
+                widget(4L, "Potter", "Book", 0L),
+                widget(5L, "Spotted Dog", "Toy", 0L)).forEach(consumer));
+    }
+
+    @Test
+    @DisplayName("Should rank an equal name, then a name prefix, then a word prefix, then a substring")
+    public void rankingTest() {
+        assertThat(this.index.search("POTTER", Optional.empty(), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(4L, 2L, 1L);
+        assertThat(this.index.search("pot", Optional.empty(), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(4L, 2L, 1L, 3L, 5L);
+    }
+
+    @Test
+    @DisplayName("Should filter by category and keep the most relevant widgets only")
+    public void categoryAndLimitTest() {
+        assertThat(this.index.search("pot", Optional.of("Toy"), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(2L, 5L);
+        assertThat(this.index.search("pot", Optional.empty(), 2))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(4L, 2L);
+    }
+
+    @Test
+    @DisplayName("Should refuse queries shorter than a trigram")
+    public void shortQueryTest() {
+        assertThatThrownBy(() -> this.index.search("Te", Optional.empty(), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should follow renamed and deleted widgets")
+    public void writesTest() {
+        this.index.put(widget(3L, "Kettle", "Kitchen", 1L));
+        this.index.remove(4L);
+
+        assertThat(this.index.search("pot", Optional.empty(), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(2L, 1L, 5L);
+        assertThat(this.index.search("kettle", Optional.empty(), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(3L);
+        assertThat(this.index.getSize()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should keep the writes made during a rebuild over the widgets read before them")
+    public void writesDuringRebuildTest() {
+        this.index.rebuild(consumer -> {
+            consumer.accept(widget(1L, "Old name", "Book", 0L));
+            this.index.put(widget(2L, "New name", "Toy", 1L));
+            this.index.remove(3L);
+            consumer.accept(widget(2L, "Old name", "Toy", 0L));
+            consumer.accept(widget(3L, "Old name", "Kitchen", 0L));
+        });
+
+        assertThat(this.index.search("name", Optional.empty(), 10))
+                .extracting(WidgetSnapshot::getName)
+                .containsExactly("Old name", "New name");
+        assertThat(this.index.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should only be available once loaded and while holding every widget")
+    public void availabilityTest() {
+        NameSearchIndex small = new NameSearchIndex(2, new Timer());
+        small.put(widget(1L, "Potter", "Book", 0L));
+        assertThat(small.isAvailable()).isFalse();
+
+        small.rebuild(consumer -> consumer.accept(widget(1L, "Potter", "Book", 0L)));
+        assertThat(small.isAvailable()).isTrue();
+
+        small.put(widget(2L, "Teapot", "Kitchen", 0L));
+        small.put(widget(3L, "Spotted Dog", "Toy", 0L));
+        assertThat(small.isAvailable()).isFalse();
+        assertThat(small.getSize()).isZero();
+        assertThat(small.getPostings()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop the stale entries of rewritten widgets")
+    public void compactionTest() {
+        for (int version = 1; version <= 3000; version++) {
+            this.index.put(widget(5L, "Spotted Dog " + version, "Toy", version));
+        }
+
+        assertThat(this.index.getPostings()).isLessThan(3000L * 10);
+        assertThat(this.index.search("dog 3000", Optional.empty(), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(5L);
+        assertThat(this.index.search("dog 2999", Optional.empty(), 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should rank widgets found elsewhere like its own matches")
+    public void rankTest() {
+        assertThat(NameSearchIndex.rank("potter", Arrays.asList(
+                widget(1L, "Harry Potter and the Philosopher's Stone", "Book", 0L),
+                widget(3L, "Teapot", "Kitchen", 0L),
+                widget(4L, "Potter", "Book", 0L)), 10))
+                .extracting(WidgetSnapshot::getId)
+                .containsExactly(4L, 1L);
+    }
+
+    private static WidgetSnapshot widget(long id, String name, String category, long version) {
+        return new WidgetSnapshot(id, name, category, 0d, 0L, 0L, version);
+    }
+}
@@ -0,0 +1,228 @@
+package com.warehouse.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+
+public class IngestionQueueTest {
+
+    private final WidgetDAO widgetDAO = mock(WidgetDAO.class);
+    private final Histogram batchSizes = new Histogram(new SlidingWindowReservoir(100));
+    private final Meter rejections = new Meter();
+    private final List<Integer> committedBatches = new ArrayList<>();
+    private IngestionQueue queue;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        this.queue.stop();
+    }
+
+    @Test
+    @DisplayName("Should commit a batch as soon as it is full")
+    public void fullBatchTest() throws Exception {
+        this.queue = this.start(100, 5, TimeUnit.MINUTES.toNanos(1));
+        this.committing();
+
+        List<CompletableFuture<Widget>> created = this.offer(5);
+
+        assertThat(joinNames(created)).containsExactly("Widget 0", "Widget 1", "Widget 2", "Widget 3", "Widget 4");
+        assertThat(this.committedBatches).containsExactly(5);
+        assertThat(this.batchSizes.getSnapshot().getMax()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should commit a batch once its first widget waited the maximum delay")
+    public void delayedBatchTest() throws Exception {
+        this.queue = this.start(100, 100, TimeUnit.MILLISECONDS.toNanos(200));
+        this.committing();
+
+        List<CompletableFuture<Widget>> created = this.offer(3);
+
+        assertThat(joinNames(created)).hasSize(3);
+        assertThat(this.committedBatches).containsExactly(3);
+    }
+
+    @Test
+    @DisplayName("Should reject widgets while the queue is full")
+    public void backpressureTest() throws Exception {
+        this.queue = this.start(1, 1, 0);
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.widgetDAO.createAll(anyList())).thenAnswer(invocation -> {
+            committing.countDown();
+            release.await();
+            return toWidgets(invocation.getArgument(0));
+        });
+
+        CompletableFuture<Widget> first = this.queue.offer(dto("Widget 0"));
+        committing.await();
+        CompletableFuture<Widget> second = this.queue.offer(dto("Widget 1"));
+        CompletableFuture<Widget> rejected = this.queue.offer(dto("Widget 2"));
+        release.countDown();
+
+        assertThat(rejected).isNull();
+        assertThat(this.rejections.getCount()).isEqualTo(1);
+        assertThat(first.get(5, TimeUnit.SECONDS).getName()).isEqualTo("Widget 0");
+        assertThat(second.get(5, TimeUnit.SECONDS).getName()).isEqualTo("Widget 1");
+    }
+
+    @Test
+    @DisplayName("Should withdraw a queued widget, but not one the writer is committing")
+    public void withdrawTest() throws Exception {
+        this.queue = this.start(10, 1, 0);
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.widgetDAO.createAll(anyList())).thenAnswer(invocation -> {
+            committing.countDown();
+            release.await();
+            return toWidgets(invocation.getArgument(0));
+        });
+
+        CompletableFuture<Widget> first = this.queue.offer(dto("Widget 0"));
+        committing.await();
+        CompletableFuture<Widget> second = this.queue.offer(dto("Widget 1"));
+
+        assertThat(this.queue.withdraw(second)).isTrue();
+        assertThat(this.queue.withdraw(first)).isFalse();
+        assertThat(this.queue.getQueueDepth()).isZero();
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getName()).isEqualTo("Widget 0");
+        assertThat(second).isNotDone();
+    }
+
+    @Test
+    @DisplayName("Should commit the widgets queued before stopping, and reject those offered after")
+    public void stopTest() throws Exception {
+        this.queue = this.start(100, 100, TimeUnit.MINUTES.toNanos(1));
+        this.committing();
+
+        List<CompletableFuture<Widget>> created = this.offer(3);
+        this.queue.stop();
+
+        assertThat(created).allMatch(future -> future.isDone() && !future.isCompletedExceptionally());
+        assertThat(this.queue.offer(dto("Widget 3"))).isNull();
+        assertThat(this.rejections.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should retry a failed batch one widget at a time, failing only the bad ones")
+    public void failedBatchTest() throws Exception {
+        this.queue = this.start(100, 3, TimeUnit.MINUTES.toNanos(1));
+        when(this.widgetDAO.createAll(anyList())).thenAnswer(invocation -> {
+            List<WidgetDTO> widgetDTOs = invocation.getArgument(0);
+            if (widgetDTOs.stream().anyMatch(widgetDTO -> widgetDTO.getName().equals("Widget 1"))) {
+                throw new IllegalStateException("Constraint violated");
+            }
+            return toWidgets(widgetDTOs);
+        });
+
+        List<CompletableFuture<Widget>> created = this.offer(3);
+
+        assertThat(created.get(0).get(5, TimeUnit.SECONDS).getName()).isEqualTo("Widget 0");
+        assertThat(created.get(2).get(5, TimeUnit.SECONDS).getName()).isEqualTo("Widget 2");
+        assertThatThrownBy(created.get(1)::join).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should complete the widgets on the completion executor")
+    public void completionsTest() throws Exception {
+        ExecutorService completions = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "completion"));
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.widgetDAO.createAll(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return toWidgets(invocation.getArgument(0));
+        });
+        try {
+            this.queue = new IngestionQueue(100, false, 1, 1000, 1, 0, this.widgetDAO, new Transactions(),
+                    completions, Caffeine.newBuilder().build(), this.batchSizes, new Timer(), this.rejections);
+            this.queue.start();
+
+            CompletableFuture<String> completedOn = this.queue.offer(dto("Widget 0"))
+                    .thenApply(widget -> Thread.currentThread().getName());
+            release.countDown();
+
+            assertThat(completedOn.get(5, TimeUnit.SECONDS)).isEqualTo("completion");
+        } finally {
+            this.queue.stop();
+            completions.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the outcome of tracked widgets by ticket")
+    public void trackTest() throws Exception {
+        this.queue = this.start(100, 1, 0);
+        this.committing();
+
+        CompletableFuture<Widget> created = this.queue.offer(dto("Widget 0"));
+        String ticket = this.queue.track(created);
+        created.get(5, TimeUnit.SECONDS);
+
+        assertThat(this.queue.getTracked(ticket)).containsSame(created);
+        assertThat(this.queue.getTracked("unknown")).isEmpty();
+    }
+
+    private IngestionQueue start(int queueSize, int maxBatchSize, long maxDelayNanos) {
+        IngestionQueue queue = new IngestionQueue(queueSize, false, 1, 1000, maxBatchSize, maxDelayNanos, this.widgetDAO,
+                new Transactions(), Caffeine.newBuilder().build(), this.batchSizes, new Timer(), this.rejections);
+        queue.start();
+        return queue;
+    }
+
+    private void committing() {
+        when(this.widgetDAO.createAll(anyList())).thenAnswer(invocation -> {
+            List<WidgetDTO> widgetDTOs = invocation.getArgument(0);
+            this.committedBatches.add(widgetDTOs.size());
+            return toWidgets(widgetDTOs);
+        });
+    }
+
+    private List<CompletableFuture<Widget>> offer(int count) {
+        List<CompletableFuture<Widget>> created = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            created.add(this.queue.offer(dto("Widget " + i)));
+        }
+        return created;
+    }
+
+    private static List<String> joinNames(List<CompletableFuture<Widget>> created) {
+        return created.stream().map(future -> future.join().getName()).collect(Collectors.toList());
+    }
+
+    private static List<Widget> toWidgets(List<WidgetDTO> widgetDTOs) {
+        WidgetMapper mapper = new WidgetMapper();
+        return widgetDTOs.stream().map(mapper::toEntity).collect(Collectors.toList());
+    }
+
+    private static WidgetDTO dto(String name) {
+        return new WidgetDTO(name, "Book", 1d);
+    }
+}
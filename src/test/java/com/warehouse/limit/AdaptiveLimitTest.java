@@ -0,0 +1,100 @@
+package com.warehouse.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    @DisplayName("Should reject requests beyond the limit")
+    public void tryAcquireTest() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 1, 10, 1.5);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should grow the limit while a saturating load keeps a steady latency")
+    public void growTest() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 1, 100, 1.5);
+
+        saturate(limit, RTT, 50);
+
+        assertThat(limit.getLimit()).isGreaterThan(20);
+        assertThat(limit.getLimit()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("Should shrink the limit when latency rises")
+    public void shrinkTest() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 5, 100, 1.5);
+        saturate(limit, RTT, 20);
+        int steadyLimit = limit.getLimit();
+
+        saturate(limit, RTT * 10, 10);
+
+        assertThat(limit.getLimit()).isLessThan(steadyLimit / 2);
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should back off when requests are dropped, whatever the load")
+    public void droppedTest() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 1, 100, 1.5);
+
+        limit.tryAcquire();
+        limit.release(RTT, true);
+
+        assertThat(limit.getLimit()).isEqualTo(45);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not grow a limit the load doesn't reach")
+    public void idleTest() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 1, 100, 1.5);
+
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(RTT, false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("Should give a permit back without taking its duration for latency")
+    public void releaseWithoutSampleTest() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 1, 10, 1.5);
+
+        limit.tryAcquire();
+        limit.tryAcquire();
+        limit.release();
+        limit.release();
+
+        assertThat(limit.getLimit()).isEqualTo(2);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    // Fills the limit, then completes every request with the given latency, as many times
+    private static void saturate(AdaptiveLimit limit, long rtt, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limit.release(rtt, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.warehouse.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import com.codahale.metrics.Meter;
+import com.warehouse.db.DatabaseUnavailableException;
+
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class ConcurrencyLimitFeatureTest {
+
+    private static final AdaptiveLimit limit = new AdaptiveLimit(10, 1, 100, 1.5);
+    private static final ResourceExtension EXT = ResourceExtension.builder()
+            .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
+            .addProvider(feature())
+            .addResource(new LimitedResource())
+            .build();
+
+    @Test
+    @DisplayName("Should hold the permit of a streamed response until it has been written")
+    public void streamedTest() {
+        Response response = EXT.target("/limited/streamed").request().get();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.readEntity(String.class)).isEqualTo("1");
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should only shrink the limit for requests the database was too busy for")
+    public void droppedTest() {
+        int initial = limit.getLimit();
+
+        assertThat(EXT.target("/limited/unavailable").request().get().getStatus()).isEqualTo(503);
+        assertThat(limit.getLimit()).isEqualTo(initial);
+        assertThat(limit.getInFlight()).isZero();
+
+        assertThat(EXT.target("/limited/busy").request().get().getStatus()).isEqualTo(503);
+        assertThat(limit.getLimit()).isLessThan(initial);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    private static ConcurrencyLimitFeature feature() {
+        Map<LimitGroup, ConcurrencyLimitFilter> filters = new EnumMap<>(LimitGroup.class);
+        filters.put(LimitGroup.READS, new ConcurrencyLimitFilter(LimitGroup.READS, limit, new Meter(), 1));
+        return new ConcurrencyLimitFeature(filters);
+    }
+
+    @Path("/limited")
+    public static class LimitedResource {
+        @GET
+        @Path("/streamed")
+        @ConcurrencyLimited(LimitGroup.READS)
+        public StreamingOutput streamed() {
+            return output -> output.write(String.valueOf(limit.getInFlight()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @GET
+        @Path("/unavailable")
+        @ConcurrencyLimited(LimitGroup.READS)
+        public String unavailable() {
+            throw new WebApplicationException("Not built yet", Status.SERVICE_UNAVAILABLE);
+        }
+
+        @GET
+        @Path("/busy")
+        @ConcurrencyLimited(LimitGroup.READS)
+        public String busy() {
+            throw new DatabaseUnavailableException("Too many requests waiting for the database");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.warehouse.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.codahale.metrics.Meter;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final AdaptiveLimit limit = new AdaptiveLimit(1, 1, 1, 1.5);
+    private final Meter rejections = new Meter();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(LimitGroup.READS, this.limit,
+            this.rejections, 2);
+
+    @Test
+    @DisplayName("Should answer 503 with Retry-After beyond the limit, and admit requests once others complete")
+    public void filterTest() throws Exception {
+        ContainerRequestContext first = request();
+        this.filter.filter(first);
+        verify(first, never()).abortWith(any());
+
+        ContainerRequestContext second = request();
+        this.filter.filter(second);
+        ArgumentCaptor<Response> rejected = ArgumentCaptor.forClass(Response.class);
+        verify(second).abortWith(rejected.capture());
+        assertThat(rejected.getValue().getStatus()).isEqualTo(503);
+        assertThat(rejected.getValue().getHeaderString(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(this.rejections.getCount()).isEqualTo(1);
+
+        // The rejected request holds no permit, the first one gives its own back
+        assertThat(ConcurrencyLimitFilter.take(second)).isNull();
+        assertThat(this.limit.getInFlight()).isEqualTo(1);
+        ConcurrencyLimitFilter.take(first).release(false);
+        assertThat(ConcurrencyLimitFilter.take(first)).isNull();
+        assertThat(this.limit.getInFlight()).isZero();
+
+        ContainerRequestContext third = request();
+        this.filter.filter(third);
+        verify(third, never()).abortWith(any());
+    }
+
+    private static ContainerRequestContext request() {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        Map<String, Object> properties = new HashMap<>();
+        doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setProperty(anyString(), any());
+        doAnswer(invocation -> properties.remove(invocation.getArgument(0)))
+                .when(request).removeProperty(anyString());
+        when(request.getProperty(anyString())).thenAnswer(invocation -> properties.get(invocation.getArgument(0)));
+        return request;
+    }
+}
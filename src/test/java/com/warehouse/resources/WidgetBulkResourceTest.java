@@ -0,0 +1,157 @@
+package com.warehouse.resources;
+
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.IdentifiedWidgetDTO;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.entity.Widget;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.representation.BulkResponse;
+
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class WidgetBulkResourceTest {
+
+    private static final WidgetDAO widgetDAO = mock(WidgetDAO.class);
+    private static final WidgetCache cache = mock(WidgetCache.class);
+
+    private static final ResourceExtension EXT = ResourceExtension.builder()
+            .addResource(new WidgetBulkResource(widgetDAO, cache, new CategoryAggregateIndex(),
+                    Validators.newValidator(), new Transactions(), 3))
+            .build();
+
+    @AfterEach
+    public void tearDown() {
+        reset(widgetDAO, cache);
+    }
+
+    @Test
+    @DisplayName("Should create the valid widgets and report the invalid ones")
+    public void createWidgetsTest() {
+        WidgetDTO valid = new WidgetDTO("Harry Potter and the Philosopher's Stone", "Book", 9.60);
+        WidgetDTO invalid = new WidgetDTO("Harry Potter and the Chamber of Secrets", "Book", -1d);
+
+        when(widgetDAO.createAll(anyList())).thenReturn(Collections.singletonList(widget(7L)));
+
+        BulkResponse response = EXT.target("/widgets/_bulk").request()
+                .post(Entity.json(Arrays.asList(invalid, valid)), BulkResponse.class);
+
+        assertThat(response.getSucceeded()).isEqualTo(1);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getItems().get(0).getStatus()).isEqualTo(422);
+        assertThat(response.getItems().get(0).getError()).contains("price");
+        assertThat(response.getItems().get(1).getStatus()).isEqualTo(201);
+        assertThat(response.getItems().get(1).getId()).isEqualTo(7L);
+
+        verify(widgetDAO).createAll(argThat(widgetDTOs -> widgetDTOs.size() == 1
+                && widgetDTOs.get(0).getName().equals(valid.getName())));
+        verify(cache, never()).put(any());
+    }
+
+    @Test
+    @DisplayName("Should reject bulk requests over the size limit")
+    public void createTooManyWidgetsTest() {
+        List<WidgetDTO> widgetDTOs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            widgetDTOs.add(new WidgetDTO("Widget " + i, "Book", 1d));
+        }
+
+        Response response = EXT.target("/widgets/_bulk").request().post(Entity.json(widgetDTOs));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode());
+        verify(widgetDAO, never()).createAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Should update existing widgets and report missing and duplicate IDs")
+    public void patchWidgetsTest() {
+        List<IdentifiedWidgetDTO> widgetDTOs = Arrays.asList(
+                new IdentifiedWidgetDTO(1L, "Updated Widget", null, null),
+                new IdentifiedWidgetDTO(2L, null, null, 3d),
+                new IdentifiedWidgetDTO(1L, null, "Toy", null));
+
+        when(widgetDAO.updateAll(anyMap(), eq(true))).thenReturn(Collections.singletonList(widget(1L)));
+
+        BulkResponse response = EXT.target("/widgets/_bulk").request()
+                .method("PATCH", Entity.json(widgetDTOs), BulkResponse.class);
+
+        assertThat(response.getItems()).extracting("status").containsExactly(200, 404, 409);
+        verify(cache).invalidateAll(Collections.singletonList(1L));
+    }
+
+    @Test
+    @DisplayName("Should require every field when replacing widgets")
+    public void putWidgetsWithMissingFieldTest() {
+        List<IdentifiedWidgetDTO> widgetDTOs = Collections.singletonList(
+                new IdentifiedWidgetDTO(1L, "Updated Widget", null, 3d));
+
+        when(widgetDAO.updateAll(anyMap(), anyBoolean())).thenReturn(Collections.emptyList());
+
+        BulkResponse response = EXT.target("/widgets/_bulk").request()
+                .put(Entity.json(widgetDTOs), BulkResponse.class);
+
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getItems().get(0).getError()).contains("category");
+    }
+
+    @Test
+    @DisplayName("Should delete widgets by ID")
+    public void deleteWidgetsTest() {
+        when(widgetDAO.deleteAll(any())).thenReturn(new HashSet<>(Arrays.asList(1L, 3L)));
+
+        BulkResponse response = EXT.target("/widgets/_bulk").queryParam("ids", "1,2,3").request()
+                .delete(BulkResponse.class);
+
+        assertThat(response.getItems()).extracting("status").containsExactly(200, 404, 200);
+        verify(cache).invalidateAll(new HashSet<>(Arrays.asList(1L, 3L)));
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed ID list")
+    public void deleteWidgetsInvalidIdsTest() {
+        Response response = EXT.target("/widgets/_bulk").queryParam("ids", "1,two").request().delete();
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    private static Widget widget(long id) {
+        Widget widget = new Widget();
+        widget.setId(id);
+        widget.setName("Widget " + id);
+        widget.setCategory("Book");
+        widget.setPrice(9.60);
+        return widget;
+    }
+}
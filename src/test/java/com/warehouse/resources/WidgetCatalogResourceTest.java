@@ -0,0 +1,190 @@
+package com.warehouse.resources;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.db.Transactions;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.index.NameSearchIndex;
+import com.warehouse.representation.ImportReport;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class WidgetCatalogResourceTest {
+
+    private static final WidgetDAO widgetDAO = mock(WidgetDAO.class);
+    private static final WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(),
+            Jackson.newObjectMapper());
+    private static final DatabaseExecutor database = DatabaseExecutor.direct(new Transactions());
+
+    // With the widget resource, whose path it shares
+    private static final ResourceExtension EXT = ResourceExtension.builder()
+            .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
+            .addResource(new WidgetResource(widgetDAO, cache, new CategoryAggregateIndex(),
+                    Jackson.newObjectMapper(), database, 5))
+            .addResource(new WidgetCatalogResource(widgetDAO, cache, new CategoryAggregateIndex(), NameSearchIndex.disabled(),
+                    Jackson.newObjectMapper(), Validators.newValidator(), database, 2))
+            .build();
+
+    private final List<List<WidgetDTO>> createdBatches = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        reset(widgetDAO);
+        cache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Should export the widgets of a category one per line")
+    public void exportTest() {
+        doAnswer(invocation -> {
+            Consumer<Widget> consumer = invocation.getArgument(1);
+            consumer.accept(new Widget(1L, "Widget 1", "Book", 1d, null, null, 0L));
+            consumer.accept(new Widget(2L, "Widget 2", "Book", 2d, null, null, 3L));
+            return null;
+        }).when(widgetDAO).scroll(eq(Optional.of("Book")), any());
+
+        Response response = EXT.target("/widgets/_export").queryParam("category", "Book").request().get();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getMediaType().toString()).isEqualTo(WidgetCatalogResource.APPLICATION_NDJSON);
+        String body = response.readEntity(String.class);
+        assertThat(body).endsWith("}\n");
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":1,\"name\":\"Widget 1\"");
+        assertThat(lines[1]).startsWith("{\"id\":2,\"name\":\"Widget 2\"");
+    }
+
+    @Test
+    @DisplayName("Should create records without ID or with the ID of no widget, and update the others, in batches")
+    public void importTest() {
+        this.creating();
+        when(widgetDAO.updateAll(anyMap(), anyBoolean())).thenAnswer(invocation -> {
+            Map<Long, WidgetDTO> updates = invocation.getArgument(0);
+            return updates.containsKey(7L)
+                    ? Collections.singletonList(new Widget(7L, "Updated", "Book", 7d, null, null, 1L))
+                    : Collections.emptyList();
+        });
+
+        ImportReport report = this.importWidgets(
+                "{\"name\":\"Widget 1\",\"category\":\"Book\",\"price\":1}\n"
+                        + "{\"id\":7,\"name\":\"Updated\",\"category\":\"Book\",\"price\":7,\"version\":3}\n"
+                        + "{\"id\":8,\"name\":\"Widget 8\",\"category\":\"Book\",\"price\":8}\n");
+
+        assertThat(report.getCreated()).isEqualTo(2);
+        assertThat(report.getUpdated()).isEqualTo(1);
+        assertThat(report.getRejected()).isZero();
+        assertThat(report.isComplete()).isTrue();
+        assertThat(this.createdBatches).extracting(batch -> batch.stream().map(WidgetDTO::getName)
+                .collect(Collectors.toList()))
+                .containsExactly(Collections.singletonList("Widget 1"), Collections.singletonList("Widget 8"));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid records with their line, and go on with the next ones")
+    public void invalidRecordTest() {
+        this.creating();
+        when(widgetDAO.updateAll(anyMap(), anyBoolean())).thenReturn(Collections.emptyList());
+
+        ImportReport report = this.importWidgets(
+                "{\"name\":\"Widget 1\",\"category\":\"Book\",\"price\":-1}\n"
+                        + "{\"name\":\"Widget 2\",\"category\":\"Book\",\"price\":\"free\"}\n"
+                        + "\n"
+                        + "{\"name\":\"Widget 3\",\"category\":\"Book\",\"price\":3}\n");
+
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(2);
+        assertThat(report.isComplete()).isTrue();
+        assertThat(report.getErrors()).extracting(error -> error.getLine()).containsExactly(1L, 2L);
+        assertThat(report.getErrors().get(0).getError()).isEqualTo("price must be greater than or equal to 0");
+    }
+
+    @Test
+    @DisplayName("Should stop at malformed JSON, keeping the batches written before")
+    public void malformedTest() {
+        this.creating();
+        when(widgetDAO.updateAll(anyMap(), anyBoolean())).thenReturn(Collections.emptyList());
+
+        ImportReport report = this.importWidgets(
+                "{\"name\":\"Widget 1\",\"category\":\"Book\",\"price\":1}\n"
+                        + "{\"name\":\"Widget 2\",\"category\":\"Book\",\"price\":2}\n"
+                        + "{\"name\":\"Widget 3\" \"category\":\"Book\"}\n"
+                        + "{\"name\":\"Widget 4\",\"category\":\"Book\",\"price\":4}\n");
+
+        assertThat(report.getCreated()).isEqualTo(2);
+        assertThat(report.isComplete()).isFalse();
+        assertThat(report.getErrors()).hasSize(1);
+        assertThat(report.getErrors().get(0).getLine()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should reject the records of a batch that failed")
+    public void failedBatchTest() {
+        when(widgetDAO.updateAll(anyMap(), anyBoolean())).thenReturn(Collections.emptyList());
+        when(widgetDAO.createAll(anyList())).thenThrow(new IllegalStateException("Connection lost"));
+
+        ImportReport report = this.importWidgets(
+                "{\"name\":\"Widget 1\",\"category\":\"Book\",\"price\":1}\n"
+                        + "{\"name\":\"Widget 2\",\"category\":\"Book\",\"price\":2}\n"
+                        + "{\"name\":\"Widget 3\",\"category\":\"Book\",\"price\":3}\n");
+
+        assertThat(report.getCreated()).isZero();
+        assertThat(report.getRejected()).isEqualTo(3);
+        assertThat(report.getErrors()).extracting(error -> error.getLine()).containsExactly(1L, 3L);
+        verify(widgetDAO, times(2)).createAll(anyList());
+    }
+
+    private ImportReport importWidgets(String ndjson) {
+        return EXT.target("/widgets/_import").request()
+                .post(Entity.entity(ndjson, WidgetCatalogResource.APPLICATION_NDJSON), ImportReport.class);
+    }
+
+    private void creating() {
+        WidgetMapper mapper = new WidgetMapper();
+        when(widgetDAO.createAll(anyList())).thenAnswer(invocation -> {
+            List<WidgetDTO> widgetDTOs = new ArrayList<>(invocation.getArgument(0));
+            this.createdBatches.add(widgetDTOs);
+            return widgetDTOs.stream().map(mapper::toEntity).collect(Collectors.toList());
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package com.warehouse.resources;
+
+import com.warehouse.dao.WidgetChangeDAO;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.db.Transactions;
+import com.warehouse.entity.Widget;
+import com.warehouse.entity.WidgetChange;
+import com.warehouse.entity.WidgetChange.Operation;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class WidgetChangeResourceTest {
+
+    private static final long SETTLE_MILLIS = 5000;
+
+    private static final WidgetChangeDAO changeDAO = mock(WidgetChangeDAO.class);
+    private static final WidgetDAO widgetDAO = mock(WidgetDAO.class);
+
+    private static final ResourceExtension EXT = ResourceExtension.builder()
+            .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
+            .addResource(new WidgetChangeResource(changeDAO, widgetDAO, Jackson.newObjectMapper(),
+                    DatabaseExecutor.direct(new Transactions()), SETTLE_MILLIS, 1000))
+            .build();
+
+    private Date settled;
+
+    @BeforeEach
+    public void setUp() {
+        this.settled = new Date(System.currentTimeMillis() - 2 * SETTLE_MILLIS);
+        Widget widget = new Widget(1L, "Widget", "Book", 1d, this.settled, this.settled, 2L);
+        when(widgetDAO.findByIds(anyCollection())).thenReturn(Collections.singletonList(widget));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reset(changeDAO);
+        reset(widgetDAO);
+    }
+
+    @Test
+    @DisplayName("Should feed the settled changes after a sequence number as newline-delimited JSON")
+    public void getChangesTest() {
+        when(changeDAO.findAfter(10, 1000)).thenReturn(Arrays.asList(
+                new WidgetChange(11, 1, Operation.CREATED, "a", this.settled),
+                new WidgetChange(12, 2, Operation.DELETED, "a", this.settled),
+                new WidgetChange(13, 1, Operation.UPDATED, "a", new Date())));
+
+        Response response = EXT.target("/widgets/changes").queryParam("since", 10).request().get();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getMediaType().toString()).isEqualTo(WidgetChangeResource.APPLICATION_NDJSON);
+        String[] lines = response.readEntity(String.class).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"seq\":11,\"widgetId\":1,\"operation\":\"CREATED\"")
+                .contains("\"widget\":{\"id\":1,");
+        assertThat(lines[1]).startsWith("{\"seq\":12,\"widgetId\":2,\"operation\":\"DELETED\"")
+                .doesNotContain("\"widget\"");
+    }
+
+    @Test
+    @DisplayName("Should feed the changes as server-sent events, after the last event ID of a reconnecting client")
+    public void getChangeEventsTest() {
+        when(changeDAO.findAfter(20, 50)).thenReturn(Collections.singletonList(
+                new WidgetChange(21, 1, Operation.UPDATED, "a", this.settled)));
+
+        Response response = EXT.target("/widgets/changes").queryParam("since", 10).queryParam("limit", 50)
+                .request(WidgetChangeResource.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "20")
+                .get();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getMediaType().toString()).isEqualTo(WidgetChangeResource.TEXT_EVENT_STREAM);
+        assertThat(response.readEntity(String.class))
+                .startsWith("retry: 1000\n\nid: 21\ndata: {\"seq\":21,")
+                .endsWith("}\n\n");
+    }
+
+    @Test
+    @DisplayName("Should feed nothing until the oldest change after the sequence number is settled")
+    public void unsettledTest() {
+        when(changeDAO.findAfter(0, 1000)).thenReturn(Collections.singletonList(
+                new WidgetChange(1, 1, Operation.CREATED, "a", new Date())));
+
+        Response response = EXT.target("/widgets/changes").request().header(HttpHeaders.ACCEPT, "*/*").get();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getMediaType().toString()).isEqualTo(WidgetChangeResource.APPLICATION_NDJSON);
+        assertThat(response.readEntity(String.class)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should answer 404 when changes aren't recorded")
+    public void disabledTest() {
+        WidgetChangeResource resource = new WidgetChangeResource(null, widgetDAO, Jackson.newObjectMapper(),
+                DatabaseExecutor.direct(new Transactions()), SETTLE_MILLIS, 1000);
+
+        assertThatThrownBy(() -> resource.getChanges(null, null, mock(AsyncResponse.class)))
+                .isInstanceOfSatisfying(WebApplicationException.class,
+                        e -> assertThat(e.getResponse().getStatus()).isEqualTo(404));
+    }
+}
@@ -1,16 +1,33 @@
 package com.warehouse.resources;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.warehouse.cache.WidgetCache;
+import com.warehouse.representation.CategoryInfo;
+import com.warehouse.representation.WidgetPage;
 import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dao.WriteCondition;
+import com.warehouse.db.DatabaseExecutor;
+import com.warehouse.db.Transactions;
 import com.warehouse.dto.WidgetDTO;
 import com.warehouse.entity.Widget;
+import com.warehouse.index.CategoryAggregateIndex;
+import com.warehouse.representation.WidgetSnapshot;
 
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import io.dropwizard.testing.junit5.ResourceExtension;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
@@ -19,12 +36,25 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -35,14 +65,36 @@ import org.junit.jupiter.api.extension.ExtendWith;
 public class WidgetResourceTest {
 
     private static final WidgetDAO widgetDAO = mock(WidgetDAO.class);
-    private static final Cache<Long, Widget> cache = mock(Cache.class);
+    private static final WidgetCache cache = new WidgetCache(Caffeine.newBuilder().buildAsync(),
+            Jackson.newObjectMapper());
 
+    // Suspended requests need a real container, and the default connector can't send PATCH. Responses
+    // left unread keep their connection, so the pool is larger than the default of two per host
     private static final ResourceExtension EXT = ResourceExtension.builder()
-            .addResource(new WidgetResource(widgetDAO, cache))
+            .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
+            .setClientConfigurator(config -> config.connectorProvider(new ApacheConnectorProvider())
+                    .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager()))
+            .addResource(new WidgetResource(widgetDAO, cache, new CategoryAggregateIndex(),
+                    Jackson.newObjectMapper(), DatabaseExecutor.direct(new Transactions()), 5))
             .build();
 
     private Widget widget;
 
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PoolingHttpClientConnectionManager connectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(100);
+        connectionManager.setDefaultMaxPerRoute(100);
+        return connectionManager;
+    }
+
     @BeforeEach
     public void setup() {
         this.widget = new Widget();
@@ -55,6 +107,7 @@ public class WidgetResourceTest {
     @AfterEach
     public void tearDown() {
         reset(widgetDAO);
+        cache.invalidateAll();
     }
 
     @Test
@@ -70,6 +123,45 @@ public class WidgetResourceTest {
         verify(widgetDAO).findById(1L);
     }
 
+    @Test
+    @DisplayName("Should return a strong ETag with the widget")
+    public void getWidgetEntityTagTest() {
+        when(widgetDAO.findById(1L)).thenReturn(Optional.of(this.widget));
+
+        Response first = EXT.target("/widgets/1").request().get();
+        Response second = EXT.target("/widgets/1").request().get();
+
+        assertThat(first.getEntityTag()).isNotNull();
+        assertThat(first.getEntityTag().isWeak()).isFalse();
+        assertThat(second.getEntityTag()).isEqualTo(first.getEntityTag());
+        verify(widgetDAO).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Should return a cached widget without querying the database")
+    public void getCachedWidgetTest() {
+        cache.put(WidgetSnapshot.of(this.widget));
+
+        Widget foundWidget = EXT.target("/widgets/1").request().get(Widget.class);
+
+        assertThat(foundWidget.getName()).isEqualTo(this.widget.getName());
+        assertThat(foundWidget.getPrice()).isEqualTo(this.widget.getPrice());
+        verify(widgetDAO, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should answer a matching If-None-Match from the cache with 304")
+    public void getWidgetNotModifiedTest() {
+        this.widget.setVersion(3L);
+        cache.put(WidgetSnapshot.of(this.widget));
+
+        Response response = EXT.target("/widgets/1").request().header(HttpHeaders.IF_NONE_MATCH, "\"3\"").get();
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.NOT_MODIFIED.getStatusCode());
+        assertThat(response.getEntityTag().getValue()).isEqualTo("3");
+        verify(widgetDAO, never()).findById(anyLong());
+    }
+
     @Test
     @DisplayName("Should return not-found error for a widget ID that doesn't exist")
     public void getWidgetNotFoundTest() {
@@ -81,12 +173,75 @@ public class WidgetResourceTest {
     }
 
     @Test
-    @DisplayName("Should return the list of widgets")
-    public void listWidgetsTest() {
-        List<Widget> widgets = new ArrayList<>();
-        widgets.add(widget);
+    @DisplayName("Should answer a miss with the load of the widget already in progress")
+    public void getWidgetLoadingTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> cache.get(1L, id -> {
+                loading.countDown();
+                await(release);
+                return WidgetSnapshot.of(this.widget);
+            }));
+            loading.await(5, TimeUnit.SECONDS);
+
+            Future<Widget> found = EXT.target("/widgets/1").request().async().get(Widget.class);
+            release.countDown();
+
+            assertThat(found.get(5, TimeUnit.SECONDS).getName()).isEqualTo(this.widget.getName());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(widgetDAO, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should return widgets by IDs in request order, loading only the cache misses")
+    public void getWidgetsByIdsTest() {
+        cache.put(WidgetSnapshot.of(this.widget));
+        Widget second = new Widget();
+        second.setId(2L);
+        second.setName("Chess");
+        second.setCategory("Game");
+        second.setPrice(20.0);
+        when(widgetDAO.findByIds(eq(Arrays.asList(2L, 3L)))).thenReturn(Collections.singletonList(second));
+
+        List<Widget> foundWidgets = EXT.target("/widgets").queryParam("ids", "2,1,3").request()
+                .get(new GenericType<List<Widget>>() {
+                });
 
-        when(widgetDAO.findAll()).thenReturn(widgets);
+        assertThat(foundWidgets).extracting(Widget::getId).containsExactly(2L, 1L);
+        assertThat(cache.getIfPresent(2L)).isNotNull();
+        verify(widgetDAO, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should return widgets by IDs posted in the body")
+    public void postWidgetsByIdsTest() {
+        cache.put(WidgetSnapshot.of(this.widget));
+
+        List<Widget> foundWidgets = EXT.target("/widgets/_mget").request()
+                .post(Entity.json(Arrays.asList(1L, 1L)), new GenericType<List<Widget>>() {
+                });
+
+        assertThat(foundWidgets).extracting(Widget::getId).containsExactly(1L);
+        verify(widgetDAO, never()).findByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should refuse to get more widgets at once than allowed")
+    public void getTooManyWidgetsByIdsTest() {
+        Response response = EXT.target("/widgets").queryParam("ids", "1,2,3,4,5,6").request().get();
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should stream the list of widgets")
+    public void listWidgetsTest() {
+        stubScroll(Optional.empty(), widget);
 
         List<Widget> foundWidgets = EXT.target("/widgets").request().get(new GenericType<List<Widget>>() {
         });
@@ -94,17 +249,13 @@ public class WidgetResourceTest {
         assertThat(foundWidgets).hasSize(1);
         assertThat(foundWidgets.get(0).getId()).isEqualTo(widget.getId());
 
-        verify(widgetDAO).findAll();
+        verify(widgetDAO).scroll(eq(Optional.empty()), any());
     }
 
     @Test
     @DisplayName("Should return widgets in requested category")
     public void listWidgetsByCategoryTest() {
-
-        List<Widget> widgets = new ArrayList<>();
-        widgets.add(widget);
-
-        when(widgetDAO.findAllByCategory(eq("Book"))).thenReturn(widgets);
+        stubScroll(Optional.of("Book"), widget);
 
         List<Widget> foundWidgets = EXT.target("/widgets").queryParam("category", "Book").request()
                 .get(new GenericType<List<Widget>>() {
@@ -113,7 +264,46 @@ public class WidgetResourceTest {
         assertThat(foundWidgets).hasSize(1);
         assertThat(foundWidgets.get(0).getId()).isEqualTo(widget.getId());
 
-        verify(widgetDAO).findAllByCategory(eq("Book"));
+        verify(widgetDAO).scroll(eq(Optional.of("Book")), any());
+    }
+
+    @Test
+    @DisplayName("Should return a page of widgets with a cursor to the next one")
+    public void listWidgetsPageTest() {
+        Widget secondWidget = new Widget();
+        secondWidget.setId(2L);
+        secondWidget.setName("Harry Potter and the Chamber of Secrets");
+        secondWidget.setCategory("Book");
+        secondWidget.setPrice(10.20);
+
+        List<Widget> widgets = new ArrayList<>();
+        widgets.add(widget);
+        widgets.add(secondWidget);
+
+        when(widgetDAO.findPage(Optional.empty(), 0L, 2)).thenReturn(widgets);
+        when(widgetDAO.findPage(Optional.empty(), 1L, 2)).thenReturn(widgets.subList(1, 2));
+
+        WidgetPage firstPage = EXT.target("/widgets").queryParam("limit", 1).request().get(WidgetPage.class);
+
+        assertThat(firstPage.getWidgets()).hasSize(1);
+        assertThat(firstPage.getWidgets().get(0).getId()).isEqualTo(1L);
+        assertThat(firstPage.getNext()).isNotNull();
+
+        WidgetPage lastPage = EXT.target("/widgets").queryParam("limit", 1).queryParam("after", firstPage.getNext())
+                .request().get(WidgetPage.class);
+
+        assertThat(lastPage.getWidgets()).hasSize(1);
+        assertThat(lastPage.getWidgets().get(0).getId()).isEqualTo(2L);
+        assertThat(lastPage.getNext()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed page cursor")
+    public void listWidgetsInvalidCursorTest() {
+        Response response = EXT.target("/widgets").queryParam("after", "not a cursor").request().get();
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.BAD_REQUEST.getStatusCode());
+        verify(widgetDAO, never()).findPage(any(), anyLong(), anyInt());
     }
 
     @Test
@@ -177,8 +367,8 @@ public class WidgetResourceTest {
         widget.setCategory("Updated Category");
         widget.setPrice(15.50);
 
-        when(widgetDAO.findById(1L)).thenReturn(Optional.of(widget));
-        when(widgetDAO.update(any(Widget.class), any(WidgetDTO.class))).thenReturn(widget);
+        when(widgetDAO.updateById(eq(1L), any(WidgetDTO.class), eq(false), any(WriteCondition.class)))
+                .thenReturn(Optional.of(widget));
 
         Widget updatedWidget = EXT.target("/widgets/1").request().put(Entity.json(updatedWidgetDTO), Widget.class);
 
@@ -187,8 +377,8 @@ public class WidgetResourceTest {
         assertThat(updatedWidget.getCategory()).isEqualTo(updatedWidgetDTO.getCategory());
         assertThat(updatedWidget.getPrice()).isEqualTo(updatedWidgetDTO.getPrice());
 
-        verify(widgetDAO).findById(1L);
-        verify(widgetDAO).update(any(Widget.class), any(WidgetDTO.class));
+        verify(widgetDAO).updateById(eq(1L), any(WidgetDTO.class), eq(false), any(WriteCondition.class));
+        verify(widgetDAO, never()).findById(anyLong());
     }
 
     @Test
@@ -198,8 +388,8 @@ public class WidgetResourceTest {
 
         widget.setName("Updated Widget");
 
-        when(widgetDAO.findById(1L)).thenReturn(Optional.of(widget));
-        when(widgetDAO.partialUpdate(any(Widget.class), any(WidgetDTO.class))).thenReturn(widget);
+        when(widgetDAO.updateById(eq(1L), any(WidgetDTO.class), eq(true), any(WriteCondition.class)))
+                .thenReturn(Optional.of(widget));
 
         Widget updatedWidget = EXT.target("/widgets/1").request().method("PATCH", Entity.json(updatedWidgetDTO),
                 Widget.class);
@@ -209,18 +399,200 @@ public class WidgetResourceTest {
         assertThat(updatedWidget.getCategory()).isEqualTo(widget.getCategory()); // Category should not change
         assertThat(updatedWidget.getPrice()).isEqualTo(widget.getPrice()); // Price should not change
 
-        verify(widgetDAO).findById(1L);
-        verify(widgetDAO).partialUpdate(any(Widget.class), any(WidgetDTO.class));
+        verify(widgetDAO).updateById(eq(1L), any(WidgetDTO.class), eq(true), any(WriteCondition.class));
+    }
+
+    @Test
+    @DisplayName("Should return 404 when updating a widget that doesn't exist")
+    public void updateMissingWidgetTest() {
+        when(widgetDAO.updateById(eq(2L), any(WidgetDTO.class), eq(false), any(WriteCondition.class)))
+                .thenReturn(Optional.empty());
+
+        Response response = EXT.target("/widgets/2").request()
+                .put(Entity.json(new WidgetDTO("Updated Widget", "Updated Category", 15.50)));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.NOT_FOUND.getStatusCode());
+        verify(widgetDAO, never()).findVersion(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should refuse to update a widget whose version doesn't match If-Match")
+    public void updateWidgetByIdPreconditionFailedTest() {
+        WidgetDTO updatedWidgetDTO = new WidgetDTO("Updated Widget", "Updated Category", 15.50);
+
+        when(widgetDAO.updateById(eq(1L), any(WidgetDTO.class), eq(false),
+                argThat(condition -> condition.getVersions().equals(Collections.singletonList(3L)))))
+                .thenReturn(Optional.empty());
+        when(widgetDAO.findVersion(1L)).thenReturn(Optional.of(4L));
+
+        Response response = EXT.target("/widgets/1").request().header(HttpHeaders.IF_MATCH, "\"3\"")
+                .put(Entity.json(updatedWidgetDTO));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.PRECONDITION_FAILED.getStatusCode());
+        assertThat(response.getHeaderString(HttpHeaders.ETAG)).isEqualTo("\"4\"");
+    }
+
+    @Test
+    @DisplayName("Should refuse a weak If-Match without writing")
+    public void updateWidgetByIdWeakIfMatchTest() {
+        when(widgetDAO.findVersion(1L)).thenReturn(Optional.of(4L));
+
+        Response response = EXT.target("/widgets/1").request().header(HttpHeaders.IF_MATCH, "W/\"4\"")
+                .put(Entity.json(new WidgetDTO("Updated Widget", "Updated Category", 15.50)));
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.PRECONDITION_FAILED.getStatusCode());
+        verify(widgetDAO, never()).updateById(anyLong(), any(WidgetDTO.class), anyBoolean(),
+                any(WriteCondition.class));
+    }
+
+    @Test
+    @DisplayName("Should delete a widget whose version matches If-Match")
+    public void deleteWidgetByIdIfMatchTest() {
+        when(widgetDAO.deleteById(eq(1L), argThat(condition -> condition.getVersions().equals(
+                Collections.singletonList(4L))))).thenReturn(true);
+
+        Response response = EXT.target("/widgets/1").request().header(HttpHeaders.IF_MATCH, "\"4\"").delete();
+
+        assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
     }
 
     @Test
     public void deleteWidgetById() {
-        when(widgetDAO.findById(1L)).thenReturn(Optional.of(widget));
+        when(widgetDAO.deleteById(eq(1L), any(WriteCondition.class))).thenReturn(true);
 
         Response response = EXT.target("/widgets/1").request().delete();
 
-        verify(widgetDAO).delete(widget);
+        verify(widgetDAO).deleteById(eq(1L), any(WriteCondition.class));
+        verify(widgetDAO, never()).findById(anyLong());
         assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
     }
 
+    @Test
+    @DisplayName("Should return the price statistics of a category")
+    public void getPriceForCategoryTest() {
+        when(widgetDAO.aggregateByCategory("Book"))
+                .thenReturn(Optional.of(new CategoryInfo("Book", 20.0, 2, 9.6, 10.4, 10.0)));
+
+        CategoryInfo info = EXT.target("/widgets/info/Book").request().get(CategoryInfo.class);
+
+        assertThat(info.getCategory()).isEqualTo("Book");
+        assertThat(info.getTotalPrice()).isEqualTo(20.0);
+        assertThat(info.getNumberOfWidgets()).isEqualTo(2);
+        assertThat(info.getMinPrice()).isEqualTo(9.6);
+        assertThat(info.getMaxPrice()).isEqualTo(10.4);
+    }
+
+    @Test
+    @DisplayName("Should return empty statistics for a category without widgets")
+    public void getPriceForEmptyCategoryTest() {
+        when(widgetDAO.aggregateByCategory("Toy")).thenReturn(Optional.empty());
+
+        CategoryInfo info = EXT.target("/widgets/info/Toy").request().get(CategoryInfo.class);
+
+        assertThat(info.getTotalPrice()).isEqualTo(0d);
+        assertThat(info.getNumberOfWidgets()).isEqualTo(0);
+        assertThat(info.getAveragePrice()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should return the price statistics of all categories")
+    public void getPriceForAllCategoriesTest() {
+        List<CategoryInfo> infos = new ArrayList<>();
+        infos.add(new CategoryInfo("Book", 20.0, 2, 9.6, 10.4, 10.0));
+        infos.add(new CategoryInfo("Toy", 5.0, 1, 5.0, 5.0, 5.0));
+        when(widgetDAO.aggregateAllCategories()).thenReturn(infos);
+
+        List<CategoryInfo> foundInfos = EXT.target("/widgets/info").request()
+                .get(new GenericType<List<CategoryInfo>>() {
+                });
+
+        assertThat(foundInfos).extracting(CategoryInfo::getCategory).containsExactly("Book", "Toy");
+        verify(widgetDAO).aggregateAllCategories();
+    }
+
+    @Test
+    @DisplayName("Should page through a price range in the database until the category index is loaded")
+    public void listWidgetsByPriceTest() {
+        Widget cheaper = new Widget();
+        cheaper.setId(2L);
+        cheaper.setName("Paperback");
+        cheaper.setCategory("Book");
+        cheaper.setPrice(5.0);
+        when(widgetDAO.findByPrice(Optional.of("Book"), 1.0, Long.MIN_VALUE, 10.0, 2))
+                .thenReturn(Arrays.asList(cheaper, this.widget));
+        when(widgetDAO.findByPrice(Optional.of("Book"), 5.0, 2L, 10.0, 2))
+                .thenReturn(Collections.singletonList(this.widget));
+
+        JsonNode firstPage = EXT.target("/widgets").queryParam("category", "Book").queryParam("sort", "price")
+                .queryParam("minPrice", 1.0).queryParam("maxPrice", 10.0).queryParam("limit", 1)
+                .request().get(JsonNode.class);
+        JsonNode lastPage = EXT.target("/widgets").queryParam("category", "Book").queryParam("sort", "price")
+                .queryParam("minPrice", 1.0).queryParam("maxPrice", 10.0).queryParam("limit", 1)
+                .queryParam("after", firstPage.get("next").asText())
+                .request().get(JsonNode.class);
+
+        assertThat(firstPage.get("widgets").get(0).get("id").asLong()).isEqualTo(2L);
+        assertThat(lastPage.get("widgets").get(0).get("id").asLong()).isEqualTo(1L);
+        assertThat(lastPage.hasNonNull("next")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should refuse price bounds without sorting by price")
+    public void listWidgetsPriceBoundsWithoutSortTest() {
+        Response response = EXT.target("/widgets").queryParam("minPrice", 1.0).request().get();
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        verify(widgetDAO, never()).findByPrice(any(), anyDouble(), anyLong(), anyDouble(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should search widget names in the database, ranked, until the index is available")
+    public void searchWidgetsFallbackTest() {
+        Widget potter = new Widget();
+        potter.setId(2L);
+        potter.setName("Potter");
+        potter.setCategory("Book");
+        potter.setPrice(12.0);
+        when(widgetDAO.findByName("potter", Optional.of("Book"), 5)).thenReturn(Arrays.asList(potter, this.widget));
+
+        List<Widget> foundWidgets = EXT.target("/widgets/search")
+                .queryParam("q", "potter")
+                .queryParam("category", "Book")
+                .queryParam("limit", 5)
+                .request()
+                .get(new GenericType<List<Widget>>() {
+                });
+
+        assertThat(foundWidgets).extracting(Widget::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    @DisplayName("Should refuse a blank search")
+    public void searchWidgetsBlankTest() {
+        Response response = EXT.target("/widgets/search").queryParam("q", " ").request().get();
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        verify(widgetDAO, never()).findByName(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should refuse search queries shorter than a trigram")
+    public void searchWidgetsTooShortTest() {
+        Response response = EXT.target("/widgets/search").queryParam("q", "Te").request().get();
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        verify(widgetDAO, never()).findByName(any(), any(), anyInt());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void stubScroll(Optional<String> category, Widget... widgets) {
+        doAnswer(invocation -> {
+            Consumer<Widget> consumer = invocation.getArgument(1);
+            for (Widget widget : widgets) {
+                consumer.accept(widget);
+            }
+            return null;
+        }).when(widgetDAO).scroll(eq(category), any(Consumer.class));
+    }
+
 }
@@ -0,0 +1,107 @@
+package com.warehouse.resources;
+
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.warehouse.entity.Widget;
+import com.warehouse.stats.PriceStatistics;
+
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class WidgetStatsResourceTest {
+
+    private static final PriceStatistics statistics = new PriceStatistics(ForkJoinPool.commonPool(), 10,
+            new Timer());
+
+    private static final ResourceExtension EXT = ResourceExtension.builder()
+            .addResource(new WidgetStatsResource(statistics))
+            .addProvider(new TooManyBucketsExceptionMapper())
+            .build();
+
+    @BeforeAll
+    public static void setUp() {
+        statistics.rebuild(consumer -> Arrays.asList(
+                widget("Book", 10.0, 0L),
+                widget("Book", 20.0, 1_000_000L),
+                widget("Toy", 5.0, 0L),
+                widget("Toy", 6.0, TimeUnit.DAYS.toMillis(30))).forEach(consumer));
+    }
+
+    @Test
+    @DisplayName("Should return the statistics of a category")
+    public void getStatsForCategoryTest() {
+        JsonNode book = EXT.target("/widgets/stats/Book")
+                .queryParam("percentiles", "50,99.9")
+                .queryParam("bins", 2)
+                .request()
+                .get(JsonNode.class);
+
+        assertThat(book.get("numberOfWidgets").asLong()).isEqualTo(2);
+        assertThat(book.get("averagePrice").asDouble()).isEqualTo(15.0);
+        assertThat(book.get("percentiles").get("p50").asDouble()).isEqualTo(15.0);
+        assertThat(book.get("percentiles").has("p99.9")).isTrue();
+        assertThat(book.get("histogram")).hasSize(2);
+        assertThat(book.get("created")).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should return the statistics of every category")
+    public void getStatsForAllCategoriesTest() {
+        JsonNode stats = EXT.target("/widgets/stats").request().get(JsonNode.class);
+
+        assertThat(stats).hasSize(2);
+        assertThat(stats.get(0).get("category").asText()).isEqualTo("Book");
+        assertThat(stats.get(0).get("bucketMillis").asLong()).isEqualTo(TimeUnit.DAYS.toMillis(1));
+        // 31 buckets of a day widened to 8 buckets of 4 days, at most 10 are allowed
+        assertThat(stats.get(1).get("category").asText()).isEqualTo("Toy");
+        assertThat(stats.get(1).get("bucketMillis").asLong()).isEqualTo(TimeUnit.DAYS.toMillis(4));
+        assertThat(stats.get(1).get("created")).hasSize(8);
+    }
+
+    @Test
+    @DisplayName("Should refuse invalid parameters, and too many time buckets of the width asked for")
+    public void invalidParametersTest() {
+        Response percentiles = EXT.target("/widgets/stats").queryParam("percentiles", "50,101").request().get();
+        Response buckets = EXT.target("/widgets/stats").queryParam("bucket", "1 day").request().get();
+        Response bucket = EXT.target("/widgets/stats/Book").queryParam("bucket", "0 seconds").request().get();
+        Response category = EXT.target("/widgets/stats/Game").request().get();
+
+        assertThat(percentiles.getStatus()).isEqualTo(400);
+        assertThat(buckets.getStatus()).isEqualTo(400);
+        assertThat(buckets.readEntity(JsonNode.class).get("message").asText()).contains("Category Toy");
+        assertThat(bucket.getStatus()).isEqualTo(400);
+        assertThat(category.getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    @DisplayName("Should be unavailable until the first snapshot is built")
+    public void notBuiltTest() {
+        WidgetStatsResource resource = new WidgetStatsResource(new PriceStatistics(ForkJoinPool.commonPool(), 10,
+                new Timer()));
+
+        assertThatThrownBy(() -> resource.getStatsForAllCategories(new PercentileListParam("50"), 10, null))
+                .isInstanceOfSatisfying(WebApplicationException.class,
+                        e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+    }
+
+    private static Widget widget(String category, double price, long createdAt) {
+        return new Widget(0L, "Widget", category, price, new Date(createdAt), new Date(createdAt), 0L);
+    }
+}
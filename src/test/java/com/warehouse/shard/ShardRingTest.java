@@ -0,0 +1,48 @@
+package com.warehouse.shard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ShardRingTest {
+
+    private static final int CATEGORIES = 10000;
+
+    @Test
+    @DisplayName("Should spread categories about evenly among shards")
+    public void spreadTest() {
+        ShardRing ring = new ShardRing(Arrays.asList(0, 1, 2), 128);
+
+        Map<Integer, Integer> categoriesByShard = new HashMap<>();
+        for (int i = 0; i < CATEGORIES; i++) {
+            categoriesByShard.merge(ring.shardFor("category-" + i), 1, Integer::sum);
+        }
+
+        assertThat(categoriesByShard).containsOnlyKeys(0, 1, 2);
+        assertThat(categoriesByShard.values()).allSatisfy(count -> assertThat(count).isBetween(2500, 4200));
+    }
+
+    @Test
+    @DisplayName("Should only move the categories a new shard takes over")
+    public void addShardTest() {
+        ShardRing ring = new ShardRing(Arrays.asList(0, 1, 2), 128);
+        ShardRing grown = new ShardRing(Arrays.asList(0, 1, 2, 3), 128);
+
+        int moved = 0;
+        for (int i = 0; i < CATEGORIES; i++) {
+            int before = ring.shardFor("category-" + i);
+            int after = grown.shardFor("category-" + i);
+            if (before != after) {
+                assertThat(after).isEqualTo(3);
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(CATEGORIES / 6, CATEGORIES / 3);
+    }
+}
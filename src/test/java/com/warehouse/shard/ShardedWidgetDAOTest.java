@@ -0,0 +1,178 @@
+package com.warehouse.shard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.warehouse.dao.WidgetDAO;
+import com.warehouse.dao.WriteCondition;
+import com.warehouse.dto.WidgetDTO;
+import com.warehouse.dto.WidgetMapper;
+import com.warehouse.entity.Widget;
+import com.warehouse.representation.CategoryInfo;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Stores widgets on three embedded databases.
+ */
+public class ShardedWidgetDAOTest {
+
+    private static final int CATEGORIES = 30;
+
+    private final Environment environment = new Environment("warehouse", Jackson.newObjectMapper(),
+            Validators.newValidatorFactory(), new MetricRegistry(), ShardedWidgetDAOTest.class.getClassLoader(),
+            new HealthCheckRegistry(), new Configuration());
+
+    private WidgetDAO widgetDAO;
+
+    @BeforeEach
+    public void setUp() {
+        ShardingFactory shardingFactory = new ShardingFactory();
+        List<ShardFactory> shards = new ArrayList<>();
+        for (int id = 0; id < 3; id++) {
+            ShardFactory shard = new ShardFactory();
+            shard.setId(id);
+            shard.setDatabase(database("shard" + id));
+            shards.add(shard);
+        }
+        shardingFactory.setShards(shards);
+        shardingFactory.setFanOutThreads(3);
+        this.widgetDAO = shardingFactory.build(this.environment, Collections.singletonList(Widget.class),
+                new WidgetMapper(), 50);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (LifeCycle managed : this.environment.lifecycle().getManagedObjects()) {
+            managed.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should store every category on a single shard, told by the IDs of its widgets")
+    public void createTest() {
+        List<Widget> widgets = this.createWidgets(3);
+
+        Map<String, Set<Integer>> shardsByCategory = widgets.stream().collect(Collectors.groupingBy(
+                Widget::getCategory, Collectors.mapping(widget -> ShardIdGenerator.shardOf(widget.getId()),
+                        Collectors.toSet())));
+        assertThat(shardsByCategory.values()).allSatisfy(shards -> assertThat(shards).hasSize(1));
+        assertThat(shardsByCategory.values().stream().flatMap(Set::stream).distinct()).hasSize(3);
+        assertThat(widgets.stream().map(Widget::getId).distinct()).hasSameSizeAs(widgets);
+
+        for (Widget widget : widgets) {
+            assertThat(this.widgetDAO.findById(widget.getId()))
+                    .hasValueSatisfying(found -> assertThat(found.getName()).isEqualTo(widget.getName()));
+        }
+        assertThat(this.widgetDAO.findByIds(widgets.stream().map(Widget::getId).collect(Collectors.toList())))
+                .hasSameSizeAs(widgets);
+    }
+
+    @Test
+    @DisplayName("Should return created widgets in the order they were given")
+    public void createAllTest() {
+        List<WidgetDTO> widgetDTOs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            widgetDTOs.add(new WidgetDTO("Widget " + i, "Category " + (i % CATEGORIES), 1d));
+        }
+
+        List<Widget> created = this.widgetDAO.createAll(widgetDTOs);
+
+        assertThat(created).extracting(Widget::getName)
+                .containsExactlyElementsOf(widgetDTOs.stream().map(WidgetDTO::getName).collect(Collectors.toList()));
+        assertThat(this.widgetDAO.findAll()).hasSize(100);
+    }
+
+    @Test
+    @DisplayName("Should page through the widgets of every shard in ID order")
+    public void findPageTest() {
+        List<Long> ids = this.createWidgets(2).stream().map(Widget::getId).sorted().collect(Collectors.toList());
+
+        List<Long> paged = new ArrayList<>();
+        long afterId = 0;
+        List<Widget> page;
+        while (!(page = this.widgetDAO.findPage(Optional.empty(), afterId, 7)).isEmpty()) {
+            assertThat(page).hasSizeLessThanOrEqualTo(7);
+            page.forEach(widget -> paged.add(widget.getId()));
+            afterId = page.get(page.size() - 1).getId();
+        }
+
+        assertThat(paged).containsExactlyElementsOf(ids);
+        assertThat(this.widgetDAO.findPage(Optional.of("Category 1"), 0, 10)).hasSize(2)
+                .allSatisfy(widget -> assertThat(widget.getCategory()).isEqualTo("Category 1"));
+    }
+
+    @Test
+    @DisplayName("Should gather the statistics of the categories of every shard")
+    public void aggregateTest() {
+        this.createWidgets(2);
+
+        List<CategoryInfo> categories = this.widgetDAO.aggregateAllCategories();
+
+        assertThat(categories).hasSize(CATEGORIES)
+                .isSortedAccordingTo(Comparator.comparing(CategoryInfo::getCategory))
+                .allSatisfy(category -> assertThat(category.getNumberOfWidgets()).isEqualTo(2));
+        assertThat(this.widgetDAO.aggregateByCategory("Category 7"))
+                .hasValueSatisfying(category -> assertThat(category.getNumberOfWidgets()).isEqualTo(2));
+    }
+
+    @Test
+    @DisplayName("Should update and delete widgets on their shard, and reject moving them to another shard")
+    public void writeTest() {
+        List<Widget> widgets = this.createWidgets(1);
+        Map<Integer, Widget> widgetByShard = widgets.stream().collect(Collectors.toMap(
+                widget -> ShardIdGenerator.shardOf(widget.getId()), Function.identity(), (first, second) -> first));
+        Widget widget = widgetByShard.get(0);
+        Widget other = widgetByShard.get(1);
+
+        assertThat(this.widgetDAO.updateById(widget.getId(), new WidgetDTO(null, null, 5d), true, WriteCondition.none()))
+                .hasValueSatisfying(updated -> assertThat(updated.getPrice()).isEqualTo(5d));
+        assertThatThrownBy(() -> this.widgetDAO.updateById(widget.getId(),
+                new WidgetDTO(null, other.getCategory(), null), true, WriteCondition.none()))
+                        .isInstanceOf(CrossShardUpdateException.class);
+
+        assertThat(this.widgetDAO.deleteById(widget.getId(), WriteCondition.none())).isTrue();
+        assertThat(this.widgetDAO.deleteAll(Collections.singletonList(other.getId()))).containsExactly(other.getId());
+        assertThat(this.widgetDAO.findAll()).hasSize(widgets.size() - 2);
+    }
+
+    private List<Widget> createWidgets(int perCategory) {
+        List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES * perCategory; i++) {
+            widgets.add(this.widgetDAO.create(new WidgetDTO("Widget " + i, "Category " + (i % CATEGORIES), 1d)));
+        }
+        return widgets;
+    }
+
+    private static DataSourceFactory database(String name) {
+        DataSourceFactory database = new DataSourceFactory();
+        database.setDriverClass("org.h2.Driver");
+        database.setUser("sa");
+        database.setPassword("");
+        database.setUrl("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        database.setProperties(Collections.singletonMap("hibernate.hbm2ddl.auto", "create-drop"));
+        return database;
+    }
+}
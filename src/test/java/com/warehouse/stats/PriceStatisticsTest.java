@@ -0,0 +1,138 @@
+package com.warehouse.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.codahale.metrics.Timer;
+import com.warehouse.entity.Widget;
+import com.warehouse.representation.CategoryStats;
+import com.warehouse.representation.CategoryStats.PriceBin;
+import com.warehouse.representation.CategoryStats.TimeBucket;
+
+public class PriceStatisticsTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private ForkJoinPool pool;
+    private PriceStatistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        this.pool = new ForkJoinPool(4);
+        this.statistics = new PriceStatistics(this.pool, 100, new Timer());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should compute the price statistics of a category")
+    public void computeTest() {
+        this.statistics.rebuild(consumer -> Arrays.asList(
+                widget("Book", 4.0, 0L),
+                widget("Toy", 100.0, 0L),
+                widget("Book", 1.0, DAY + 1),
+                widget("Book", 3.0, 2 * DAY + 5),
+                widget("Book", 2.0, 2 * DAY)).forEach(consumer));
+        PriceColumns columns = this.statistics.getColumns().get();
+
+        CategoryStats book = this.statistics.compute(columns, "Book", Arrays.asList(0d, 50d, 100d), 3, DAY, true).get();
+
+        assertThat(book.getNumberOfWidgets()).isEqualTo(4);
+        assertThat(book.getMinPrice()).isEqualTo(1.0);
+        assertThat(book.getMaxPrice()).isEqualTo(4.0);
+        assertThat(book.getAveragePrice()).isEqualTo(2.5);
+        assertThat(book.getStandardDeviation()).isCloseTo(Math.sqrt(1.25), within(1e-12));
+        assertThat(book.getPercentiles()).containsExactly(
+                entry("p0", 1.0), entry("p50", 2.5), entry("p100", 4.0));
+        assertThat(book.getHistogram()).extracting(PriceBin::getCount).containsExactly(1L, 1L, 2L);
+        assertThat(book.getHistogram().get(2).getTo()).isEqualTo(4.0);
+        assertThat(book.getCreated()).extracting(TimeBucket::getFrom).containsExactly(0L, DAY, 2 * DAY);
+        assertThat(book.getCreated()).extracting(TimeBucket::getCount).containsExactly(1L, 1L, 2L);
+        assertThat(this.statistics.compute(columns, "Game", Collections.emptyList(), 3, DAY, true)).isEmpty();
+        assertThat(this.statistics.computeAll(columns, Collections.emptyList(), 3, DAY, true))
+                .extracting(CategoryStats::getCategory)
+                .containsExactly("Book", "Toy");
+    }
+
+    @Test
+    @DisplayName("Should scan a large category in parallel like a single widget at a time")
+    public void parallelScanTest() {
+        Random random = new Random(42);
+        double[] prices = new double[StatsScan.THRESHOLD * 5 + 7];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = 1000 + random.nextDouble() * 100;
+        }
+        this.statistics.rebuild(consumer -> {
+            for (int i = 0; i < prices.length; i++) {
+                consumer.accept(widget("Book", prices[i], i % 10 * DAY));
+            }
+        });
+
+        CategoryStats book = this.statistics.compute(this.statistics.getColumns().get(), "Book",
+                Collections.singletonList(50d), 10, DAY, true).get();
+
+        double mean = Arrays.stream(prices).average().getAsDouble();
+        double variance = Arrays.stream(prices).map(price -> (price - mean) * (price - mean)).sum() / prices.length;
+        assertThat(book.getNumberOfWidgets()).isEqualTo(prices.length);
+        assertThat(book.getAveragePrice()).isCloseTo(mean, within(1e-9));
+        assertThat(book.getStandardDeviation()).isCloseTo(Math.sqrt(variance), within(1e-9));
+        assertThat(book.getHistogram().stream().mapToLong(PriceBin::getCount).sum()).isEqualTo(prices.length);
+        assertThat(book.getCreated()).hasSize(10);
+        assertThat(book.getCreated().stream().mapToLong(TimeBucket::getCount).sum()).isEqualTo(prices.length);
+    }
+
+    @Test
+    @DisplayName("Should refuse more time buckets than allowed of an exact width, and widen other widths to fit")
+    public void maxBucketsTest() {
+        this.statistics.rebuild(consumer -> Arrays.asList(
+                widget("Book", 1.0, 0L),
+                widget("Book", 2.0, 1000 * DAY)).forEach(consumer));
+        PriceColumns columns = this.statistics.getColumns().get();
+
+        assertThatThrownBy(() -> this.statistics.compute(columns, "Book", Collections.emptyList(), 1, DAY, true))
+                .isInstanceOf(TooManyBucketsException.class);
+        assertThat(this.statistics.compute(columns, "Book", Collections.emptyList(), 1, 100 * DAY, true).get()
+                .getCreated()).hasSize(11);
+
+        // 1001 buckets of a day need 11 days to fit 100 buckets, as 10 would take 101
+        CategoryStats widened = this.statistics.compute(columns, "Book", Collections.emptyList(), 1, DAY, false)
+                .get();
+        assertThat(widened.getBucketMillis()).isEqualTo(11 * DAY);
+        assertThat(widened.getCreated()).hasSize(91);
+        assertThat(widened.getCreated().stream().mapToLong(TimeBucket::getCount).sum()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should interpolate percentiles between the closest prices")
+    public void percentileTest() {
+        double[] sorted = { 0.0, 10.0, 20.0, 30.0, 40.0 };
+
+        assertThat(PriceStatistics.percentile(sorted, 1, 5, 50)).isEqualTo(25.0);
+        assertThat(PriceStatistics.percentile(sorted, 1, 5, 90)).isCloseTo(37.0, within(1e-12));
+        assertThat(PriceStatistics.percentile(sorted, 4, 5, 99)).isEqualTo(40.0);
+    }
+
+    private static Widget widget(String category, double price, long createdAt) {
+        Widget widget = new Widget();
+        widget.setCategory(category);
+        widget.setPrice(price);
+        widget.setCreatedAt(new Date(createdAt));
+        return widget;
+    }
+}